@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class FilmorateApplication {
 	public static void main(final String[] args) {
 		SpringApplication.run(FilmorateApplication.class, args);
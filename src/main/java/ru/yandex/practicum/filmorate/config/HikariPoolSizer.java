@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizes the connection pool of the production profile.
+ * <p>
+ * The pool has a fixed size of {@code 2 * cores + 1} connections, enough to keep every core busy while
+ * other connections wait on disk, and never more than the web server's worker threads, since each request
+ * holds at most one connection, plus the connection the feed writer keeps for itself.
+ * An explicit {@code filmorate.datasource.pool-size} takes precedence.
+ * </p>
+ */
+@Slf4j
+@Component
+@Profile("prod")
+public class HikariPoolSizer implements BeanPostProcessor {
+
+    private final int poolSize;
+
+    /**
+     * Constructor for {@code HikariPoolSizer}.
+     *
+     * @param configuredPoolSize the explicit pool size, or {@code 0} to derive it from the number of cores.
+     * @param maxThreads         the maximum number of web server worker threads.
+     */
+    public HikariPoolSizer(@Value("${filmorate.datasource.pool-size:0}") int configuredPoolSize,
+                           @Value("${server.tomcat.threads.max:200}") int maxThreads) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.poolSize = configuredPoolSize > 0 ? configuredPoolSize : Math.min(2 * cores + 1, maxThreads) + 1;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof HikariDataSource dataSource) {
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMinimumIdle(poolSize);
+            log.info("Connection pool {} sized to {} connections", beanName, poolSize);
+        }
+        return bean;
+    }
+}
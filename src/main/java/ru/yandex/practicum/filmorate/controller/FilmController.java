@@ -1,11 +1,16 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.dto.FilmCacheStatsDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import java.util.List;
@@ -21,30 +26,76 @@ import java.util.Collection;
 @Slf4j
 public final class FilmController {
 
+    /**
+     * Page size used when the {@code limit} parameter is omitted.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     /**
      * Service layer for handling business logic related to films.
      */
     private final FilmService service;
 
+    /**
+     * Mapper used to write streamed films.
+     */
+    private final ObjectMapper objectMapper;
+
     /**
      * Constructor for {@code FilmController}.
      *
-     * @param filmService the service layer for handling film-related logic.
+     * @param filmService  the service layer for handling film-related logic.
+     * @param objectMapper the mapper used to write streamed films.
      */
     @Autowired
-    public FilmController(final FilmService filmService) {
+    public FilmController(final FilmService filmService, final ObjectMapper objectMapper) {
         this.service = filmService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Retrieves all films as DTOs.
+     * Retrieves films as DTOs.
+     * Without parameters all films are returned; with {@code after} and/or {@code limit}
+     * a page of films ordered by ID is returned (keyset pagination).
      *
-     * @return a collection of all films as DTOs.
+     * @param after the ID after which the page starts (optional).
+     * @param limit the maximum number of films in the page (optional).
+     * @return a collection of films as DTOs.
      */
     @GetMapping
-    public Collection<FilmDto> getAllFilms() {
-        log.debug("Received GET request for all films");
-        return service.getAllFilms();
+    public Collection<FilmDto> getAllFilms(
+            @RequestParam(value = "after", required = false) final Long after,
+            @RequestParam(value = "limit", required = false) final Integer limit
+    ) {
+        if (after == null && limit == null) {
+            log.debug("Received GET request for all films");
+            return service.getAllFilms();
+        }
+
+        log.debug("Received GET request for films after id {} with limit {}", after, limit);
+        return service.getFilms(after != null ? after : 0, limit != null ? limit : DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Streams all films as a JSON array written incrementally, for full catalog exports.
+     *
+     * @return the response body writing all films.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamAllFilms() {
+        log.debug("Received GET request to stream all films");
+        return JsonArrayStreams.of(objectMapper, service::streamAllFilms);
+    }
+
+    /**
+     * Retrieves the hit, miss and eviction counters of the film cache.
+     *
+     * @return the film cache counters.
+     */
+    @GetMapping("/cache/stats")
+    public FilmCacheStatsDto getFilmCacheStats() {
+        log.debug("Received GET request for film cache stats");
+        return service.getFilmCacheStats();
     }
 
     /**
@@ -194,15 +245,35 @@ public final class FilmController {
     /**
      * Handles a GET request to search for films by title and/or director.
      *
-     * @param query the search query substring.
+     * @param query the search query.
      * @param by    the search criteria: "title", "director", or both separated by a comma.
+     * @param mode  the matching mode: "substring" (default), "prefix" or "fuzzy".
+     * @param limit the maximum number of films to return (optional).
      * @return a list of films matching the search criteria.
      */
     @GetMapping("/search")
     public List<FilmDto> searchFilms(
             @RequestParam("query") final String query,
-            @RequestParam("by") final String by) {
-        log.debug("Received GET request to search films with query '{}' by '{}'", query, by);
-        return service.searchFilms(query, by);
+            @RequestParam("by") final String by,
+            @RequestParam(value = "mode", defaultValue = "substring") final String mode,
+            @RequestParam(value = "limit", required = false) final Integer limit) {
+        log.debug("Received GET request to search films with query '{}' by '{}' in {} mode limited to {}",
+                query, by, mode, limit);
+        return service.searchFilms(query, by, mode, limit != null ? limit : DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Handles a GET request for search-as-you-type completions of film titles and director names.
+     *
+     * @param query the typed text.
+     * @param limit the maximum number of completions (default 10).
+     * @return completions ordered by likes, most liked first.
+     */
+    @GetMapping("/search/suggest")
+    public List<SuggestionDto> suggest(
+            @RequestParam("q") final String query,
+            @RequestParam(value = "limit", defaultValue = "10") final int limit) {
+        log.debug("Received GET request for completions of '{}' limited to {}", query, limit);
+        return service.suggest(query, limit);
     }
 }
\ No newline at end of file
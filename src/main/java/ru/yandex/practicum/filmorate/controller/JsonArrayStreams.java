@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Helper for writing large collections as a JSON array directly to the response stream.
+ * Elements are serialized as soon as they are produced, so the collection is never held in memory.
+ */
+final class JsonArrayStreams {
+
+    private JsonArrayStreams() {
+    }
+
+    /**
+     * Creates a response body that writes every element passed to the producer's consumer as a JSON array item.
+     *
+     * @param objectMapper the {@link ObjectMapper} used to serialize elements.
+     * @param producer     the source that pushes elements into the given consumer.
+     * @param <T>          the type of streamed elements.
+     * @return a {@link StreamingResponseBody} writing a JSON array.
+     */
+    static <T> StreamingResponseBody of(final ObjectMapper objectMapper, final Consumer<Consumer<T>> producer) {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                producer.accept(element -> {
+                    try {
+                        generator.writeObject(element);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+    }
+}
@@ -1,9 +1,13 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.model.User;
@@ -22,22 +26,51 @@ import java.util.List;
 @Slf4j
 public final class UserController {
 
+    /**
+     * Page size used when only the {@code after} parameter is given.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final UserService service;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public UserController(final UserService userService) {
+    public UserController(final UserService userService, final ObjectMapper objectMapper) {
         this.service = userService;
+        this.objectMapper = objectMapper;
     }
 
     /**
-     * Retrieves all users.
+     * Retrieves users.
+     * Without parameters all users are returned; with {@code after} and/or {@code limit}
+     * a page of users ordered by ID is returned (keyset pagination).
      *
-     * @return a collection of all users as DTOs.
+     * @param after the ID after which the page starts (optional).
+     * @param limit the maximum number of users in the page (optional).
+     * @return a collection of users as DTOs.
      */
     @GetMapping
-    public Collection<UserDto> getAllUsers() {
-        log.debug("Received GET request for all users");
-        return service.getAllUsers();
+    public Collection<UserDto> getAllUsers(
+            @RequestParam(value = "after", required = false) final Long after,
+            @RequestParam(value = "limit", required = false) final Integer limit
+    ) {
+        if (after == null && limit == null) {
+            log.debug("Received GET request for all users");
+            return service.getAllUsers();
+        }
+
+        log.debug("Received GET request for users after id {} with limit {}", after, limit);
+        return service.getUsers(after != null ? after : 0, limit != null ? limit : DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Streams all users as a JSON array written incrementally, for full exports.
+     *
+     * @return the response body writing all users.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamAllUsers() {
+        log.debug("Received GET request to stream all users");
+        return JsonArrayStreams.of(objectMapper, service::streamAllUsers);
     }
 
     /**
@@ -158,29 +191,101 @@ public final class UserController {
     /**
      * Retrieves film recommendations for a user based on collaborative filtering.
      *
-     * @param id the ID of the user for whom recommendations are generated.
-     * @return a list of recommended films as DTOs.
+     * @param id    the ID of the user for whom recommendations are generated.
+     * @param limit the maximum number of films to return (default is 10).
+     * @return a list of recommended films as DTOs, best first.
      */
     @GetMapping("/{id}/recommendations")
-    public List<FilmDto> getRecommendations(@PathVariable Long id) {
+    public List<FilmDto> getRecommendations(
+            @PathVariable Long id,
+            @RequestParam(value = "limit", defaultValue = "10") final int limit
+    ) {
         log.debug("Received GET request for recommendations for user with id {}", id);
-        return service.getRecommendations(id);
+        return service.getRecommendations(id, limit);
     }
 
     /**
      * Retrieves the feed list for a specific user.
      * <p>
      * This method handles GET requests to fetch the events associated with a user identified by their ID.
+     * Without parameters the whole feed is returned, oldest first; with {@code before} and/or {@code limit}
+     * a page of the newest events before the given one is returned, newest first. The ID of the last event
+     * of a page is the {@code before} of the next page.
      * </p>
      *
      * @param userId the ID of the user whose feed is to be retrieved
+     * @param before the ID of the event before which the page starts (optional)
+     * @param limit  the maximum number of events in the page (optional)
      * @return a collection of {@link UserEvent} representing the user's feed
      */
     @GetMapping("/{id}/feed")
     Collection<UserEvent> getUserFeedList(
-            @PathVariable("id") final long userId) {
-        log.debug("Received GET request for user feed for user with id {}", userId);
-        return service.getUserFeed(userId);
+            @PathVariable("id") final long userId,
+            @RequestParam(value = "before", required = false) final Long before,
+            @RequestParam(value = "limit", required = false) final Integer limit) {
+        if (before == null && limit == null) {
+            log.debug("Received GET request for user feed for user with id {}", userId);
+            return service.getUserFeed(userId);
+        }
+
+        log.debug("Received GET request for user feed for user with id {} before event {} with limit {}",
+                userId, before, limit);
+        return service.getUserFeed(userId, before != null ? before : Long.MAX_VALUE,
+                limit != null ? limit : DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Retrieves the events retired from a user's feed by the retention policy, for export.
+     *
+     * @param userId the ID of the user whose archived feed is to be retrieved
+     * @return a collection of {@link UserEvent} representing the archived feed, oldest first
+     */
+    @GetMapping("/{id}/feed/archive")
+    Collection<UserEvent> getArchivedFeedList(@PathVariable("id") final long userId) {
+        log.debug("Received GET request for archived feed for user with id {}", userId);
+        return service.getArchivedFeed(userId);
+    }
+
+    /**
+     * Streams a user's new feed events as Server-Sent Events.
+     * <p>
+     * Each event is sent with its ID, so a client reconnecting with the {@code Last-Event-ID} header
+     * first receives the events it missed. Clients that do not keep up are disconnected.
+     * </p>
+     *
+     * @param userId      the ID of the user whose feed is to be streamed
+     * @param lastEventId the ID of the last event received before reconnecting (optional)
+     * @return the emitter sending {@link UserEvent}s
+     */
+    @GetMapping(value = "/{id}/feed/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserFeed(
+            @PathVariable("id") final long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) final Long lastEventId) {
+        log.debug("Received GET request for feed stream for user with id {} after event {}", userId, lastEventId);
+        return service.streamUserFeed(userId, lastEventId);
+    }
+
+    /**
+     * Retrieves the activity of a user's friends, newest events first.
+     * <p>
+     * This method handles GET requests to fetch a page of the events of the friends of a user identified
+     * by their ID. The ID of the last event of a page is the {@code before} of the next page.
+     * </p>
+     *
+     * @param userId the ID of the user whose friends' activity is to be retrieved
+     * @param before the ID of the event before which the page starts (optional)
+     * @param limit  the maximum number of events in the page (optional)
+     * @return a collection of {@link UserEvent} representing the friends' activity
+     */
+    @GetMapping("/{id}/feed/friends")
+    Collection<UserEvent> getFriendsFeedList(
+            @PathVariable("id") final long userId,
+            @RequestParam(value = "before", required = false) final Long before,
+            @RequestParam(value = "limit", required = false) final Integer limit) {
+        log.debug("Received GET request for friends feed for user with id {} before event {} with limit {}",
+                userId, before, limit);
+        return service.getFriendsFeed(userId, before != null ? before : Long.MAX_VALUE,
+                limit != null ? limit : DEFAULT_PAGE_SIZE);
     }
 
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package ru.yandex.practicum.filmorate.dal.director;
 
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dal.film.FilmCache;
+import ru.yandex.practicum.filmorate.dal.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 
@@ -17,13 +21,28 @@ import java.util.Objects;
  * It implements both DirectorStorage and DirectorSqlStorage interfaces.
  */
 @Repository
+@Profile("!memory")
 public class DirectorDbStorage implements DirectorStorage, DirectorSqlConstants {
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<Director> directorRowMapper;
+    private final FilmCache filmCache;
+    private final FilmSearchIndex searchIndex;
 
-    public DirectorDbStorage(JdbcTemplate jdbcTemplate, RowMapper<Director> directorRowMapper) {
+    public DirectorDbStorage(JdbcTemplate jdbcTemplate, RowMapper<Director> directorRowMapper, FilmCache filmCache,
+                             FilmSearchIndex searchIndex) {
         this.jdbcTemplate = jdbcTemplate;
         this.directorRowMapper = directorRowMapper;
+        this.filmCache = filmCache;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Registers the names of all directors in the film search index.
+     * Runs before the application starts serving requests.
+     */
+    @PostConstruct
+    public void loadSearchIndex() {
+        getAllDirectors().forEach(director -> searchIndex.saveDirector(director.getId(), director.getName()));
     }
 
     @Override
@@ -64,7 +83,9 @@ public class DirectorDbStorage implements DirectorStorage, DirectorSqlConstants
 
         director.setId(Objects.requireNonNull(keyHolder.getKey()).intValue());
 
-        return getDirectorById(director.getId());
+        Director addedDirector = getDirectorById(director.getId());
+        searchIndex.saveDirector(addedDirector.getId(), addedDirector.getName());
+        return addedDirector;
     }
 
     /**
@@ -83,7 +104,10 @@ public class DirectorDbStorage implements DirectorStorage, DirectorSqlConstants
         );
 
         if (updatedRows > 0) {
-            return getDirectorById(director.getId());
+            filmCache.invalidateDirector(director.getId());
+            Director updatedDirector = getDirectorById(director.getId());
+            searchIndex.saveDirector(updatedDirector.getId(), updatedDirector.getName());
+            return updatedDirector;
         } else {
             throw new NotFoundException(String.format("Director with id = %d not found.", director.getId()));
         }
@@ -98,5 +122,7 @@ public class DirectorDbStorage implements DirectorStorage, DirectorSqlConstants
     @Override
     public void deleteDirector(int id) {
         jdbcTemplate.update(SQL_DELETE_DIRECTOR, id);
+        filmCache.invalidateDirector(id);
+        searchIndex.removeDirector(id);
     }
 }
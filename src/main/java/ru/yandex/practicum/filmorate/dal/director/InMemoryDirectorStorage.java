@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.dal.director;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dal.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory implementation of {@link DirectorStorage}, active with the {@code memory} profile.
+ * Directors are kept in the {@link MemoryDatabase}; films refer to them by ID, so renaming or deleting
+ * a director is seen by every film of the director.
+ */
+@Repository
+@Profile("memory")
+public class InMemoryDirectorStorage implements DirectorStorage {
+
+    private final MemoryDatabase database;
+    private final FilmSearchIndex searchIndex;
+
+    public InMemoryDirectorStorage(MemoryDatabase database, FilmSearchIndex searchIndex) {
+        this.database = database;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Registers the names of all directors in the film search index.
+     * Runs before the application starts serving requests.
+     */
+    @PostConstruct
+    public void loadSearchIndex() {
+        getAllDirectors().forEach(director -> searchIndex.saveDirector(director.getId(), director.getName()));
+    }
+
+    @Override
+    public Collection<Director> getAllDirectors() {
+        return database.directors().values().stream()
+                .map(InMemoryDirectorStorage::copy)
+                .sorted(Comparator.comparingInt(Director::getId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Retrieves a director by their ID.
+     *
+     * @param id the ID of the director to retrieve
+     * @return a {@link Director} representing the director with the specified ID
+     * @throws NotFoundException if the director with the specified ID does not exist
+     */
+    @Override
+    public Director getDirectorById(int id) {
+        Director director = database.directors().get(id);
+        if (director == null) {
+            throw new NotFoundException(String.format("Director with id = %d not found.", id));
+        }
+        return copy(director);
+    }
+
+    /**
+     * Adds a new director with the next director ID.
+     *
+     * @param director the director to add
+     * @return a {@link Director} representing the added director
+     */
+    @Override
+    public Director addDirector(Director director) {
+        Director saved = copy(director);
+        database.insertDirector(saved);
+        searchIndex.saveDirector(saved.getId(), saved.getName());
+
+        director.setId(saved.getId());
+        return copy(saved);
+    }
+
+    /**
+     * Updates an existing director.
+     *
+     * @param director the director object containing updated information
+     * @return a {@link Director} representing the updated director
+     * @throws NotFoundException if the director with the specified ID does not exist
+     */
+    @Override
+    public Director updateDirector(Director director) {
+        Director saved = copy(director);
+        if (!database.updateDirector(saved)) {
+            throw new NotFoundException(String.format("Director with id = %d not found.", director.getId()));
+        }
+        searchIndex.saveDirector(saved.getId(), saved.getName());
+        return copy(saved);
+    }
+
+    /**
+     * Deletes a director by their ID.
+     *
+     * @param id the ID of the director to delete
+     */
+    @Override
+    public void deleteDirector(int id) {
+        database.deleteDirector(id);
+        searchIndex.removeDirector(id);
+    }
+
+    private static Director copy(Director director) {
+        Director copy = new Director();
+        copy.setId(director.getId());
+        copy.setName(director.getName());
+        return copy;
+    }
+}
@@ -0,0 +1,517 @@
+package ru.yandex.practicum.filmorate.dal.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compressed archive of retired feed events, kept as immutable files in {@code filmorate.feed.archive.dir}.
+ * <p>
+ * A file holds events sorted by user and event ID, split into blocks of
+ * {@code filmorate.feed.archive.block-size} events. A block is compressed with Deflate after delta encoding:
+ * consecutive events of a user differ in a few bytes of ID and timestamp, and event types and operations
+ * are replaced by indexes into a per-block dictionary. The file ends with an index of its blocks holding
+ * the range of user IDs of each block, so reading the events of one user inflates only the blocks that
+ * may contain them.
+ * </p>
+ * <p>
+ * Files are written to a temporary file and renamed into place, so a file is either complete or absent.
+ * Every retention run adds a file; once there are more than {@code filmorate.feed.archive.max-files}
+ * files, they are merged into one. An event written twice, e.g. when a crash interrupted a run between
+ * archiving and removing its events, is returned and merged only once.
+ * </p>
+ */
+@Slf4j
+@Component
+public class FeedArchive {
+
+    private static final Pattern FILE_NAME = Pattern.compile("feed-(\\d{20})\\.arc");
+    private static final long MAGIC = 0x46454544_41524331L; // "FEEDARC1"
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final Comparator<UserEvent> BY_USER_AND_ID = Comparator.comparingLong(UserEvent::getUserId)
+            .thenComparingLong(UserEvent::getEventId);
+
+    private final Path directory;
+    private final int blockSize;
+    private final int maxFiles;
+
+    /**
+     * Guards the set of files: readers share it, renaming and deleting files take it exclusively.
+     */
+    private final ReadWriteLock filesLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor for {@code FeedArchive}.
+     *
+     * @param directory the directory of the archive files; created with the first file.
+     * @param blockSize the number of events in a compressed block.
+     * @param maxFiles  the number of files above which they are merged into one.
+     */
+    public FeedArchive(@Value("${filmorate.feed.archive.dir:./db/feed-archive}") String directory,
+                       @Value("${filmorate.feed.archive.block-size:1024}") int blockSize,
+                       @Value("${filmorate.feed.archive.max-files:16}") int maxFiles) {
+        this.directory = Path.of(directory).toAbsolutePath();
+        this.blockSize = blockSize;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Writes events to a new archive file and forces it to disk,
+     * then merges the files if there are too many of them.
+     *
+     * @param events the events to archive, in any order.
+     */
+    public synchronized void write(List<UserEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<UserEvent> sorted = new ArrayList<>(events);
+        sorted.sort(BY_USER_AND_ID);
+        Path file = writeFile(sorted.iterator());
+        log.info("Archived {} feed events to {}", sorted.size(), file.getFileName());
+
+        List<Path> files = listFiles();
+        if (files.size() > maxFiles) {
+            compact(files);
+        }
+    }
+
+    /**
+     * Reads the archived events of a user.
+     *
+     * @param userId the ID of the user.
+     * @return a list of the user's archived events, oldest first.
+     */
+    public List<UserEvent> read(long userId) {
+        TreeMap<Long, UserEvent> events = new TreeMap<>();
+        filesLock.readLock().lock();
+        try {
+            for (Path file : listFiles()) {
+                try (ArchiveFile archive = new ArchiveFile(file)) {
+                    for (BlockInfo block : archive.blocks) {
+                        if (block.firstUserId() <= userId && userId <= block.lastUserId()) {
+                            archive.readBlock(block).stream()
+                                    .filter(event -> event.getUserId() == userId)
+                                    .forEach(event -> events.putIfAbsent(event.getEventId(), event));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read feed archive " + directory, e);
+        } finally {
+            filesLock.readLock().unlock();
+        }
+        return new ArrayList<>(events.values());
+    }
+
+    /**
+     * Merges files into one, dropping events written more than once. The files are each sorted,
+     * so they are merged block by block and never read into memory as a whole.
+     */
+    private void compact(List<Path> files) {
+        List<ArchiveFile> sources = new ArrayList<>();
+        try {
+            for (Path file : files) {
+                sources.add(new ArchiveFile(file));
+            }
+            Path merged = writeFile(new MergingIterator(sources));
+            filesLock.writeLock().lock();
+            try {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            } finally {
+                filesLock.writeLock().unlock();
+            }
+            log.info("Merged {} feed archive files into {}", files.size(), merged.getFileName());
+        } catch (IOException | UncheckedIOException e) {
+            // Исходные файлы остаются на месте; слияние повторится при следующей записи
+            log.error("Failed to merge feed archive files in {}", directory, e);
+        } finally {
+            sources.forEach(ArchiveFile::closeQuietly);
+        }
+    }
+
+    /**
+     * Writes events sorted by user and ID to the next archive file.
+     *
+     * @return the path of the written file.
+     */
+    private Path writeFile(Iterator<UserEvent> events) {
+        try {
+            Files.createDirectories(directory);
+            Path target = directory.resolve(String.format("feed-%020d.arc", lastFileNumber() + 1));
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeBlocks(channel, events);
+                channel.force(true);
+            }
+            filesLock.writeLock().lock();
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                filesLock.writeLock().unlock();
+            }
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write feed archive file in " + directory, e);
+        }
+    }
+
+    private void writeBlocks(FileChannel channel, Iterator<UserEvent> events) throws IOException {
+        List<BlockInfo> blocks = new ArrayList<>();
+        List<UserEvent> block = new ArrayList<>(blockSize);
+        long position = 0;
+        while (events.hasNext()) {
+            block.add(events.next());
+            if (block.size() == blockSize || !events.hasNext()) {
+                byte[] content = encodeBlock(block);
+                channel.write(ByteBuffer.wrap(content));
+                blocks.add(new BlockInfo(block.get(0).getUserId(), block.get(block.size() - 1).getUserId(),
+                        position, content.length));
+                position += content.length;
+                block.clear();
+            }
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(blocks.size() * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+        for (BlockInfo info : blocks) {
+            index.putLong(info.firstUserId()).putLong(info.lastUserId()).putLong(info.offset()).putInt(info.length());
+        }
+        index.putLong(position).putInt(blocks.size()).putLong(MAGIC);
+        index.flip();
+        while (index.hasRemaining()) {
+            channel.write(index);
+        }
+    }
+
+    private static byte[] encodeBlock(List<UserEvent> events) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        for (UserEvent event : events) {
+            for (String word : List.of(event.getEventType(), event.getOperation())) {
+                if (dictionary.putIfAbsent(word, words.size()) == null) {
+                    words.add(word);
+                }
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            writeVarLong(out, events.size());
+            writeVarLong(out, words.size());
+            for (String word : words) {
+                out.writeUTF(word);
+            }
+            long userId = 0;
+            long eventId = 0;
+            long timestamp = 0;
+            for (UserEvent event : events) {
+                // ID события пишется разностью с предыдущим только внутри одного пользователя
+                long userDelta = event.getUserId() - userId;
+                writeVarLong(out, userDelta);
+                writeVarLong(out, userDelta == 0 ? event.getEventId() - eventId : event.getEventId());
+                writeVarLong(out, zigZag(event.getTimestamp() - timestamp));
+                writeVarLong(out, dictionary.get(event.getEventType()));
+                writeVarLong(out, dictionary.get(event.getOperation()));
+                writeVarLong(out, event.getEntityId());
+                userId = event.getUserId();
+                eventId = event.getEventId();
+                timestamp = event.getTimestamp();
+            }
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<UserEvent> decodeBlock(byte[] content) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(content)))) {
+            int count = (int) readVarLong(in);
+            String[] words = new String[(int) readVarLong(in)];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readUTF();
+            }
+            List<UserEvent> events = new ArrayList<>(count);
+            long userId = 0;
+            long eventId = 0;
+            long timestamp = 0;
+            for (int i = 0; i < count; i++) {
+                long userDelta = readVarLong(in);
+                userId += userDelta;
+                eventId = userDelta == 0 ? eventId + readVarLong(in) : readVarLong(in);
+                timestamp += unZigZag(readVarLong(in));
+                UserEvent event = new UserEvent();
+                event.setUserId(userId);
+                event.setEventId(eventId);
+                event.setTimestamp(timestamp);
+                event.setEventType(words[(int) readVarLong(in)]);
+                event.setOperation(words[(int) readVarLong(in)]);
+                event.setEntityId(readVarLong(in));
+                events.add(event);
+            }
+            return events;
+        }
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Unexpected end of feed archive block");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in feed archive block");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long lastFileNumber() {
+        List<Path> files = listFiles();
+        if (files.isEmpty()) {
+            return 0;
+        }
+        Matcher matcher = FILE_NAME.matcher(files.get(files.size() - 1).getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    /**
+     * Lists the archive files, oldest first.
+     */
+    private List<Path> listFiles() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> list = Files.list(directory)) {
+            return list.filter(path -> FILE_NAME.matcher(path.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list feed archive " + directory, e);
+        }
+    }
+
+    /**
+     * Position and user ID range of a compressed block.
+     */
+    private record BlockInfo(long firstUserId, long lastUserId, long offset, int length) {
+    }
+
+    /**
+     * An open archive file with its block index.
+     */
+    private static final class ArchiveFile implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final List<BlockInfo> blocks = new ArrayList<>();
+
+        ArchiveFile(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                readIndex();
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void readIndex() throws IOException {
+            long size = channel.size();
+            if (size < TRAILER_SIZE) {
+                throw new IOException("Feed archive file " + path + " is truncated");
+            }
+            ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int blockCount = trailer.getInt();
+            if (trailer.getLong() != MAGIC || indexOffset + (long) blockCount * INDEX_ENTRY_SIZE + TRAILER_SIZE != size) {
+                throw new IOException("Feed archive file " + path + " is corrupt");
+            }
+            ByteBuffer index = read(indexOffset, blockCount * INDEX_ENTRY_SIZE);
+            for (int i = 0; i < blockCount; i++) {
+                blocks.add(new BlockInfo(index.getLong(), index.getLong(), index.getLong(), index.getInt()));
+            }
+        }
+
+        List<UserEvent> readBlock(BlockInfo block) throws IOException {
+            return decodeBlock(read(block.offset(), block.length()).array());
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Feed archive file " + path + " is truncated");
+                }
+            }
+            return buffer.flip();
+        }
+
+        /**
+         * Iterates over the events of the file in order, inflating one block at a time.
+         */
+        Iterator<UserEvent> events() {
+            return new Iterator<>() {
+                private int nextBlock;
+                private Iterator<UserEvent> current = List.<UserEvent>of().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && nextBlock < blocks.size()) {
+                        try {
+                            current = readBlock(blocks.get(nextBlock++)).iterator();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException("Failed to read feed archive file " + path, e);
+                        }
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public UserEvent next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        void closeQuietly() {
+            try {
+                close();
+            } catch (IOException e) {
+                log.warn("Failed to close feed archive file {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * Merges the events of sorted files into one sorted sequence without duplicates.
+     */
+    private static final class MergingIterator implements Iterator<UserEvent> {
+
+        private final PriorityQueue<Source> sources = new PriorityQueue<>(
+                Comparator.comparing(Source::head, BY_USER_AND_ID));
+        private UserEvent last;
+
+        MergingIterator(List<ArchiveFile> files) {
+            files.stream()
+                    .map(file -> new Source(file.events()))
+                    .filter(Source::advance)
+                    .forEach(sources::add);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!sources.isEmpty() && last != null && isSame(sources.peek().head(), last)) {
+                poll();
+            }
+            return !sources.isEmpty();
+        }
+
+        @Override
+        public UserEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = poll();
+            return last;
+        }
+
+        private UserEvent poll() {
+            Source source = sources.poll();
+            UserEvent head = source.head();
+            if (source.advance()) {
+                sources.add(source);
+            }
+            return head;
+        }
+
+        private static boolean isSame(UserEvent event, UserEvent other) {
+            return event.getUserId().equals(other.getUserId()) && event.getEventId() == other.getEventId();
+        }
+
+        private static final class Source {
+
+            private final Iterator<UserEvent> events;
+            private UserEvent head;
+
+            Source(Iterator<UserEvent> events) {
+                this.events = events;
+            }
+
+            UserEvent head() {
+                return head;
+            }
+
+            boolean advance() {
+                head = events.hasNext() ? events.next() : null;
+                return head != null;
+            }
+        }
+    }
+}
@@ -1,46 +1,169 @@
 package ru.yandex.practicum.filmorate.dal.feed;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.model.UserEvent;
 
-import java.sql.PreparedStatement;
-import java.util.Objects;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.INSERT_USER_EVENTS;
+import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.DELETE_USER_EVENTS_RANGE;
+import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.SELECT_LAST_EVENT_ID;
+import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.SELECT_LAST_EVENT_OVER_LIMIT;
+import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.SELECT_LAST_EXPIRED_EVENTS;
+import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.SELECT_USERS_OVER_LIMIT;
 
+@Slf4j
 @Component
+@Profile("!memory")
 public class FeedDbStorage implements FeedStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FeedEventWriter eventWriter;
+    private final AtomicLong eventIds = new AtomicLong();
 
-    public FeedDbStorage(JdbcTemplate jdbcTemplate) {
+    public FeedDbStorage(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                         FeedEventWriter eventWriter) {
 
         this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.eventWriter = eventWriter;
+    }
+
+    /**
+     * Continues the event IDs after the last stored event.
+     */
+    @PostConstruct
+    public void loadLastEventId() {
+        eventIds.set(jdbcTemplate.queryForObject(SELECT_LAST_EVENT_ID, Long.class));
     }
 
     /**
      * Adds a new user event to the database.
+     * The event gets its ID at once and is written by the {@link FeedEventWriter}, so the events of concurrent
+     * requests share its batches. Within a transaction, the {@code sync} mode passes the event to the writer
+     * just before the transaction commits and waits for it there: a failed write rolls the change back, and
+     * the events of concurrent commits go in one batch. The {@code async} mode passes the event when the
+     * transaction commits. Either way events of changes rolled back before the commit are never written.
+     * Without a transaction the event goes to the writer right away.
+     * The event is then published as an application event, so in-process listeners
+     * can react to likes, reviews and friendships.
      *
      * @param userEvent the UserEvent object representing the user event to be added
      */
     @Override
     public void addEvent(UserEvent userEvent) {
-        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        userEvent.setEventId(eventIds.incrementAndGet());
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            eventWriter.write(userEvent);
+        } else if (eventWriter.isSynchronous()) {
+            beforeCommit(userEvent);
+        } else {
+            afterCommit(() -> eventWriter.write(userEvent));
+        }
+        eventPublisher.publishEvent(userEvent);
+    }
+
+    /**
+     * Waits until the events added before the call are written, so a following read sees them.
+     */
+    public void flush() {
+        eventWriter.flush();
+    }
+
+    /**
+     * Finds the events to retire. Expired events are found through the index on the event time.
+     * For the limit, the users with too many events are counted first; for each of them the newest event
+     * over the limit is then found by skipping the limit in the {@code (user_id, event_id DESC)} index.
+     *
+     * @param expiresBefore    the time in milliseconds since epoch before which events expire; {@code 0} for no limit.
+     * @param maxEventsPerUser the number of newest events kept per user; {@code 0} for no limit.
+     * @return a map of user IDs to the ID of the newest event of the user to retire.
+     */
+    @Override
+    public Map<Long, Long> findExpiredEvents(long expiresBefore, int maxEventsPerUser) {
+        Map<Long, Long> expired = new HashMap<>();
+        RowCallbackHandler collector = rs -> {
+            expired.merge(rs.getLong("user_id"), rs.getLong("event_id"), Math::max);
+        };
+        if (expiresBefore > 0) {
+            jdbcTemplate.query(SELECT_LAST_EXPIRED_EVENTS, collector, new Timestamp(expiresBefore));
+        }
+        if (maxEventsPerUser > 0) {
+            List<Long> userIds = jdbcTemplate.queryForList(SELECT_USERS_OVER_LIMIT, Long.class, maxEventsPerUser);
+            for (long userId : userIds) {
+                jdbcTemplate.query(SELECT_LAST_EVENT_OVER_LIMIT, collector, userId, maxEventsPerUser);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Removes the events of a user with IDs in the given range, after writing the buffered events.
+     *
+     * @param userId      the ID of the user.
+     * @param fromEventId the ID of the first event to remove.
+     * @param toEventId   the ID of the last event to remove.
+     * @return the number of removed events.
+     */
+    @Override
+    public int removeEvents(long userId, long fromEventId, long toEventId) {
+        flush();
+        return jdbcTemplate.update(DELETE_USER_EVENTS_RANGE, userId, fromEventId, toEventId);
+    }
 
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(INSERT_USER_EVENTS, new String[]{"event_id"});
-            ps.setLong(1, userEvent.getUserId());
-            ps.setString(2, userEvent.getEventType());
-            ps.setString(3, userEvent.getOperation());
-            ps.setLong(4, userEvent.getEntityId());
-            ps.setTimestamp(5, new java.sql.Timestamp(userEvent.getTimestamp()));
-            return ps;
+    /**
+     * Writes an event just before the current transaction commits. The writer has a connection of its own,
+     * so waiting for it here does not block the pool; if the commit itself fails afterwards, the event stays.
+     *
+     * @param userEvent the event to write.
+     */
+    private void beforeCommit(UserEvent userEvent) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean written;
 
-        }, keyHolder);
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                eventWriter.write(userEvent);
+                written = true;
+            }
 
-        userEvent.setEventId(Objects.requireNonNull(keyHolder.getKey().longValue()));
+            @Override
+            public void afterCompletion(int status) {
+                if (written && status != STATUS_COMMITTED) {
+                    log.warn("Feed event {} is written, but its transaction did not commit", userEvent.getEventId());
+                }
+            }
+        });
+    }
 
+    /**
+     * Runs an action once the current transaction commits. The change is committed by then,
+     * so a failure of the action is logged rather than thrown at the caller.
+     *
+     * @param action the action to run.
+     */
+    private void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    log.error("Failed to pass a feed event to the writer after commit", e);
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,298 @@
+package ru.yandex.practicum.filmorate.dal.feed;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants.INSERT_USER_EVENTS;
+
+/**
+ * Writes feed events to the database in JDBC batches from a dedicated thread.
+ * <p>
+ * Events are put into a bounded buffer; the writer thread takes everything buffered, up to the batch size,
+ * and inserts it with one batch statement. A caller finding the buffer full waits for space, which slows
+ * producers down to the rate the database sustains. With {@code filmorate.feed.durability=sync} a caller
+ * also waits until its batch is written, so events of concurrent requests share one round trip; with
+ * {@code async} it returns as soon as the event is buffered, and events buffered at shutdown are still
+ * written, but a crash loses them.
+ * </p>
+ * <p>
+ * The writer thread keeps a connection of its own for its whole life instead of borrowing one from the pool
+ * per batch. Producers may wait for buffer space while their transaction still holds a pooled connection;
+ * if the writer needed the pool as well, a burst occupying every connection would never drain.
+ * </p>
+ * <p>
+ * If a batch fails, its events are inserted one by one, so a single bad event does not take the others
+ * down with it. A failure of any kind fails only the events it concerns and the writer thread keeps running:
+ * every producer waits on it.
+ * </p>
+ */
+@Slf4j
+@Component
+@Profile("!memory")
+public class FeedEventWriter {
+
+    private static final Set<String> DURABILITY_MODES = Set.of("sync", "async");
+
+    private final DataSource dataSource;
+    private final BlockingQueue<PendingEvent> buffer;
+    private final int batchSize;
+    private final boolean synchronous;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Используются только потоком записи
+    private Connection connection;
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructor for {@code FeedEventWriter}.
+     *
+     * @param dataSource   the data source the writer takes its connection from.
+     * @param bufferSize   the maximum number of buffered events.
+     * @param batchSize    the maximum number of events in one batch.
+     * @param durability   {@code sync} to return after the event is written, {@code async} after it is buffered.
+     */
+    public FeedEventWriter(DataSource dataSource,
+                           @Value("${filmorate.feed.buffer-size:8192}") int bufferSize,
+                           @Value("${filmorate.feed.batch-size:256}") int batchSize,
+                           @Value("${filmorate.feed.durability:sync}") String durability) {
+        if (!DURABILITY_MODES.contains(durability)) {
+            throw new IllegalArgumentException("Unknown feed durability mode: " + durability);
+        }
+        this.dataSource = dataSource;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+        this.synchronous = "sync".equals(durability);
+        this.writer = new Thread(this::writeLoop, "feed-writer");
+    }
+
+    /**
+     * Opens the writer's connection and starts the writer thread.
+     *
+     * @throws IllegalStateException if no connection can be opened.
+     */
+    @PostConstruct
+    public void start() {
+        // Соединение берётся до первых событий, пока пул ещё не занят запросами
+        try {
+            jdbcTemplate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to open a connection for the feed writer", e);
+        }
+        writer.start();
+    }
+
+    /**
+     * Writes the buffered events and stops the writer thread.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Tells whether callers wait until their events are written.
+     *
+     * @return {@code true} in the {@code sync} mode.
+     */
+    public boolean isSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Buffers an event for writing, waiting for space if the buffer is full.
+     * In the {@code sync} mode also waits until the event is written.
+     *
+     * @param event the event with its ID assigned.
+     * @throws DataAccessException if the event could not be written in the {@code sync} mode.
+     */
+    public void write(UserEvent event) {
+        PendingEvent pending = new PendingEvent(event, synchronous ? new CompletableFuture<>() : null);
+        enqueue(pending);
+        if (synchronous) {
+            await(pending);
+        }
+    }
+
+    /**
+     * Waits until the events buffered before the call are written.
+     * In the {@code sync} mode every acknowledged event is already written, so this returns at once.
+     */
+    public void flush() {
+        if (synchronous) {
+            return;
+        }
+        PendingEvent marker = new PendingEvent(null, new CompletableFuture<>());
+        enqueue(marker);
+        await(marker);
+    }
+
+    private void enqueue(PendingEvent pending) {
+        if (!running) {
+            throw new IllegalStateException("Feed writer is stopped");
+        }
+        try {
+            if (!buffer.offer(pending)) {
+                log.debug("Feed buffer is full, waiting for the writer");
+                buffer.put(pending);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the feed writer", e);
+        }
+    }
+
+    private void await(PendingEvent pending) {
+        try {
+            pending.written().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingEvent first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                // Поток останавливается только через stop(), чтобы не потерять буфер
+                continue;
+            }
+            buffer.drainTo(batch, batchSize - 1);
+            writeBatch(batch);
+            batch.clear();
+        }
+        closeConnection();
+    }
+
+    /**
+     * Returns the template over the writer's own connection, opening a new connection if there is none
+     * or the previous one broke.
+     */
+    private JdbcTemplate jdbcTemplate() throws SQLException {
+        if (connection != null && !connection.isValid(1)) {
+            log.warn("Feed writer connection is no longer valid, opening a new one");
+            closeConnection();
+        }
+        if (connection == null) {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        }
+        return jdbcTemplate;
+    }
+
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // При остановке JVM H2 может закрыть базу раньше писателя, трассировка здесь ничего не даёт
+            log.debug("Failed to close the feed writer connection: {}", e.getMessage());
+        }
+        connection = null;
+        jdbcTemplate = null;
+    }
+
+    private void writeBatch(List<PendingEvent> batch) {
+        List<UserEvent> events = batch.stream()
+                .map(PendingEvent::event)
+                .filter(Objects::nonNull)
+                .toList();
+        try {
+            if (!events.isEmpty()) {
+                jdbcTemplate().batchUpdate(INSERT_USER_EVENTS, events, events.size(), FeedEventWriter::setValues);
+            }
+            batch.forEach(pending -> complete(pending, null));
+        } catch (RuntimeException | SQLException e) {
+            // Кроме ошибок базы сюда попадают и ошибки самих событий, например NPE на пустом поле
+            log.warn("Failed to write a batch of {} feed events, writing them one by one", events.size(), e);
+            batch.forEach(this::writeOne);
+        }
+    }
+
+    private void writeOne(PendingEvent pending) {
+        if (pending.event() == null) {
+            complete(pending, null);
+            return;
+        }
+        try {
+            jdbcTemplate().update(INSERT_USER_EVENTS, ps -> setValues(ps, pending.event()));
+            complete(pending, null);
+        } catch (DuplicateKeyException e) {
+            // Событие успело записаться до сбоя пакета
+            complete(pending, null);
+        } catch (RuntimeException e) {
+            log.error("Failed to write feed event {}", pending.event(), e);
+            complete(pending, e);
+        } catch (SQLException e) {
+            log.error("Failed to open a connection for feed event {}", pending.event(), e);
+            complete(pending, new IllegalStateException("No connection for the feed writer", e));
+        }
+    }
+
+    private static void complete(PendingEvent pending, RuntimeException failure) {
+        if (pending.written() == null) {
+            return;
+        }
+        if (failure == null) {
+            pending.written().complete(null);
+        } else {
+            pending.written().completeExceptionally(failure);
+        }
+    }
+
+    private static void setValues(PreparedStatement ps, UserEvent event) throws SQLException {
+        ps.setLong(1, event.getEventId());
+        ps.setLong(2, event.getUserId());
+        ps.setString(3, event.getEventType());
+        ps.setString(4, event.getOperation());
+        ps.setLong(5, event.getEntityId());
+        ps.setTimestamp(6, new Timestamp(event.getTimestamp()));
+    }
+
+    /**
+     * A buffered event with the future its writer waits on, if any.
+     * An entry without an event marks a point in the buffer for {@link #flush()}.
+     */
+    private record PendingEvent(UserEvent event, CompletableFuture<Void> written) {
+    }
+}
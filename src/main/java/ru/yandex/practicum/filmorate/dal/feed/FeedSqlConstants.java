@@ -2,7 +2,34 @@ package ru.yandex.practicum.filmorate.dal.feed;
 
 public interface FeedSqlConstants {
 
+    // ID событий выдаёт приложение, чтобы вставлять их пакетами без возврата сгенерированных ключей
     String INSERT_USER_EVENTS = """
-            INSERT INTO user_events (user_id, event_type, operation, entity_id ,timestamp) VALUES (?, ?, ?, ?, ?)
+            INSERT INTO user_events (event_id, user_id, event_type, operation, entity_id, timestamp)
+            VALUES (?, ?, ?, ?, ?, ?)
             """;
+    String SELECT_LAST_EVENT_ID = "SELECT COALESCE(MAX(event_id), 0) FROM user_events";
+    // Новейшее устаревшее событие каждого пользователя; более старые события устарели тоже
+    String SELECT_LAST_EXPIRED_EVENTS = """
+            SELECT user_id, MAX(event_id) AS event_id
+            FROM user_events
+            WHERE timestamp < ?
+            GROUP BY user_id
+            """;
+    // Пользователи с событиями сверх лимита; события считаются по индексу, без чтения строк таблицы
+    String SELECT_USERS_OVER_LIMIT = """
+            SELECT user_id
+            FROM user_events
+            GROUP BY user_id
+            HAVING COUNT(*) > ?
+            """;
+    // Новейшее событие сверх лимита: индекс (user_id, event_id DESC) отсчитывает лимит от конца ленты.
+    // Без подсказки H2 выбирает индекс внешнего ключа по user_id и сортирует всю ленту пользователя
+    String SELECT_LAST_EVENT_OVER_LIMIT = """
+            SELECT user_id, event_id
+            FROM user_events USE INDEX (idx_user_events_user_event)
+            WHERE user_id = ?
+            ORDER BY user_id, event_id DESC
+            OFFSET ? ROWS FETCH FIRST 1 ROW ONLY
+            """;
+    String DELETE_USER_EVENTS_RANGE = "DELETE FROM user_events WHERE user_id = ? AND event_id BETWEEN ? AND ?";
 }
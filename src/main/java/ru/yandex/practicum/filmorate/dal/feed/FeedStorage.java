@@ -2,6 +2,8 @@ package ru.yandex.practicum.filmorate.dal.feed;
 
 import ru.yandex.practicum.filmorate.model.UserEvent;
 
+import java.util.Map;
+
 public interface FeedStorage {
     /**
      * Adds a new user event.
@@ -9,4 +11,24 @@ public interface FeedStorage {
      * @param userEvent the UserEvent object representing the new event
      */
     void addEvent(UserEvent userEvent);
+
+    /**
+     * Finds the events to retire: those older than the given time and those beyond the newest
+     * {@code maxEventsPerUser} events of their user.
+     *
+     * @param expiresBefore    the time in milliseconds since epoch before which events expire; {@code 0} for no limit.
+     * @param maxEventsPerUser the number of newest events kept per user; {@code 0} for no limit.
+     * @return a map of user IDs to the ID of the newest event of the user to retire, together with all older ones.
+     */
+    Map<Long, Long> findExpiredEvents(long expiresBefore, int maxEventsPerUser);
+
+    /**
+     * Removes the events of a user with IDs in the given range.
+     *
+     * @param userId      the ID of the user.
+     * @param fromEventId the ID of the first event to remove.
+     * @param toEventId   the ID of the last event to remove.
+     * @return the number of removed events.
+     */
+    int removeEvents(long userId, long fromEventId, long toEventId);
 }
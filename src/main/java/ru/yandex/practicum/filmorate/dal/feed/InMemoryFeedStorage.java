@@ -0,0 +1,159 @@
+package ru.yandex.practicum.filmorate.dal.feed;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory implementation of {@link FeedStorage}, active with the {@code memory} profile.
+ * Events are kept per user in the {@link MemoryDatabase}.
+ */
+@Component
+@Profile("memory")
+public class InMemoryFeedStorage implements FeedStorage {
+
+    private final MemoryDatabase database;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InMemoryFeedStorage(MemoryDatabase database, ApplicationEventPublisher eventPublisher) {
+        this.database = database;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Adds a new user event with the next event ID.
+     * The saved event is then published as an application event, like {@link FeedDbStorage} does.
+     *
+     * @param userEvent the UserEvent object representing the user event to be added
+     */
+    @Override
+    public void addEvent(UserEvent userEvent) {
+        UserEvent saved = copy(userEvent);
+        database.insertEvent(saved);
+        userEvent.setEventId(saved.getEventId());
+        eventPublisher.publishEvent(userEvent);
+    }
+
+    /**
+     * Retrieves the events of a user, oldest first.
+     *
+     * @param userId the ID of the user.
+     * @return a new list of copies of the user's events.
+     */
+    public List<UserEvent> getEvents(long userId) {
+        return database.events().read(userId, events -> events == null
+                ? List.of()
+                : events.stream().map(InMemoryFeedStorage::copy).toList());
+    }
+
+    /**
+     * Retrieves a page of events of a user, newest first.
+     * The events of a user are ordered by ID, so the page starts at the position found by binary search.
+     *
+     * @param userId   the ID of the user.
+     * @param beforeId the ID of the event before which the page starts.
+     * @param limit    the maximum number of events in the page.
+     * @return a new list of copies of the user's events with IDs less than {@code beforeId}.
+     */
+    public List<UserEvent> getEvents(long userId, long beforeId, int limit) {
+        return database.events().read(userId, events -> {
+            if (events == null) {
+                return List.of();
+            }
+            int low = 0;
+            int high = events.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (events.get(middle).getEventId() < beforeId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            List<UserEvent> page = new ArrayList<>(Math.min(limit, low));
+            for (int i = low - 1; i >= 0 && page.size() < limit; i--) {
+                page.add(copy(events.get(i)));
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Retrieves a page of events of a user that follow a given event, oldest first.
+     * The page starts at the position found by binary search, like the backward page.
+     *
+     * @param userId  the ID of the user.
+     * @param afterId the ID of the event after which the page starts.
+     * @param limit   the maximum number of events in the page.
+     * @return a new list of copies of the user's events with IDs greater than {@code afterId}.
+     */
+    public List<UserEvent> getEventsAfter(long userId, long afterId, int limit) {
+        return database.events().read(userId, events -> {
+            if (events == null) {
+                return List.of();
+            }
+            int low = 0;
+            int high = events.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (events.get(middle).getEventId() <= afterId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            List<UserEvent> page = new ArrayList<>(Math.min(limit, events.size() - low));
+            for (int i = low; i < events.size() && page.size() < limit; i++) {
+                page.add(copy(events.get(i)));
+            }
+            return page;
+        });
+    }
+
+    /**
+     * Finds the events to retire by scanning the feeds of all users.
+     * A feed is ordered by ID, and so by time, so its expired events are at its start.
+     *
+     * @param expiresBefore    the time in milliseconds since epoch before which events expire; {@code 0} for no limit.
+     * @param maxEventsPerUser the number of newest events kept per user; {@code 0} for no limit.
+     * @return a map of user IDs to the ID of the newest event of the user to retire.
+     */
+    @Override
+    public Map<Long, Long> findExpiredEvents(long expiresBefore, int maxEventsPerUser) {
+        Map<Long, Long> expired = new HashMap<>();
+        database.events().forEach(events -> {
+            int count = maxEventsPerUser > 0 ? Math.max(0, events.size() - maxEventsPerUser) : 0;
+            while (count < events.size() && events.get(count).getTimestamp() < expiresBefore) {
+                count++;
+            }
+            if (count > 0) {
+                UserEvent last = events.get(count - 1);
+                expired.put(last.getUserId(), last.getEventId());
+            }
+        });
+        return expired;
+    }
+
+    @Override
+    public int removeEvents(long userId, long fromEventId, long toEventId) {
+        return database.removeEvents(userId, fromEventId, toEventId);
+    }
+
+    private static UserEvent copy(UserEvent event) {
+        UserEvent copy = new UserEvent();
+        copy.setEventId(event.getEventId());
+        copy.setTimestamp(event.getTimestamp());
+        copy.setUserId(event.getUserId());
+        copy.setEventType(event.getEventType());
+        copy.setOperation(event.getOperation());
+        copy.setEntityId(event.getEntityId());
+        return copy;
+    }
+}
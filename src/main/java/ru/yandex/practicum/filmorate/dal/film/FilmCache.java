@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded read-through cache of assembled {@link Film} aggregates keyed by film ID.
+ * <p>
+ * Entries are evicted in least-recently-used order once the cache holds {@code maxSize} films.
+ * The cache stores and returns copies, so callers may modify the films they receive.
+ * Every invalidation bumps a generation counter and records it for the invalidated film; a film whose load
+ * started before its own invalidation is not cached, which prevents a slow reader from putting back data
+ * that a concurrent write has just replaced. Invalidations of other films, such as likes of a popular film,
+ * do not stop concurrent loads from being cached. Only the latest {@value #MAX_TRACKED_INVALIDATIONS}
+ * invalidations are recorded; a load older than all of them is not cached.
+ * </p>
+ */
+@Component
+public class FilmCache {
+
+    private static final int MAX_TRACKED_INVALIDATIONS = 4096;
+
+    private final int maxSize;
+    private final Map<Long, Film> films;
+    private final Map<Long, Long> invalidations;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long generation;
+    private long oldestTrackedGeneration;
+
+    /**
+     * Constructs a new {@code FilmCache}.
+     *
+     * @param maxSize the maximum number of cached films.
+     */
+    public FilmCache(@Value("${filmorate.cache.films.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.films = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Film> eldest) {
+                if (size() > FilmCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        // Порядок вставки совпадает с порядком поколений: запись удаляется перед повторной вставкой
+        this.invalidations = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                if (size() > MAX_TRACKED_INVALIDATIONS) {
+                    oldestTrackedGeneration = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the cached film.
+     *
+     * @param filmId the ID of the film.
+     * @return the cached film, or {@code null} if it is not cached.
+     */
+    public synchronized Film get(long filmId) {
+        Film film = films.get(filmId);
+        if (film == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(film);
+    }
+
+    /**
+     * Returns the current generation, to be passed to {@link #put(Film, long)} after loading a film.
+     *
+     * @return the number of invalidations so far.
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Caches a copy of a loaded film unless the film was invalidated since the load started.
+     *
+     * @param film       the loaded film.
+     * @param generation the generation observed before loading.
+     */
+    public synchronized void put(Film film, long generation) {
+        if (maxSize > 0 && generation >= oldestTrackedGeneration
+                && invalidations.getOrDefault(film.getId(), 0L) <= generation) {
+            films.put(film.getId(), copy(film));
+        }
+    }
+
+    /**
+     * Removes a film from the cache.
+     *
+     * @param filmId the ID of the changed or deleted film.
+     */
+    public synchronized void invalidate(long filmId) {
+        generation++;
+        invalidations.remove(filmId);
+        invalidations.put(filmId, generation);
+        films.remove(filmId);
+    }
+
+    /**
+     * Removes all films of a director from the cache.
+     *
+     * @param directorId the ID of the changed or deleted director.
+     */
+    public synchronized void invalidateDirector(int directorId) {
+        // Фильмы режиссёра в загрузке неизвестны, поэтому не кэшируется ни одна начатая загрузка
+        generation++;
+        oldestTrackedGeneration = generation;
+        films.values().removeIf(film -> film.getDirectors().stream()
+                .mapToInt(Director::getId)
+                .anyMatch(id -> id == directorId));
+    }
+
+    /**
+     * Returns the cache counters.
+     *
+     * @return the numbers of hits, misses and evictions and the current size.
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, films.size(), maxSize);
+    }
+
+    private static Film copy(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setLikes(film.getLikes());
+        copy.setMpa(film.getMpa());
+        copy.setGenres(new HashSet<>(film.getGenres()));
+        copy.setDirectors(new HashSet<>(film.getDirectors()));
+        return copy;
+    }
+
+    /**
+     * Film cache counters.
+     *
+     * @param hits      the number of lookups served from the cache.
+     * @param misses    the number of lookups that went to the database.
+     * @param evictions the number of films evicted because the cache was full.
+     * @param size      the number of currently cached films.
+     * @param maxSize   the maximum number of cached films.
+     */
+    public record Stats(long hits, long misses, long evictions, int size, int maxSize) {
+    }
+}
@@ -1,9 +1,15 @@
 package ru.yandex.practicum.filmorate.dal.film;
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.yandex.practicum.filmorate.dal.feed.FeedDbStorage;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -15,22 +21,41 @@ import java.sql.Date;
 import java.sql.*;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of {@link FilmStorage} that interacts with the database using JDBC.
  * Provides methods to manage films, their likes, associated genres, and MPA ratings.
+ * The ranking of films by likes is served from an in-memory {@link FilmPopularityIndex},
+ * single films are read through the {@link FilmCache} and recommendations come from the {@link FilmLikesIndex}.
  */
 
+@Slf4j
 @Repository("filmDbStorage")
+@Profile("!memory")
 public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
 
+    /**
+     * Maximum number of film IDs passed in a single {@code IN} list.
+     */
+    private static final int IN_BATCH_SIZE = 1000;
+
+    /**
+     * Number of films read and assembled at once while streaming the catalog.
+     */
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<Film> filmRowMapper;
     private final RowMapper<Mpa> mpaRowMapper;
     private final RowMapper<Genre> genreRowMapper;
     private final RowMapper<Director> directorRowMapper;
     private final FeedDbStorage feedDbStorage;
+    private final FilmCache filmCache;
+    private final FilmSearchIndex searchIndex;
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex();
+    private final FilmLikesIndex likesIndex = new FilmLikesIndex();
 
     /**
      * Constructs a new {@code FilmDbStorage}.
@@ -40,19 +65,76 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
      * @param mpaRowMapper      the {@link RowMapper} for mapping {@link Mpa} rows.
      * @param genreRowMapper    the {@link RowMapper} for mapping {@link Genre} rows.
      * @param directorRowMapper the {@link RowMapper} for mapping {@link Director} rows.
+     * @param feedDbStorage     the storage for user feed events.
+     * @param filmCache         the cache of assembled films.
+     * @param searchIndex       the full-text index over titles and director names.
+     * @param likesReconciler   the job repairing the like counters; required so that it runs before
+     *                          the indexes are loaded from the counters.
      */
     public FilmDbStorage(JdbcTemplate jdbcTemplate,
                          RowMapper<Film> filmRowMapper,
                          RowMapper<Mpa> mpaRowMapper,
                          RowMapper<Genre> genreRowMapper,
                          RowMapper<Director> directorRowMapper,
-                         FeedDbStorage feedDbStorage) {
+                         FeedDbStorage feedDbStorage,
+                         FilmCache filmCache,
+                         FilmSearchIndex searchIndex,
+                         FilmLikesReconciler likesReconciler) {
         this.jdbcTemplate = jdbcTemplate;
         this.filmRowMapper = filmRowMapper;
         this.mpaRowMapper = mpaRowMapper;
         this.genreRowMapper = genreRowMapper;
         this.directorRowMapper = directorRowMapper;
         this.feedDbStorage = feedDbStorage;
+        this.filmCache = filmCache;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Loads the popularity index from the database.
+     * Runs before the application starts serving requests.
+     */
+    @PostConstruct
+    public void loadPopularityIndex() {
+        Map<Long, Film> filmMap = new HashMap<>();
+        jdbcTemplate.query(SQL_SELECT_LIKES_PER_FILM, rs -> {
+            Film film = new Film();
+            film.setId(rs.getLong("film_id"));
+            film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
+            film.setLikes(rs.getInt("likes"));
+            filmMap.put(film.getId(), film);
+        });
+        jdbcTemplate.query(SQL_SELECT_ALL_FILM_GENRES, rs -> {
+            Film film = filmMap.get(rs.getLong("film_id"));
+            if (film != null) {
+                film.getGenres().add(new Genre(rs.getInt("genre_id"), null));
+            }
+        });
+        popularityIndex.load(filmMap.values());
+    }
+
+    /**
+     * Registers the titles, directors and like counts of all films in the search index.
+     * Runs before the application starts serving requests.
+     */
+    @PostConstruct
+    public void loadSearchIndex() {
+        jdbcTemplate.query(SQL_SELECT_FILM_TITLES, rs -> {
+            int directorId = rs.getInt("film_director_id");
+            searchIndex.saveFilm(rs.getLong("film_id"), rs.getString("film_name"),
+                    rs.wasNull() ? List.of() : List.of(directorId), rs.getInt("likes_count"));
+        });
+    }
+
+    /**
+     * Loads the likes index used for recommendations from the database.
+     * Runs before the application starts serving requests.
+     */
+    @PostConstruct
+    public void loadLikesIndex() {
+        jdbcTemplate.query(SQL_SELECT_ALL_LIKES, rs -> {
+            likesIndex.addLike(rs.getLong("film_id"), rs.getLong("user_id"));
+        });
     }
 
     /**
@@ -65,8 +147,47 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         return extractFilms(SQL_SELECT_ALL_FILMS).values();
     }
 
+    /**
+     * Retrieves a page of films ordered by ID using keyset pagination.
+     *
+     * @param afterId the ID after which the page starts; {@code 0} for the first page.
+     * @param limit   the maximum number of films in the page.
+     * @return a {@link Collection} of films with IDs greater than {@code afterId}.
+     */
+    @Override
+    public Collection<Film> getFilms(long afterId, int limit) {
+        return extractFilms(SQL_SELECT_FILMS_PAGE, afterId, limit).values();
+    }
+
+    /**
+     * Streams all films page by page, each page read with keyset pagination over the primary key.
+     * Films are assembled in pages of {@value #STREAM_PAGE_SIZE}, so memory use does not depend on catalog size,
+     * and a connection is held only while a page is read.
+     *
+     * @param consumer the consumer receiving films one by one.
+     */
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        Map<Long, Film> page = new LinkedHashMap<>();
+        long afterId = 0;
+        int pageSize;
+
+        // H2 без LAZY_QUERY_EXECUTION материализует курсор целиком, поэтому каталог читается страницами по ключу
+        do {
+            jdbcTemplate.query(SQL_SELECT_FILMS_PAGE, rs -> {
+                mapFilmBase(rs, page);
+            }, afterId, STREAM_PAGE_SIZE);
+            pageSize = page.size();
+            if (pageSize > 0) {
+                afterId = page.keySet().stream().reduce((first, last) -> last).orElseThrow();
+            }
+            flushFilms(page, consumer);
+        } while (pageSize == STREAM_PAGE_SIZE);
+    }
+
     /**
      * Retrieves a film by its ID.
+     * The film is served from the {@link FilmCache} when possible and cached after being read from the database.
      *
      * @param id the ID of the film to retrieve.
      * @return the {@link Film} with the specified ID.
@@ -74,11 +195,64 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
      */
     @Override
     public Film getFilmById(long id) {
+        Film cachedFilm = filmCache.get(id);
+        if (cachedFilm != null) {
+            return cachedFilm;
+        }
+
+        long generation = filmCache.generation();
         Map<Long, Film> filmMap = extractFilms(SQL_SELECT_FILM_BY_ID, id);
         if (filmMap.isEmpty()) {
             throw new NotFoundException(String.format("Film with id = %d not found", id));
         }
-        return filmMap.get(id);
+        Film film = filmMap.get(id);
+        filmCache.put(film, generation);
+        return film;
+    }
+
+    /**
+     * Retrieves films by their IDs, keeping the order of the given IDs.
+     * Films found in the {@link FilmCache} are taken from it; the rest are read with
+     * {@code IN} lists of at most {@value #IN_BATCH_SIZE} IDs and cached.
+     * IDs of films that do not exist are skipped.
+     *
+     * @param filmIds the IDs of the films to retrieve.
+     * @return a {@link List} of {@link Film} objects in the order of {@code filmIds}.
+     */
+    @Override
+    public List<Film> getFilmsByIds(Collection<Long> filmIds) {
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Film> filmMap = new HashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        for (long filmId : new LinkedHashSet<>(filmIds)) {
+            Film cachedFilm = filmCache.get(filmId);
+            if (cachedFilm != null) {
+                filmMap.put(filmId, cachedFilm);
+            } else {
+                missingIds.add(filmId);
+            }
+        }
+
+        long generation = filmCache.generation();
+        for (int from = 0; from < missingIds.size(); from += IN_BATCH_SIZE) {
+            String ids = missingIds.subList(from, Math.min(from + IN_BATCH_SIZE, missingIds.size()))
+                    .stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", "));
+
+            extractFilms(String.format(SQL_SELECT_FILMS_BY_IDS, ids)).forEach((filmId, film) -> {
+                filmCache.put(film, generation);
+                filmMap.put(filmId, film);
+            });
+        }
+
+        return filmIds.stream()
+                .map(filmMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -110,7 +284,10 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         if (film.getGenres() != null) {
             updateFilmGenres(film);
         }
-        return getFilmById(film.getId());
+        Film addedFilm = getFilmById(film.getId());
+        popularityIndex.saveFilm(addedFilm);
+        indexForSearch(addedFilm);
+        return addedFilm;
     }
 
     /**
@@ -138,7 +315,11 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
             if (film.getGenres() != null) {
                 updateFilmGenres(film);
             }
-            return getFilmById(film.getId());
+            filmCache.invalidate(film.getId());
+            Film updatedFilm = getFilmById(film.getId());
+            popularityIndex.saveFilm(updatedFilm);
+            indexForSearch(updatedFilm);
+            return updatedFilm;
         } else {
             throw new NotFoundException(String.format("Film with id = %d not found", film.getId()));
         }
@@ -152,15 +333,21 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
     @Override
     public void deleteFilm(long id) {
         jdbcTemplate.update(SQL_DELETE_FILM, id);
+        filmCache.invalidate(id);
+        popularityIndex.removeFilm(id);
+        likesIndex.removeFilm(id);
+        searchIndex.removeFilm(id);
     }
 
     /**
      * Adds a like to a film by a user.
+     * The like row and the film's {@code likes_count} counter are written in the same transaction.
      *
      * @param filmId the ID of the {@link Film}.
      * @param userId the ID of the user liking the film.
      */
     @Override
+    @Transactional
     public void addLike(long filmId, long userId) {
         validateEntityExists(filmId, "Film", "films", "film_id");
         validateEntityExists(userId, "User", "users", "user_id");
@@ -169,6 +356,17 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
                 jdbcTemplate.queryForObject(SQL_SELECT_LIKE, Integer.class, filmId, userId)
         ).orElse(0);
 
+        if (existingLikes == 0) {
+            jdbcTemplate.update(SQL_INSERT_LIKE, filmId, userId);
+            jdbcTemplate.update(SQL_INCREMENT_LIKES_COUNT, filmId);
+            afterCommit(() -> {
+                filmCache.invalidate(filmId);
+                popularityIndex.changeLikes(filmId, 1);
+                searchIndex.changeLikes(filmId, 1);
+                likesIndex.addLike(filmId, userId);
+            });
+        }
+
         UserEvent userEvent = new UserEvent();
         userEvent.setUserId(userId);
         userEvent.setEventType("LIKE");
@@ -176,29 +374,31 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         userEvent.setEntityId(filmId);
         userEvent.setTimestamp(Instant.now().toEpochMilli());
         feedDbStorage.addEvent(userEvent);
-
-        if (existingLikes == 0) {
-            jdbcTemplate.update(SQL_INSERT_LIKE, filmId, userId);
-        }
     }
 
     /**
      * Removes a like from a film by a user.
+     * The like row and the film's {@code likes_count} counter are written in the same transaction.
      *
      * @param filmId the ID of the {@link Film}.
      * @param userId the ID of the user removing the like.
      */
     @Override
+    @Transactional
     public void removeLike(long filmId, long userId) {
 
         validateEntityExists(userId, "User", "users", "user_id");
 
-        int existingLikes = Optional.ofNullable(
-                jdbcTemplate.queryForObject(SQL_SELECT_LIKE, Integer.class, filmId, userId)
-        ).orElse(0);
+        int removedLikes = jdbcTemplate.update(SQL_DELETE_LIKE, filmId, userId);
 
-        if (existingLikes > 0) {
-            jdbcTemplate.update(SQL_DELETE_LIKE, filmId, userId);
+        if (removedLikes > 0) {
+            jdbcTemplate.update(SQL_DECREMENT_LIKES_COUNT, filmId);
+            afterCommit(() -> {
+                filmCache.invalidate(filmId);
+                popularityIndex.changeLikes(filmId, -1);
+                searchIndex.changeLikes(filmId, -1);
+                likesIndex.removeLike(filmId, userId);
+            });
 
             UserEvent userEvent = new UserEvent();
             userEvent.setUserId(userId);
@@ -210,6 +410,26 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         }
     }
 
+    /**
+     * Removes all likes left by a user and decrements the counters of the affected films.
+     *
+     * @param userId the ID of the user whose likes are removed.
+     */
+    @Override
+    @Transactional
+    public void removeUserLikes(long userId) {
+        List<Long> likedFilmIds = jdbcTemplate.queryForList(SQL_SELECT_FILM_IDS_LIKED_BY_USER, Long.class, userId);
+        jdbcTemplate.update(SQL_DECREMENT_LIKES_COUNT_BY_USER, userId);
+        jdbcTemplate.update(SQL_DELETE_LIKES_BY_USER, userId);
+        afterCommit(() -> {
+            likedFilmIds.forEach(filmId -> {
+                filmCache.invalidate(filmId);
+                popularityIndex.changeLikes(filmId, -1);
+                searchIndex.changeLikes(filmId, -1);
+            });
+            likesIndex.removeUser(userId);
+        });
+    }
 
     /**
      * Retrieves all films of a specific director, sorted by the specified criterion.
@@ -235,8 +455,9 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
 
     /**
      * Extracts a map of films from the database query result. Each film is identified by its unique ID.
-     * This method processes basic film data (such as ID, name, description, MPA rating, likes)
-     * and adds genres if they are present in the result set.
+     * The query returns one base row per film (ID, name, description, likes, MPA rating and director);
+     * genres are then loaded for all extracted films with batched {@code IN} queries and merged in memory,
+     * so a film never produces more than one row per query.
      *
      * @param sql    the SQL query string to execute.
      * @param params the parameters to pass into the query.
@@ -246,14 +467,9 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         Map<Long, Film> filmMap = new LinkedHashMap<>();
 
         jdbcTemplate.query(sql, rs -> {
-            Film film = mapFilmBase(rs, filmMap);
-
-            int genreId = rs.getInt("genre_id");
-            if (genreId > 0) {
-                Genre genre = genreRowMapper.mapRow(rs, rs.getRow());
-                film.getGenres().add(genre);
-            }
+            mapFilmBase(rs, filmMap);
         }, params);
+        enrichFilmGenres(filmMap);
 
         return filmMap;
     }
@@ -299,6 +515,80 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         });
     }
 
+    /**
+     * Completes a chunk of streamed films with their genres, hands them to the consumer and clears the chunk.
+     *
+     * @param chunk    the films of the page read last.
+     * @param consumer the consumer receiving films one by one.
+     */
+    private void flushFilms(Map<Long, Film> chunk, Consumer<Film> consumer) {
+        enrichFilmGenres(chunk);
+        chunk.values().forEach(consumer);
+        chunk.clear();
+    }
+
+    /**
+     * Adds genres to the given films, querying at most {@value #IN_BATCH_SIZE} films per {@code IN} list.
+     *
+     * @param filmMap the films to enrich, keyed by film ID.
+     */
+    private void enrichFilmGenres(Map<Long, Film> filmMap) {
+        List<Long> allFilmIds = new ArrayList<>(filmMap.keySet());
+
+        for (int from = 0; from < allFilmIds.size(); from += IN_BATCH_SIZE) {
+            String filmIds = allFilmIds.subList(from, Math.min(from + IN_BATCH_SIZE, allFilmIds.size()))
+                    .stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", "));
+
+            jdbcTemplate.query(String.format(SQL_SELECT_GENRES_FOR_FILMS, filmIds), rs -> {
+                long filmId = rs.getLong("film_id");
+                Genre genre = genreRowMapper.mapRow(rs, rs.getRow());
+
+                if (filmMap.containsKey(filmId)) {
+                    filmMap.get(filmId).getGenres().add(genre);
+                }
+            });
+        }
+    }
+
+    /**
+     * Registers the title, director and likes of a saved film in the search index.
+     *
+     * @param film the saved film.
+     */
+    private void indexForSearch(Film film) {
+        searchIndex.saveFilm(film.getId(), film.getName(), film.getDirectors()
+                .stream()
+                .map(Director::getId)
+                .toList(), film.getLikes());
+    }
+
+    /**
+     * Runs an action once the current transaction commits, or immediately if there is no transaction.
+     * Keeps in-memory indexes from observing changes that are later rolled back. After the commit the change
+     * stands, so a failure of the action is logged rather than thrown at the caller.
+     *
+     * @param action the action to run.
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // Изменение уже зафиксировано: исключение здесь вернуло бы клиенту 500 за сохранённый лайк
+                    try {
+                        action.run();
+                    } catch (RuntimeException e) {
+                        log.error("Failed to update the in-memory film indexes after commit", e);
+                    }
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     /**
      * Updates the genres associated with a {@link Film}.
      *
@@ -350,75 +640,72 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
         }
     }
 
+    /**
+     * Searches films by their title and/or their director's name, ignoring case.
+     * Matching films are found in the in-memory {@link FilmSearchIndex} and ranked by relevance
+     * (exact match, prefix, word start, any substring, match with typos), then by likes from the
+     * {@link FilmPopularityIndex}.
+     * Only the best {@code limit} matches are selected, with a bounded heap, and assembled
+     * through {@link #getFilmsByIds(Collection)}.
+     *
+     * @param query    the search query.
+     * @param criteria the set of search criteria: "title", "director", or both.
+     * @param mode     the matching mode: "substring", "prefix" or "fuzzy".
+     * @param limit    the maximum number of films to return.
+     * @return a {@link Collection} of matching films, most relevant first.
+     */
     @Override
-    public Collection<Film> searchFilms(String query, Set<String> criteria) {
-        // Начало SQL-запроса
-        StringBuilder sql = new StringBuilder(SQL_SEARCH_FILMS_BASE);
-
-        // Условия для поиска
-        List<String> conditions = new ArrayList<>();
-        List<Object> params = new ArrayList<>();
-
-        if (criteria.contains("title")) {
-            conditions.add("LOWER(f.film_name) LIKE LOWER(CONCAT('%', ?, '%'))");
-            params.add(query);
-        }
-        if (criteria.contains("director")) {
-            conditions.add("LOWER(d.director_name) LIKE LOWER(CONCAT('%', ?, '%'))");
-            params.add(query);
-        }
-
-        // Добавление WHERE условий
-        if (!conditions.isEmpty()) {
-            sql.append("WHERE ").append(String.join(" OR ", conditions)).append(" ");
-        }
-
-        // Группировка и сортировка
-        sql.append(SQL_SEARCH_FILMS_GROUP_SORT);
-
-        // Выполнение запроса
-        return jdbcTemplate.query(sql.toString(), params.toArray(), (rs, rowNum) -> {
-            Film film = new Film();
-            film.setId(rs.getLong("film_id"));
-            film.setName(rs.getString("film_name"));
-            film.setDescription(rs.getString("film_description"));
-            film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
-            film.setDuration(rs.getInt("film_duration"));
-
-            Mpa mpa = new Mpa();
-            mpa.setId(rs.getInt("mpa_rating_id"));
-            mpa.setName(rs.getString("mpa_rating_name"));
-            film.setMpa(mpa);
-
-            Director director = new Director();
-            director.setId(rs.getInt("director_id"));
-            director.setName(rs.getString("director_name"));
-            if (director.getId() != 0) {
-                film.getDirectors().add(director);
+    public Collection<Film> searchFilms(String query, Set<String> criteria, String mode, int limit) {
+        Map<Long, Integer> relevanceByFilm = searchIndex.search(query,
+                criteria.contains("title"), criteria.contains("director"), mode);
+        Map<Long, Integer> likesByFilm = new HashMap<>();
+        relevanceByFilm.keySet().forEach(filmId -> likesByFilm.put(filmId, popularityIndex.getLikes(filmId)));
+
+        Comparator<Long> ranking = Comparator.<Long>comparingInt(relevanceByFilm::get).reversed()
+                .thenComparing(Comparator.<Long>comparingInt(likesByFilm::get).reversed())
+                .thenComparing(Comparator.naturalOrder());
+        PriorityQueue<Long> best = new PriorityQueue<>(ranking.reversed());
+        for (long filmId : relevanceByFilm.keySet()) {
+            best.add(filmId);
+            if (best.size() > limit) {
+                best.poll();
             }
+        }
 
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("genre_id"));
-            genre.setName(rs.getString("genre_name"));
-            if (genre.getId() != 0) {
-                film.getGenres().add(genre);
-            }
+        List<Long> filmIds = new ArrayList<>(best);
+        filmIds.sort(ranking);
+        return getFilmsByIds(filmIds);
+    }
 
-            // Установка количества лайков
-            film.setLikes(rs.getInt("likes_count"));
+    /**
+     * Retrieves the IDs of the users who liked a film from the in-memory {@link FilmLikesIndex}.
+     *
+     * @param filmId the ID of the film.
+     * @return a {@link List} of user IDs in ascending order.
+     */
+    @Override
+    public List<Long> getUserIdsWhoLiked(long filmId) {
+        return likesIndex.getUserIds(filmId);
+    }
 
-            return film;
-        });
+    /**
+     * Retrieves the IDs of the films liked by a user from the in-memory {@link FilmLikesIndex}.
+     *
+     * @param userId the ID of the user.
+     * @return a {@link List} of film IDs in ascending order.
+     */
+    @Override
+    public List<Long> getLikedFilmIds(long userId) {
+        return likesIndex.getFilmIds(userId);
     }
 
     /**
      * Retrieves a list of common films liked by two users.
      * <p>
-     * This method queries the database to find films that are liked by both the user
-     * identified by {@code userId} and the user identified by {@code friendId}.
-     * It constructs a list of {@link Film} objects, each containing details about the film
-     * and its associated genres. The method ensures that duplicate films are not included
-     * in the result by using a map to track films by their unique identifiers.
+     * The films liked by both the user identified by {@code userId} and the user identified
+     * by {@code friendId} are found by intersecting their like sets in the {@link FilmLikesIndex};
+     * only those films are read from the database.
+     * Films are ordered by the number of likes, most liked first.
      *
      * @param userId   the ID of the first user
      * @param friendId the ID of the second user (friend)
@@ -426,107 +713,35 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
      */
     @Override
     public List<Film> getCommonFilms(long userId, long friendId) {
-        List<Film> commonFilms = new ArrayList<>();
-        Map<Long, Film> filmMap = new HashMap<>();
-
-        jdbcTemplate.query(SQL_GET_COMMON_FILMS, new Object[]{userId, friendId},
-                (rs) -> {
-                    long filmId = rs.getLong("film_id");
-                    Film film = filmMap.get(filmId);
-                    if (film == null) {
-                        film = new Film();
-                        film.setId(filmId);
-                        film.setName(rs.getString("film_name"));
-                        film.setDescription(rs.getString("film_description"));
-                        film.setReleaseDate(rs.getDate("film_release_date").toLocalDate());
-                        film.setDuration(rs.getInt("film_duration"));
-                        film.setLikes(rs.getInt("likes_count"));
-
-                        Mpa mpa = new Mpa();
-                        String mpaName = rs.getString("mpa_rating_name");
-                        mpa.setId(rs.getInt("film_mpa_rating_id"));
-                        mpa.setName(mpaName);
-                        film.setMpa(mpa);
-                        film.setGenres(new HashSet<>());
-                        filmMap.put(filmId, film);
-                    }
-
-                    String genreName = rs.getString("genre_name");
-                    Integer genreId = rs.getInt("genre_id");
-                    if (genreName != null) {
-                        Genre genre = new Genre();
-                        genre.setId(genreId);
-                        genre.setName(genreName);
-                        film.getGenres().add(genre);
-                    }
-                });
-
-        commonFilms.addAll(filmMap.values());
-
+        List<Film> commonFilms = new ArrayList<>(getFilmsByIds(likesIndex.getCommonFilmIds(userId, friendId)));
+        commonFilms.sort(Comparator.comparingInt(Film::getLikes).reversed().thenComparingLong(Film::getId));
         return commonFilms;
     }
 
     /**
-     * Retrieves a map of all users and the films they liked.
+     * Retrieves the IDs of films recommended to a user.
+     * Similar users are found through the in-memory {@link FilmLikesIndex}, visiting only users who share a like.
      *
-     * @return a {@link Map} where the key is the user ID and the value is a {@link Set} of film IDs liked by the user.
+     * @param userId the ID of the user to recommend films to.
+     * @param limit  the maximum number of films to return.
+     * @return a {@link List} of recommended film IDs, best first.
      */
     @Override
-    public Map<Long, Set<Long>> getAllUserLikes() {
-        String sql = """
-                    SELECT user_id, film_id
-                    FROM user_film_likes
-                """;
-
-        Map<Long, Set<Long>> userLikes = new HashMap<>();
-
-        jdbcTemplate.query(sql, rs -> {
-            Long userId = rs.getLong("user_id");
-            Long filmId = rs.getLong("film_id");
-            userLikes.computeIfAbsent(userId, k -> new HashSet<>()).add(filmId);
-        });
-
-        return userLikes;
+    public List<Long> getRecommendedFilmIds(long userId, int limit) {
+        return likesIndex.getRecommendedFilmIds(userId, limit);
     }
 
     /**
      * Retrieves the top films based on the number of likes, sorted in descending order.
      * Does not apply any additional filters such as genre or year.
+     * The ranking comes from the in-memory {@link FilmPopularityIndex}; only the selected films are read.
      *
      * @param count the maximum number of top films to retrieve.
      * @return a {@link Collection} of top {@link Film} objects.
      */
     @Override
     public Collection<Film> getTopFilms(int count) {
-        Map<Long, Film> filmMap = new LinkedHashMap<>();
-
-        jdbcTemplate.query(SQL_SELECT_TOP_FILMS, rs -> {
-            mapFilmBase(rs, filmMap);
-        }, count);
-
-        String genreSql = """
-                SELECT fg.film_id, g.genre_id, g.genre_name
-                FROM film_genres fg
-                JOIN genres g ON fg.genre_id = g.genre_id
-                WHERE fg.film_id IN (%s)
-                """;
-
-        String filmIds = filmMap.keySet().stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(", "));
-
-        if (!filmIds.isEmpty()) {
-            jdbcTemplate.query(String.format(genreSql, filmIds), rs -> {
-                long filmId = rs.getLong("film_id");
-                Genre genre = genreRowMapper.mapRow(rs, rs.getRow());
-
-                if (filmMap.containsKey(filmId)) {
-                    filmMap.get(filmId).getGenres().add(genre);
-                }
-            });
-        }
-
-        return filmMap.values();
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count));
     }
 
     /**
@@ -536,51 +751,16 @@ public class FilmDbStorage implements FilmStorage, FilmSqlConstants {
      *     <li>If {@code genreId} is provided, only films with the specified genre are included.</li>
      *     <li>If {@code year} is provided, only films released in the specified year are included.</li>
      * </ul>
+     * The ranking comes from the matching partition of the in-memory {@link FilmPopularityIndex},
+     * so the cost depends on {@code count} rather than on the size of the catalog.
      *
      * @param count   the maximum number of top films to retrieve.
      * @param genreId the ID of the genre to filter by (optional).
      * @param year    the year to filter by (optional).
      * @return a {@link Collection} of top {@link Film} objects.
-     * @throws NotFoundException if no films match the criteria.
      */
     @Override
     public Collection<Film> getTopFilms(int count, Integer genreId, Integer year) {
-        Map<Long, Film> filmMap = new LinkedHashMap<>();
-
-        // Формируем SQL-запрос
-        StringBuilder sql = new StringBuilder(SQL_SELECT_FILMS_WITH_FILTERS);
-
-        if (genreId != null) {
-            sql.append(" AND fg.genre_id = ").append(genreId);
-        }
-        if (year != null) {
-            sql.append(" AND EXTRACT(YEAR FROM f.film_release_date) = ").append(year);
-        }
-
-        sql.append(SQL_GROUP_SORT_LIMIT);
-
-        // Выполняем запрос и обрабатываем базовые данные фильмов
-        jdbcTemplate.query(sql.toString(), new Object[]{count}, rs -> {
-            mapFilmBase(rs, filmMap); // Заполняем основные данные фильма
-            filmMap.get(rs.getLong("film_id")).setLikes(rs.getInt("likes_count")); // Устанавливаем количество лайков
-        });
-
-        // Если фильмы найдены, добавляем жанры
-        String filmIds = filmMap.keySet().stream()
-                .map(String::valueOf)
-                .collect(Collectors.joining(", "));
-
-        if (!filmIds.isEmpty()) {
-            jdbcTemplate.query(String.format(SQL_SELECT_GENRES_FOR_FILMS, filmIds), rs -> {
-                long filmId = rs.getLong("film_id");
-                Genre genre = genreRowMapper.mapRow(rs, rs.getRow());
-
-                if (filmMap.containsKey(filmId)) {
-                    filmMap.get(filmId).getGenres().add(genre); // Добавляем жанры к фильму
-                }
-            });
-        }
-
-        return filmMap.values();
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count, genreId, year));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,339 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory like matrix used for recommendations and common films.
+ * <p>
+ * The index keeps the set of users per film and the set of films per user, both as compressed
+ * {@link IntBitmap}s, so a like costs a few bytes instead of a boxed {@code Long} in a hash set.
+ * To find users similar to a given user, only the users who liked at least one of that user's films
+ * are visited, and their similarity is the cardinality of the intersection of two film sets.
+ * The index is filled from storage at startup and then updated on every like, unlike,
+ * film deletion and user deletion.
+ * </p>
+ */
+public class FilmLikesIndex {
+
+    /**
+     * Number of most similar users whose likes are aggregated into recommendations.
+     */
+    private static final int NEIGHBOURS = 30;
+
+    private static final Comparator<Neighbour> WORST_NEIGHBOUR_FIRST = Comparator
+            .comparingDouble(Neighbour::similarity)
+            .thenComparing(Comparator.comparingInt(Neighbour::userId).reversed());
+
+    private final Map<Integer, IntBitmap> usersByFilm = new HashMap<>();
+    private final Map<Integer, IntBitmap> filmsByUser = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Registers a like.
+     *
+     * @param filmId the ID of the liked film.
+     * @param userId the ID of the user who liked the film.
+     * @return {@code true} if the like was not registered yet.
+     */
+    public boolean addLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!usersByFilm.computeIfAbsent(id(filmId), key -> new IntBitmap()).add(id(userId))) {
+                return false;
+            }
+            filmsByUser.computeIfAbsent(id(userId), key -> new IntBitmap()).add(id(filmId));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a like.
+     *
+     * @param filmId the ID of the unliked film.
+     * @param userId the ID of the user who removed the like.
+     * @return {@code true} if the like was registered.
+     */
+    public boolean removeLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            if (!removeFrom(usersByFilm, id(filmId), id(userId))) {
+                return false;
+            }
+            removeFrom(filmsByUser, id(userId), id(filmId));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all likes of a deleted film.
+     *
+     * @param filmId the ID of the film.
+     */
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            IntBitmap users = usersByFilm.remove(id(filmId));
+            if (users != null) {
+                users.forEach(userId -> removeFrom(filmsByUser, userId, id(filmId)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all likes of a deleted user.
+     *
+     * @param userId the ID of the user.
+     */
+    public void removeUser(long userId) {
+        lock.writeLock().lock();
+        try {
+            IntBitmap films = filmsByUser.remove(id(userId));
+            if (films != null) {
+                films.forEach(filmId -> removeFrom(usersByFilm, filmId, id(userId)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recommends films liked by the users most similar to the given user.
+     * <p>
+     * The similarity of two users is the Jaccard index of their liked films. The
+     * {@value #NEIGHBOURS} most similar users are kept in a bounded priority queue; each film they liked
+     * and the given user did not is scored with the sum of their similarities.
+     * </p>
+     *
+     * @param userId the ID of the user to recommend films to.
+     * @param limit  the maximum number of films to return.
+     * @return IDs of recommended films, highest score first and lower ID first among equal scores.
+     */
+    public List<Long> getRecommendedFilmIds(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            IntBitmap likedByUser = filmsByUser.get(id(userId));
+            if (likedByUser == null) {
+                return List.of();
+            }
+
+            IntBitmap candidates = new IntBitmap();
+            likedByUser.forEach(filmId -> candidates.or(usersByFilm.get(filmId)));
+            candidates.remove(id(userId));
+
+            int userLikes = likedByUser.cardinality();
+            PriorityQueue<Neighbour> neighbours = new PriorityQueue<>(NEIGHBOURS + 1, WORST_NEIGHBOUR_FIRST);
+            candidates.forEach(candidateId -> {
+                IntBitmap likedByCandidate = filmsByUser.get(candidateId);
+                int commonLikes = likedByUser.andCardinality(likedByCandidate);
+                double similarity = (double) commonLikes / (userLikes + likedByCandidate.cardinality() - commonLikes);
+                neighbours.add(new Neighbour(candidateId, similarity));
+                if (neighbours.size() > NEIGHBOURS) {
+                    neighbours.poll();
+                }
+            });
+
+            IntDoubleMap scores = new IntDoubleMap();
+            for (Neighbour neighbour : neighbours) {
+                filmsByUser.get(neighbour.userId())
+                        .andNot(likedByUser)
+                        .forEach(filmId -> scores.add(filmId, neighbour.similarity()));
+            }
+            return scores.topKeys(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the users who liked a film.
+     *
+     * @param filmId the ID of the film.
+     * @return IDs of the users, in ascending order.
+     */
+    public List<Long> getUserIds(long filmId) {
+        lock.readLock().lock();
+        try {
+            IntBitmap users = usersByFilm.get(id(filmId));
+            return users == null ? List.of() : toIds(users);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the films liked by a user.
+     *
+     * @param userId the ID of the user.
+     * @return IDs of the liked films, in ascending order.
+     */
+    public List<Long> getFilmIds(long userId) {
+        lock.readLock().lock();
+        try {
+            IntBitmap films = filmsByUser.get(id(userId));
+            return films == null ? List.of() : toIds(films);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of users who liked a film.
+     *
+     * @param filmId the ID of the film.
+     * @return the number of likes of the film.
+     */
+    public int getLikes(long filmId) {
+        lock.readLock().lock();
+        try {
+            IntBitmap users = usersByFilm.get(id(filmId));
+            return users == null ? 0 : users.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the films liked by both users.
+     *
+     * @param userId   the ID of the first user.
+     * @param friendId the ID of the second user.
+     * @return IDs of films liked by both users, in ascending order.
+     */
+    public List<Long> getCommonFilmIds(long userId, long friendId) {
+        lock.readLock().lock();
+        try {
+            IntBitmap likedByUser = filmsByUser.get(id(userId));
+            IntBitmap likedByFriend = filmsByUser.get(id(friendId));
+            if (likedByUser == null || likedByFriend == null) {
+                return List.of();
+            }
+            return toIds(likedByUser.and(likedByFriend));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean removeFrom(Map<Integer, IntBitmap> sets, int key, int value) {
+        IntBitmap set = sets.get(key);
+        if (set == null || !set.remove(value)) {
+            return false;
+        }
+        if (set.isEmpty()) {
+            sets.remove(key);
+        }
+        return true;
+    }
+
+    private static List<Long> toIds(IntBitmap set) {
+        return Arrays.stream(set.toArray())
+                .asLongStream()
+                .boxed()
+                .toList();
+    }
+
+    /**
+     * Narrows a film or user ID. IDs beyond {@code int} are refused where they are generated: by a check
+     * constraint in the database and by the in-memory ID counters.
+     */
+    private static int id(long id) {
+        return Math.toIntExact(id);
+    }
+
+    /**
+     * A similar user and the Jaccard index of their likes with the likes of the user receiving recommendations.
+     *
+     * @param userId     the ID of the similar user.
+     * @param similarity the similarity, from 0 exclusive to 1 inclusive.
+     */
+    private record Neighbour(int userId, double similarity) {
+    }
+
+    /**
+     * Open-addressing map from non-negative film IDs to scores, avoiding boxing while scoring candidates.
+     */
+    private static final class IntDoubleMap {
+
+        private static final int EMPTY = -1;
+
+        private int[] keys = newKeys(16);
+        private double[] values = new double[16];
+        private int size;
+
+        void add(int key, double value) {
+            int slot = slot(keys, key);
+            values[slot] += value;
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    resize();
+                }
+            }
+        }
+
+        /**
+         * Returns up to {@code count} keys with the largest values, lower keys first among equal values.
+         */
+        List<Long> topKeys(int count) {
+            Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(slot -> values[slot])
+                    .thenComparing(Comparator.<Integer>comparingInt(slot -> keys[slot]).reversed());
+            PriorityQueue<Integer> top = new PriorityQueue<>(count + 1, worstFirst);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY) {
+                    top.add(slot);
+                    if (top.size() > count) {
+                        top.poll();
+                    }
+                }
+            }
+
+            Long[] result = new Long[top.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = (long) keys[top.poll()];
+            }
+            return List.of(result);
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new double[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slot(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
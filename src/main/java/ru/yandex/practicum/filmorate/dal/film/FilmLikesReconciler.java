@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Startup job that repairs drift of the denormalized {@code films.likes_count} counter.
+ * The counter is maintained incrementally by {@link FilmDbStorage}; this job recomputes it
+ * from {@code user_film_likes} for every film where the two disagree.
+ * {@link FilmDbStorage} takes this job in its constructor, so its in-memory indexes are loaded from repaired counters.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Profile("!memory")
+public class FilmLikesReconciler implements FilmSqlConstants {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Recomputes the like counters that differ from the actual number of likes.
+     * Runs after the migrations and before the film storage loads its indexes.
+     */
+    @PostConstruct
+    public void reconcile() {
+        int repaired = jdbcTemplate.update(SQL_RECONCILE_LIKES_COUNT);
+        if (repaired > 0) {
+            log.warn("Repaired like counters of {} films", repaired);
+        } else {
+            log.debug("Film like counters are consistent");
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory ranking of films by the number of likes.
+ * <p>
+ * Films are kept in sorted sets ordered by likes (descending) and film ID (ascending),
+ * so the top {@code count} films are read in O(count) without touching the database.
+ * Besides the global ranking, the index keeps secondary rankings partitioned by genre,
+ * by release year and by (genre, release year), which serve filtered popularity requests.
+ * The index is loaded once from storage and then updated on every like, unlike,
+ * film creation, film update and film deletion.
+ * </p>
+ */
+public class FilmPopularityIndex {
+
+    /**
+     * Ranking order: more likes first, lower film ID first among equally liked films.
+     */
+    private static final Comparator<Entry> RANKING_ORDER = Comparator
+            .comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING_ORDER);
+    private final Map<Integer, NavigableSet<Entry>> rankingByGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByYear = new HashMap<>();
+    private final Map<Long, NavigableSet<Entry>> rankingByGenreAndYear = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Replaces the content of the index.
+     *
+     * @param films the films to rank; ID, likes, release date and genres are used.
+     */
+    public void load(Collection<Film> films) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            ranking.clear();
+            rankingByGenre.clear();
+            rankingByYear.clear();
+            rankingByGenreAndYear.clear();
+            films.forEach(film -> put(new Entry(film.getId(), film.getLikes(),
+                    film.getReleaseDate().getYear(), genreIds(film))));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers a created film or re-partitions an updated one.
+     * The number of likes of an already indexed film is preserved.
+     *
+     * @param film the saved film; ID, release date and genres are used.
+     */
+    public void saveFilm(Film film) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = remove(film.getId());
+            int likes = previous != null ? previous.likes() : film.getLikes();
+            put(new Entry(film.getId(), likes, film.getReleaseDate().getYear(), genreIds(film)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted film from all rankings.
+     *
+     * @param filmId the ID of the film.
+     */
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            remove(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Shifts the number of likes of a film.
+     *
+     * @param filmId the ID of the film.
+     * @param delta  the change in the number of likes, positive for a like and negative for an unlike.
+     */
+    public void changeLikes(long filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = remove(filmId);
+            if (entry != null) {
+                put(new Entry(filmId, Math.max(0, entry.likes() + delta), entry.year(), entry.genreIds()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of likes of a film.
+     *
+     * @param filmId the ID of the film.
+     * @return the number of likes, or {@code 0} if the film is not indexed.
+     */
+    public int getLikes(long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry != null ? entry.likes() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the most liked films.
+     *
+     * @param count the maximum number of films to return.
+     * @return film IDs ordered by likes (descending) and film ID (ascending).
+     */
+    public List<Long> getTopFilmIds(int count) {
+        return getTopFilmIds(count, null, null);
+    }
+
+    /**
+     * Returns the IDs of the most liked films, optionally restricted to a genre and/or a release year.
+     *
+     * @param count   the maximum number of films to return.
+     * @param genreId the ID of the genre to filter by (optional).
+     * @param year    the release year to filter by (optional).
+     * @return film IDs ordered by likes (descending) and film ID (ascending).
+     */
+    public List<Long> getTopFilmIds(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> partition;
+            if (genreId != null && year != null) {
+                partition = rankingByGenreAndYear.get(genreYearKey(genreId, year));
+            } else if (genreId != null) {
+                partition = rankingByGenre.get(genreId);
+            } else if (year != null) {
+                partition = rankingByYear.get(year);
+            } else {
+                partition = ranking;
+            }
+
+            if (partition == null) {
+                return List.of();
+            }
+
+            List<Long> filmIds = new ArrayList<>(Math.min(count, partition.size()));
+            Iterator<Entry> iterator = partition.iterator();
+            while (filmIds.size() < count && iterator.hasNext()) {
+                filmIds.add(iterator.next().filmId());
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.filmId(), entry);
+        ranking.add(entry);
+        rankingByYear.computeIfAbsent(entry.year(), key -> new TreeSet<>(RANKING_ORDER)).add(entry);
+        for (int genreId : entry.genreIds()) {
+            rankingByGenre.computeIfAbsent(genreId, key -> new TreeSet<>(RANKING_ORDER)).add(entry);
+            rankingByGenreAndYear.computeIfAbsent(genreYearKey(genreId, entry.year()),
+                    key -> new TreeSet<>(RANKING_ORDER)).add(entry);
+        }
+    }
+
+    private Entry remove(long filmId) {
+        Entry entry = entries.remove(filmId);
+        if (entry == null) {
+            return null;
+        }
+        ranking.remove(entry);
+        removeFromPartition(rankingByYear, entry.year(), entry);
+        for (int genreId : entry.genreIds()) {
+            removeFromPartition(rankingByGenre, genreId, entry);
+            removeFromPartition(rankingByGenreAndYear, genreYearKey(genreId, entry.year()), entry);
+        }
+        return entry;
+    }
+
+    private static <K> void removeFromPartition(Map<K, NavigableSet<Entry>> partitions, K key, Entry entry) {
+        NavigableSet<Entry> partition = partitions.get(key);
+        if (partition != null) {
+            partition.remove(entry);
+            if (partition.isEmpty()) {
+                partitions.remove(key);
+            }
+        }
+    }
+
+    private static long genreYearKey(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    private static Set<Integer> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * A film's position key in the rankings together with the attributes it is partitioned by.
+     *
+     * @param filmId   the ID of the film.
+     * @param likes    the number of likes of the film.
+     * @param year     the release year of the film.
+     * @param genreIds the IDs of the film's genres.
+     */
+    private record Entry(long filmId, int likes, int year, Set<Integer> genreIds) {
+    }
+}
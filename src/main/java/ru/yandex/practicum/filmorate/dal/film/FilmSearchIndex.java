@@ -0,0 +1,443 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory full-text index over film titles and director names.
+ * <p>
+ * Texts are normalized to lower case and split into overlapping trigrams; each trigram maps to the
+ * {@link IntBitmap} of IDs whose text contains it. A query of three or more characters is answered by
+ * intersecting the bitmaps of its trigrams and verifying the few remaining candidates, so the cost depends
+ * on the number of matches rather than on the size of the catalog. This substring mode matches as
+ * {@code LIKE '%query%'} does. Queries of one or two characters carry no trigram; rather than checking every
+ * text on each keystroke, they are answered from the term trie below and match texts with a word starting
+ * with the query.
+ * </p>
+ * <p>
+ * The words of every text are also kept in a {@link TermTrie}, which serves the prefix mode (a word or the
+ * whole text starts with the query) and the fuzzy mode (the same with up to {@link #maxEdits(int)} typos).
+ * </p>
+ * <p>
+ * Titles and director names are also kept in a {@link SuggestionTrie} for search-as-you-type completions,
+ * ranked by the likes of the film or, for a director, of all their films.
+ * </p>
+ * <p>
+ * Films are registered by {@link FilmDbStorage} and directors by the director storage, both at startup
+ * and on every create, update and delete. Likes and unlikes only add to a pending count per film without
+ * taking the index lock; the counts are applied to the completion lists by the next completion request or
+ * index update, so a burst of likes of one film costs one re-ranking and never blocks searches.
+ * </p>
+ */
+@Component
+public class FilmSearchIndex {
+
+    /**
+     * Relevance of a text equal to the query.
+     */
+    static final int EXACT_MATCH = 3;
+
+    /**
+     * Relevance of a text starting with the query.
+     */
+    static final int PREFIX_MATCH = 2;
+
+    /**
+     * Relevance of a text with a word starting with the query.
+     */
+    static final int WORD_MATCH = 1;
+
+    /**
+     * Relevance of a text containing the query elsewhere.
+     */
+    static final int SUBSTRING_MATCH = 0;
+
+    /**
+     * Relevance of a text matched only with typos.
+     */
+    static final int FUZZY_MATCH = -1;
+
+    /**
+     * The largest number of completions returned by {@link #suggest(String, int)}.
+     */
+    public static final int MAX_SUGGESTIONS = SuggestionTrie.TOP_SIZE;
+
+    private final TextIndex titles = new TextIndex();
+    private final TextIndex directorNames = new TextIndex();
+    private final Map<Integer, Integer> directorByFilm = new HashMap<>();
+    private final Map<Integer, IntBitmap> filmsByDirector = new HashMap<>();
+    private final SuggestionTrie suggestions = new SuggestionTrie();
+    private final Map<Integer, SuggestionTrie.Entry> titleSuggestions = new HashMap<>();
+    private final Map<Integer, SuggestionTrie.Entry> directorSuggestions = new HashMap<>();
+    private final Map<Integer, Integer> pendingLikes = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Guards the completion lists while a completion request applies pending likes under the read lock.
+     */
+    private final Lock suggestionsLock = new ReentrantLock();
+
+    /**
+     * Registers a created film or re-indexes an updated one.
+     * The number of likes of an already indexed film is preserved.
+     *
+     * @param filmId      the ID of the film.
+     * @param title       the title of the film.
+     * @param directorIds the IDs of the film's directors.
+     * @param likes       the number of likes of the film.
+     */
+    public void saveFilm(long filmId, String title, Collection<Integer> directorIds, int likes) {
+        int id = Math.toIntExact(filmId);
+        lock.writeLock().lock();
+        try {
+            applyPendingLikes();
+            unlinkDirector(id);
+            SuggestionTrie.Entry previous = titleSuggestions.get(id);
+            if (previous != null) {
+                suggestions.remove(previous);
+                likes = previous.popularity;
+            }
+            SuggestionTrie.Entry suggestion = new SuggestionTrie.Entry("title", id,
+                    title, normalize(title), likes);
+            titleSuggestions.put(id, suggestion);
+            suggestions.put(suggestion);
+
+            titles.put(id, normalize(title));
+            directorIds.stream().findFirst().ifPresent(directorId -> {
+                directorByFilm.put(id, directorId);
+                filmsByDirector.computeIfAbsent(directorId, key -> new IntBitmap()).add(id);
+                changeDirectorPopularity(directorId, suggestion.popularity);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted film from the index.
+     *
+     * @param filmId the ID of the film.
+     */
+    public void removeFilm(long filmId) {
+        int id = Math.toIntExact(filmId);
+        lock.writeLock().lock();
+        try {
+            applyPendingLikes();
+            titles.remove(id);
+            unlinkDirector(id);
+            SuggestionTrie.Entry suggestion = titleSuggestions.remove(id);
+            if (suggestion != null) {
+                suggestions.remove(suggestion);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Shifts the number of likes of a film, and with it the popularity of the film and of its director.
+     * The change is applied to the completion lists later, by the next completion request or index update.
+     *
+     * @param filmId the ID of the film.
+     * @param delta  the change in the number of likes, positive for a like and negative for an unlike.
+     */
+    public void changeLikes(long filmId, int delta) {
+        pendingLikes.merge(Math.toIntExact(filmId), delta, Integer::sum);
+    }
+
+    /**
+     * Registers a created director or re-indexes a renamed one.
+     *
+     * @param directorId the ID of the director.
+     * @param name       the name of the director.
+     */
+    public void saveDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            applyPendingLikes();
+            directorNames.put(directorId, normalize(name));
+            SuggestionTrie.Entry previous = directorSuggestions.get(directorId);
+            if (previous != null) {
+                suggestions.remove(previous);
+            }
+            SuggestionTrie.Entry suggestion = new SuggestionTrie.Entry("director", directorId,
+                    name, normalize(name), directorLikes(directorId));
+            directorSuggestions.put(directorId, suggestion);
+            suggestions.put(suggestion);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted director from the index; their films no longer have a director.
+     *
+     * @param directorId the ID of the director.
+     */
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            applyPendingLikes();
+            directorNames.remove(directorId);
+            SuggestionTrie.Entry suggestion = directorSuggestions.remove(directorId);
+            if (suggestion != null) {
+                suggestions.remove(suggestion);
+            }
+            IntBitmap films = filmsByDirector.remove(directorId);
+            if (films != null) {
+                films.forEach(directorByFilm::remove);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds films whose title or director name matches the query, ignoring case.
+     *
+     * @param query      the searched text.
+     * @param byTitle    whether film titles are searched.
+     * @param byDirector whether director names are searched.
+     * @param mode       the matching mode: "substring", "prefix" or "fuzzy".
+     * @return the IDs of matching films mapped to their relevance, the best of the title and director matches.
+     */
+    public Map<Long, Integer> search(String query, boolean byTitle, boolean byDirector, String mode) {
+        String normalizedQuery = normalize(query);
+        Map<Long, Integer> relevanceByFilm = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                titles.find(normalizedQuery, mode).forEach(filmId ->
+                        relevanceByFilm.merge((long) filmId, titles.relevance(filmId, normalizedQuery), Math::max));
+            }
+            if (byDirector) {
+                directorNames.find(normalizedQuery, mode).forEach(directorId -> {
+                    IntBitmap films = filmsByDirector.get(directorId);
+                    if (films != null) {
+                        int relevance = directorNames.relevance(directorId, normalizedQuery);
+                        films.forEach(filmId -> relevanceByFilm.merge((long) filmId, relevance, Math::max));
+                    }
+                });
+            }
+            return relevanceByFilm;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the most liked film titles and director names starting with the query or having a word
+     * starting with it, ignoring case.
+     *
+     * @param query the typed prefix.
+     * @param limit the maximum number of completions, at most {@value #MAX_SUGGESTIONS}.
+     * @return completions ordered by likes, most liked first.
+     */
+    public List<Suggestion> suggest(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            suggestionsLock.lock();
+            try {
+                applyPendingLikes();
+                return suggestions.suggest(normalize(query), limit)
+                        .stream()
+                        .map(entry -> new Suggestion(entry.type, entry.id, entry.text, entry.popularity))
+                        .toList();
+            } finally {
+                suggestionsLock.unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the pending like counts to the films and their directors and re-ranks them once per film.
+     * Runs under the write lock, or under the read lock together with the suggestions lock.
+     */
+    private void applyPendingLikes() {
+        for (Integer id : pendingLikes.keySet()) {
+            Integer delta = pendingLikes.remove(id);
+            SuggestionTrie.Entry suggestion = titleSuggestions.get(id);
+            if (delta == null || delta == 0 || suggestion == null) {
+                continue;
+            }
+            int previousLikes = suggestion.popularity;
+            suggestion.popularity = Math.max(0, previousLikes + delta);
+            suggestions.refresh(suggestion);
+            Integer directorId = directorByFilm.get(id);
+            if (directorId != null) {
+                changeDirectorPopularity(directorId, suggestion.popularity - previousLikes);
+            }
+        }
+    }
+
+    private int directorLikes(int directorId) {
+        IntBitmap films = filmsByDirector.get(directorId);
+        if (films == null) {
+            return 0;
+        }
+        int[] likes = new int[1];
+        films.forEach(filmId -> {
+            SuggestionTrie.Entry suggestion = titleSuggestions.get(filmId);
+            if (suggestion != null) {
+                likes[0] += suggestion.popularity;
+            }
+        });
+        return likes[0];
+    }
+
+    private void changeDirectorPopularity(int directorId, int delta) {
+        SuggestionTrie.Entry suggestion = directorSuggestions.get(directorId);
+        if (suggestion != null && delta != 0) {
+            suggestion.popularity = Math.max(0, suggestion.popularity + delta);
+            suggestions.refresh(suggestion);
+        }
+    }
+
+    private void unlinkDirector(int filmId) {
+        Integer directorId = directorByFilm.remove(filmId);
+        if (directorId != null) {
+            SuggestionTrie.Entry film = titleSuggestions.get(filmId);
+            if (film != null) {
+                changeDirectorPopularity(directorId, -film.popularity);
+            }
+            IntBitmap films = filmsByDirector.get(directorId);
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the number of typos tolerated by the fuzzy mode: none for queries shorter than three characters,
+     * one up to five characters and two for longer queries.
+     */
+    static int maxEdits(int queryLength) {
+        if (queryLength < 3) {
+            return 0;
+        }
+        return queryLength < 6 ? 1 : 2;
+    }
+
+    /**
+     * A search-as-you-type completion.
+     *
+     * @param type  the kind of completion: "title" or "director".
+     * @param id    the ID of the film or of the director.
+     * @param text  the title or the name as stored.
+     * @param likes the likes of the film, or of all the director's films.
+     */
+    public record Suggestion(String type, long id, String text, int likes) {
+    }
+
+    /**
+     * Trigram postings and a term trie over a set of normalized texts keyed by ID.
+     */
+    private static final class TextIndex {
+
+        private final Map<Integer, String> texts = new HashMap<>();
+        private final Map<Long, IntBitmap> postings = new HashMap<>();
+        private final TermTrie terms = new TermTrie();
+
+        void put(int id, String text) {
+            remove(id);
+            texts.put(id, text);
+            terms.put(id, text);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                postings.computeIfAbsent(trigram(text, i), key -> new IntBitmap()).add(id);
+            }
+        }
+
+        void remove(int id) {
+            String text = texts.remove(id);
+            if (text == null) {
+                return;
+            }
+            terms.remove(id, text);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                long trigram = trigram(text, i);
+                IntBitmap ids = postings.get(trigram);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(trigram);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the IDs of texts matching the query in the given mode.
+         */
+        IntBitmap find(String query, String mode) {
+            return switch (mode) {
+                case "prefix" -> terms.findPrefix(query);
+                case "fuzzy" -> terms.findFuzzyPrefix(query, maxEdits(query.length()));
+                default -> findSubstring(query);
+            };
+        }
+
+        private IntBitmap findSubstring(String query) {
+            if (query.length() < 3) {
+                return terms.findPrefix(query);
+            }
+
+            IntBitmap matches = new IntBitmap();
+
+            IntBitmap candidates = null;
+            for (int i = 0; i + 3 <= query.length(); i++) {
+                IntBitmap ids = postings.get(trigram(query, i));
+                if (ids == null) {
+                    return matches;
+                }
+                candidates = candidates == null ? ids : candidates.and(ids);
+            }
+            candidates.forEach(id -> {
+                if (texts.get(id).contains(query)) {
+                    matches.add(id);
+                }
+            });
+            return matches;
+        }
+
+        int relevance(int id, String query) {
+            String text = texts.get(id);
+            if (!text.contains(query)) {
+                return FUZZY_MATCH;
+            }
+            if (text.equals(query)) {
+                return EXACT_MATCH;
+            }
+            if (text.startsWith(query)) {
+                return PREFIX_MATCH;
+            }
+            for (int from = text.indexOf(query); from >= 0; from = text.indexOf(query, from + 1)) {
+                if (!Character.isLetterOrDigit(text.charAt(from - 1))) {
+                    return WORD_MATCH;
+                }
+            }
+            return SUBSTRING_MATCH;
+        }
+
+        private static long trigram(String text, int from) {
+            return (long) text.charAt(from) << 32 | (long) text.charAt(from + 1) << 16 | text.charAt(from + 2);
+        }
+    }
+}
@@ -1,73 +1,43 @@
 package ru.yandex.practicum.filmorate.dal.film;
 
 public interface FilmSqlConstants {
-    // Запрос для получения всех фильмов с лайками, жанрами и MPA
-    String SQL_SELECT_ALL_FILMS = """
+    // Базовая выборка фильмов: одна строка на фильм (MPA и режиссёр — связи многие-к-одному).
+    // Жанры догружаются отдельным пакетным запросом SQL_SELECT_GENRES_FOR_FILMS.
+    String SQL_SELECT_FILMS_BASE = """
         SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-           f.film_duration, m.mpa_rating_id, m.mpa_rating_name,
-           d.director_id, d.director_name, g.genre_id, g.genre_name,
-           COUNT(ufl.user_id) AS likes_count
+           f.film_duration, f.likes_count, m.mpa_rating_id, m.mpa_rating_name,
+           d.director_id, d.director_name
         FROM films f
         LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
         LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-        LEFT JOIN genres g ON fg.genre_id = g.genre_id
-        LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-        GROUP BY f.film_id, m.mpa_rating_id, m.mpa_rating_name, g.genre_id, g.genre_name
         """;
 
-    // Запрос для получения топ-фильмов по количеству лайков
-    String SQL_SELECT_TOP_FILMS = """
-        SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-           f.film_duration, m.mpa_rating_id, m.mpa_rating_name, d.director_id, d.director_name,
-           COUNT(DISTINCT ufl.user_id) AS likes_count
-        FROM films f
-        LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
-        LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-        GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date,
-             f.film_duration, m.mpa_rating_id, m.mpa_rating_name
-        ORDER BY likes_count DESC
+    // Запрос для получения всех фильмов с лайками и MPA
+    String SQL_SELECT_ALL_FILMS = SQL_SELECT_FILMS_BASE + "ORDER BY f.film_id";
+
+    // Страница фильмов с ID больше заданного (keyset-пагинация)
+    String SQL_SELECT_FILMS_PAGE = SQL_SELECT_FILMS_BASE + """
+        WHERE f.film_id > ?
+        ORDER BY f.film_id
         LIMIT ?
         """;
 
-    // Запрос для получения фильма по ID
-    String SQL_SELECT_FILM_BY_ID = """
-        SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-               f.film_duration, m.mpa_rating_id, m.mpa_rating_name,
-               d.director_id, d.director_name, g.genre_id, g.genre_name,
-               COUNT(DISTINCT ufl.user_id) AS likes_count
-        FROM films f
-        LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
-        LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-        LEFT JOIN genres g ON fg.genre_id = g.genre_id
-        LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-        WHERE f.film_id = ?
-        GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date,
-                 f.film_duration, m.mpa_rating_id, m.mpa_rating_name, g.genre_id, g.genre_name
-        """;
+    // Запрос для получения фильмов по списку ID
+    String SQL_SELECT_FILMS_BY_IDS = SQL_SELECT_FILMS_BASE + "WHERE f.film_id IN (%s)";
 
-    // Запрос для фильмов с возможностью добавления фильтров
-    String SQL_SELECT_FILMS_WITH_FILTERS = """
-        SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-               f.film_duration, m.mpa_rating_id, m.mpa_rating_name, d.director_id, d.director_name,
-               COUNT(DISTINCT ufl.user_id) AS likes_count
+    // Количество лайков и дата выхода каждого фильма для построения индекса популярности
+    String SQL_SELECT_LIKES_PER_FILM = """
+        SELECT f.film_id, f.film_release_date, COUNT(ufl.user_id) AS likes
         FROM films f
-        LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
         LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-        LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-        WHERE 1 = 1
+        GROUP BY f.film_id, f.film_release_date
         """;
 
-    // Группировка, сортировка и лимит для топ-фильмов
-    String SQL_GROUP_SORT_LIMIT = """
-        GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date,
-                 f.film_duration, m.mpa_rating_id, m.mpa_rating_name
-        ORDER BY likes_count DESC
-        LIMIT ?
-        """;
+    // Жанры всех фильмов для построения индекса популярности
+    String SQL_SELECT_ALL_FILM_GENRES = "SELECT film_id, genre_id FROM film_genres";
+
+    // Запрос для получения фильма по ID
+    String SQL_SELECT_FILM_BY_ID = SQL_SELECT_FILMS_BASE + "WHERE f.film_id = ?";
 
     // Запрос для получения жанров для указанных фильмов
     String SQL_SELECT_GENRES_FOR_FILMS = """
@@ -94,70 +64,34 @@ public interface FilmSqlConstants {
     String SQL_SELECT_LIKE = "SELECT COUNT(*) FROM user_film_likes WHERE film_id = ? AND user_id = ?";
     String SQL_INSERT_LIKE = "INSERT INTO user_film_likes (film_id, user_id) VALUES (?, ?)";
     String SQL_DELETE_LIKE = "DELETE FROM user_film_likes WHERE film_id = ? AND user_id = ?";
-    String SQL_SELECT_FILMS_BY_DIRECTOR_SORT_BY_LIKES = """
-        SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-               f.film_duration, m.mpa_rating_id, m.mpa_rating_name, d.director_id, d.director_name,
-               g.genre_id, g.genre_name, COUNT(ufl.user_id) AS likes_count
-        FROM films f
-        LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
-        LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-        LEFT JOIN genres g ON fg.genre_id = g.genre_id
-        LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-        WHERE f.film_director_id = ?
-        GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date,
-                 f.film_duration, m.mpa_rating_id, m.mpa_rating_name, d.director_id, d.director_name,
-                 g.genre_id, g.genre_name
-        ORDER BY likes_count DESC;
+    String SQL_INCREMENT_LIKES_COUNT = "UPDATE films SET likes_count = likes_count + 1 WHERE film_id = ?";
+    String SQL_DECREMENT_LIKES_COUNT = "UPDATE films SET likes_count = likes_count - 1 WHERE film_id = ?";
+    String SQL_DECREMENT_LIKES_COUNT_BY_USER = """
+        UPDATE films SET likes_count = likes_count - 1
+        WHERE film_id IN (SELECT film_id FROM user_film_likes WHERE user_id = ?)
         """;
-    String SQL_SELECT_FILMS_BY_DIRECTOR_SORT_BY_YEAR = """
-        SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-               f.film_duration, m.mpa_rating_id, m.mpa_rating_name, d.director_id, d.director_name,
-               g.genre_id, g.genre_name, COUNT(ufl.user_id) AS likes_count
-        FROM films f
-        LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
-        LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-        LEFT JOIN genres g ON fg.genre_id = g.genre_id
-        LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
+    String SQL_DELETE_LIKES_BY_USER = "DELETE FROM user_film_likes WHERE user_id = ?";
+    String SQL_SELECT_FILM_IDS_LIKED_BY_USER = "SELECT film_id FROM user_film_likes WHERE user_id = ?";
+
+    // Все лайки для построения индекса рекомендаций
+    String SQL_SELECT_ALL_LIKES = "SELECT user_id, film_id FROM user_film_likes";
+
+    // Восстановление счётчика лайков по фактическим данным таблицы user_film_likes;
+    // IS DISTINCT FROM чинит и счётчики, оставшиеся NULL
+    String SQL_RECONCILE_LIKES_COUNT = """
+        UPDATE films f
+        SET likes_count = (SELECT COUNT(*) FROM user_film_likes ufl WHERE ufl.film_id = f.film_id)
+        WHERE f.likes_count IS DISTINCT FROM (SELECT COUNT(*) FROM user_film_likes ufl WHERE ufl.film_id = f.film_id)
+        """;
+    String SQL_SELECT_FILMS_BY_DIRECTOR_SORT_BY_LIKES = SQL_SELECT_FILMS_BASE + """
         WHERE f.film_director_id = ?
-        GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date,
-                 f.film_duration, m.mpa_rating_id, m.mpa_rating_name, d.director_id, d.director_name,
-                 g.genre_id, g.genre_name
-        ORDER BY EXTRACT(YEAR FROM CAST(f.film_release_date AS DATE)) ASC;
+        ORDER BY f.likes_count DESC, f.film_id
         """;
-    String SQL_GET_COMMON_FILMS = """
-            SELECT f.film_id, f.film_name, f.film_description, f.film_release_date, f.film_duration,
-                   f.film_mpa_rating_id, g.genre_id, g.genre_name, m.mpa_rating_name,
-                   COUNT(DISTINCT ufl.user_id) AS likes_count
-            FROM films f
-            JOIN user_film_likes u1 ON f.film_id = u1.film_id
-            JOIN user_film_likes u2 ON f.film_id = u2.film_id
-            LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-            LEFT JOIN genres g ON fg.genre_id = g.genre_id
-            LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
-            LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-            WHERE u1.user_id = ? AND u2.user_id = ?
-            GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date, f.film_duration, f.film_mpa_rating_id, g.genre_id, g.genre_name, m.mpa_rating_name;
-            """;
-
-    String SQL_SEARCH_FILMS_BASE = """
-        SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
-               f.film_duration, m.mpa_rating_id, m.mpa_rating_name,
-               d.director_id, d.director_name, g.genre_id, g.genre_name,
-               COUNT(ufl.user_id) AS likes_count
-        FROM films f
-        LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
-        LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
-        LEFT JOIN directors d ON f.film_director_id = d.director_id
-        LEFT JOIN film_genres fg ON f.film_id = fg.film_id
-        LEFT JOIN genres g ON fg.genre_id = g.genre_id
+    String SQL_SELECT_FILMS_BY_DIRECTOR_SORT_BY_YEAR = SQL_SELECT_FILMS_BASE + """
+        WHERE f.film_director_id = ?
+        ORDER BY EXTRACT(YEAR FROM CAST(f.film_release_date AS DATE)) ASC, f.film_id
         """;
 
-    String SQL_SEARCH_FILMS_GROUP_SORT = """
-        GROUP BY f.film_id, f.film_name, f.film_description, f.film_release_date,
-                 f.film_duration, m.mpa_rating_id, m.mpa_rating_name,
-                 d.director_id, d.director_name, g.genre_id, g.genre_name
-        ORDER BY likes_count DESC
-        """;
+    // Названия фильмов, их режиссёры и число лайков для построения поискового индекса
+    String SQL_SELECT_FILM_TITLES = "SELECT film_id, film_name, film_director_id, likes_count FROM films";
 }
@@ -3,8 +3,9 @@ package ru.yandex.practicum.filmorate.dal.film;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.Collection;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Interface for managing storage operations related to films.
@@ -19,6 +20,22 @@ public interface FilmStorage {
      */
     Collection<Film> getAllFilms();
 
+    /**
+     * Retrieves a page of films ordered by ID, starting after the given film ID.
+     *
+     * @param afterId the ID after which the page starts; {@code 0} for the first page.
+     * @param limit   the maximum number of films in the page.
+     * @return a {@link Collection} of films with IDs greater than {@code afterId}.
+     */
+    Collection<Film> getFilms(long afterId, int limit);
+
+    /**
+     * Passes every film, ordered by ID, to the given consumer without materializing the whole catalog.
+     *
+     * @param consumer the consumer receiving films one by one.
+     */
+    void streamAllFilms(Consumer<Film> consumer);
+
     /**
      * Retrieves the top films based on the number of likes, sorted in descending order.
      *
@@ -35,6 +52,14 @@ public interface FilmStorage {
      */
     Film getFilmById(long id);
 
+    /**
+     * Retrieves films by their IDs in a single bulk operation.
+     *
+     * @param filmIds the IDs of the films to retrieve.
+     * @return the found films in the order of {@code filmIds}; IDs of missing films are skipped.
+     */
+    List<Film> getFilmsByIds(Collection<Long> filmIds);
+
     /**
      * Adds a new film to the storage.
      *
@@ -74,6 +99,13 @@ public interface FilmStorage {
      */
     void removeLike(long filmId, long userId);
 
+    /**
+     * Removes all likes left by a user, keeping the films' like counters consistent.
+     *
+     * @param userId the ID of the user whose likes are removed.
+     */
+    void removeUserLikes(long userId);
+
     /**
      * Retrieves the top films filtered by genre and year.
      *
@@ -85,11 +117,29 @@ public interface FilmStorage {
     Collection<Film> getTopFilms(int count, Integer genreId, Integer year);
 
     /**
-     * Retrieves a map of all users and the films they liked.
+     * Retrieves the IDs of films recommended to a user, ranked by how strongly similar users liked them.
+     *
+     * @param userId the ID of the user to recommend films to.
+     * @param limit  the maximum number of films to return.
+     * @return a list of recommended film IDs, best first.
+     */
+    List<Long> getRecommendedFilmIds(long userId, int limit);
+
+    /**
+     * Retrieves the IDs of the users who liked a film.
+     *
+     * @param filmId the ID of the film.
+     * @return a list of user IDs in ascending order.
+     */
+    List<Long> getUserIdsWhoLiked(long filmId);
+
+    /**
+     * Retrieves the IDs of the films liked by a user.
      *
-     * @return a {@link Map} where the key is the user ID and the value is a {@link Set} of film IDs liked by the user.
+     * @param userId the ID of the user.
+     * @return a list of film IDs in ascending order.
      */
-    Map<Long, Set<Long>> getAllUserLikes();
+    List<Long> getLikedFilmIds(long userId);
 
     /**
      * Retrieves films by director ID considering sorting.
@@ -112,9 +162,11 @@ public interface FilmStorage {
     /**
      * Searches for films based on a query string and criteria.
      *
-     * @param query    the search query substring.
+     * @param query    the search query.
      * @param criteria the set of search criteria: "title", "director", or both.
-     * @return a list of films matching the search criteria.
+     * @param mode     the matching mode: "substring", "prefix" or "fuzzy".
+     * @param limit    the maximum number of films to return.
+     * @return a list of films matching the search criteria, each film once.
      */
-    Collection<Film> searchFilms(String query, Set<String> criteria);
+    Collection<Film> searchFilms(String query, Set<String> criteria, String mode, int limit);
 }
\ No newline at end of file
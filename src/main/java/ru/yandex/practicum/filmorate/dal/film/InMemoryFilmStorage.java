@@ -0,0 +1,468 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dal.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.dal.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.dal.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory implementation of {@link FilmStorage}, active with the {@code memory} profile.
+ * <p>
+ * Films are kept in the {@link MemoryDatabase} and likes in its {@link FilmLikesIndex}, which is the only
+ * record of likes, so the number of likes of a film is the size of its set of users. Rankings and search
+ * use the same {@link FilmPopularityIndex} and {@link FilmSearchIndex} as {@link FilmDbStorage}, built from
+ * the tables at startup. Genres and MPA ratings are reference data read once from their storages.
+ * Films are stored and returned as copies, so callers may modify the films they receive.
+ * </p>
+ */
+@Repository
+@Profile("memory")
+public class InMemoryFilmStorage implements FilmStorage {
+
+    private final MemoryDatabase database;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final FeedStorage feedStorage;
+    private final FilmSearchIndex searchIndex;
+    private final FilmPopularityIndex popularityIndex = new FilmPopularityIndex();
+    private final Map<Integer, Genre> genres = new HashMap<>();
+    private final Map<Integer, Mpa> mpaRatings = new HashMap<>();
+
+    /**
+     * Constructs a new {@code InMemoryFilmStorage}.
+     *
+     * @param database      the tables of the in-memory backend.
+     * @param genreStorage  the storage of genres.
+     * @param mpaStorage    the storage of MPA ratings.
+     * @param feedStorage   the storage for user feed events.
+     * @param searchIndex   the full-text index over titles and director names.
+     */
+    public InMemoryFilmStorage(MemoryDatabase database,
+                               GenreStorage genreStorage,
+                               MpaStorage mpaStorage,
+                               FeedStorage feedStorage,
+                               FilmSearchIndex searchIndex) {
+        this.database = database;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.feedStorage = feedStorage;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Reads the reference data and builds the popularity and search indexes from the tables.
+     * Runs before the application starts serving requests.
+     */
+    @PostConstruct
+    public void loadIndexes() {
+        genreStorage.getAllGenres().forEach(genre -> genres.put(genre.getId(), genre));
+        mpaStorage.getAllMpa().forEach(mpa -> mpaRatings.put(mpa.getId(), mpa));
+
+        List<Film> films = new ArrayList<>();
+        database.films().forEach(film -> films.add(assemble(film)));
+        popularityIndex.load(films);
+        films.forEach(this::indexForSearch);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return getFilms(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves a page of films ordered by ID.
+     * IDs after {@code afterId} are probed in order, so the cost depends on the page size and on the number
+     * of deleted films in the range rather than on the size of the catalog.
+     *
+     * @param afterId the ID after which the page starts; {@code 0} for the first page.
+     * @param limit   the maximum number of films in the page.
+     * @return a {@link Collection} of films with IDs greater than {@code afterId}.
+     */
+    @Override
+    public Collection<Film> getFilms(long afterId, int limit) {
+        List<Film> page = new ArrayList<>();
+        long lastId = database.lastFilmId();
+        for (long id = afterId + 1; id <= lastId && page.size() < limit; id++) {
+            Film film = database.films().read(id, this::assemble);
+            if (film != null) {
+                page.add(film);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        long lastId = database.lastFilmId();
+        for (long id = 1; id <= lastId; id++) {
+            Film film = database.films().read(id, this::assemble);
+            if (film != null) {
+                consumer.accept(film);
+            }
+        }
+    }
+
+    @Override
+    public Collection<Film> getTopFilms(int count) {
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count));
+    }
+
+    /**
+     * Retrieves a film by its ID.
+     *
+     * @param id the ID of the film to retrieve.
+     * @return the {@link Film} with the specified ID.
+     * @throws NotFoundException if the film does not exist.
+     */
+    @Override
+    public Film getFilmById(long id) {
+        Film film = database.films().read(id, this::assemble);
+        if (film == null) {
+            throw new NotFoundException(String.format("Film with id = %d not found", id));
+        }
+        return film;
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(Collection<Long> filmIds) {
+        return filmIds.stream()
+                .map(filmId -> database.films().read(filmId, this::assemble))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Adds a new film with the next film ID.
+     *
+     * @param film the {@link Film} to add.
+     * @return the added {@link Film} with its generated ID.
+     * @throws NotFoundException if the MPA rating, a genre or the director does not exist.
+     */
+    @Override
+    public Film addFilm(Film film) {
+        Film saved = toStored(film, Set.of());
+        database.insertFilm(saved);
+
+        film.setId(saved.getId());
+        Film addedFilm = getFilmById(saved.getId());
+        popularityIndex.saveFilm(addedFilm);
+        indexForSearch(addedFilm);
+        return addedFilm;
+    }
+
+    /**
+     * Updates an existing film. Genres are kept when the update does not list them.
+     *
+     * @param film the {@link Film} with updated details.
+     * @return the updated {@link Film}.
+     * @throws NotFoundException if the film, its MPA rating, a genre or the director does not exist.
+     */
+    @Override
+    public Film updateFilm(Film film) {
+        Film validated = toStored(film, Set.of());
+        Film previous = database.updateFilm(film.getId(), current -> film.getGenres() != null
+                ? validated
+                : toStored(film, current.getGenres()));
+        if (previous == null) {
+            throw new NotFoundException(String.format("Film with id = %d not found", film.getId()));
+        }
+
+        Film updatedFilm = getFilmById(film.getId());
+        popularityIndex.saveFilm(updatedFilm);
+        indexForSearch(updatedFilm);
+        return updatedFilm;
+    }
+
+    /**
+     * Deletes a film by its ID together with its likes and reviews.
+     *
+     * @param id the ID of the {@link Film} to delete.
+     */
+    @Override
+    public void deleteFilm(long id) {
+        if (!database.deleteFilm(id)) {
+            return;
+        }
+        popularityIndex.removeFilm(id);
+        searchIndex.removeFilm(id);
+    }
+
+    /**
+     * Adds a like to a film by a user.
+     * The database registers the like under the lock of the film, so it cannot interleave with the film's deletion.
+     *
+     * @param filmId the ID of the {@link Film}.
+     * @param userId the ID of the user liking the film.
+     * @throws NotFoundException if the film or the user does not exist.
+     */
+    @Override
+    public void addLike(long filmId, long userId) {
+        validateUserExists(userId);
+        if (!database.films().containsKey(filmId)) {
+            throw new NotFoundException(String.format("Film with ID = %d not found", filmId));
+        }
+        if (database.addLike(filmId, userId)) {
+            popularityIndex.changeLikes(filmId, 1);
+            searchIndex.changeLikes(filmId, 1);
+        }
+
+        addLikeEvent(filmId, userId, "ADD");
+    }
+
+    /**
+     * Removes a like from a film by a user.
+     *
+     * @param filmId the ID of the {@link Film}.
+     * @param userId the ID of the user removing the like.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public void removeLike(long filmId, long userId) {
+        validateUserExists(userId);
+        if (database.removeLike(filmId, userId)) {
+            popularityIndex.changeLikes(filmId, -1);
+            searchIndex.changeLikes(filmId, -1);
+            addLikeEvent(filmId, userId, "REMOVE");
+        }
+    }
+
+    /**
+     * Removes all likes left by a user.
+     *
+     * @param userId the ID of the user whose likes are removed.
+     */
+    @Override
+    public void removeUserLikes(long userId) {
+        for (long filmId : database.likes().getFilmIds(userId)) {
+            if (database.removeLike(filmId, userId)) {
+                popularityIndex.changeLikes(filmId, -1);
+                searchIndex.changeLikes(filmId, -1);
+            }
+        }
+    }
+
+    @Override
+    public List<Long> getLikedFilmIds(long userId) {
+        return database.likes().getFilmIds(userId);
+    }
+
+    @Override
+    public Collection<Film> getTopFilms(int count, Integer genreId, Integer year) {
+        return getFilmsByIds(popularityIndex.getTopFilmIds(count, genreId, year));
+    }
+
+    @Override
+    public List<Long> getRecommendedFilmIds(long userId, int limit) {
+        return database.likes().getRecommendedFilmIds(userId, limit);
+    }
+
+    @Override
+    public List<Long> getUserIdsWhoLiked(long filmId) {
+        return database.likes().getUserIds(filmId);
+    }
+
+    /**
+     * Retrieves all films of a specific director, sorted by the specified criterion.
+     *
+     * @param directorId the ID of the director.
+     * @param sortBy     the sorting criterion (either "likes" or "year").
+     * @return a {@link Collection} of films of the specified director, sorted by the given criterion.
+     * @throws NotFoundException if the director does not exist.
+     */
+    @Override
+    public Collection<Film> getFilmsByDirector(long directorId, String sortBy) {
+        if (!database.directors().containsKey(directorId)) {
+            throw new NotFoundException(String.format("Director with ID = %d not found", directorId));
+        }
+
+        Comparator<Film> order = switch (sortBy) {
+            case "likes" -> Comparator.comparingInt(Film::getLikes).reversed();
+            case "year" -> Comparator.comparingInt(film -> film.getReleaseDate().getYear());
+            default -> throw new IllegalArgumentException("Unknown sort order: " + sortBy);
+        };
+        List<Film> films = new ArrayList<>();
+        database.films().forEach(film -> {
+            if (film.getDirectors().stream().anyMatch(director -> director.getId() == directorId)) {
+                films.add(assemble(film));
+            }
+        });
+        films.sort(order.thenComparingLong(Film::getId));
+        return films;
+    }
+
+    @Override
+    public List<Film> getCommonFilms(long userId, long friendId) {
+        List<Film> commonFilms = new ArrayList<>(getFilmsByIds(database.likes().getCommonFilmIds(userId, friendId)));
+        commonFilms.sort(Comparator.comparingInt(Film::getLikes).reversed().thenComparingLong(Film::getId));
+        return commonFilms;
+    }
+
+    /**
+     * Searches films by their title and/or their director's name, ignoring case.
+     * Ranking is the same as in {@link FilmDbStorage#searchFilms(String, Set, String, int)}.
+     *
+     * @param query    the search query.
+     * @param criteria the set of search criteria: "title", "director", or both.
+     * @param mode     the matching mode: "substring", "prefix" or "fuzzy".
+     * @param limit    the maximum number of films to return.
+     * @return a {@link Collection} of matching films, most relevant first.
+     */
+    @Override
+    public Collection<Film> searchFilms(String query, Set<String> criteria, String mode, int limit) {
+        Map<Long, Integer> relevanceByFilm = searchIndex.search(query,
+                criteria.contains("title"), criteria.contains("director"), mode);
+        Map<Long, Integer> likesByFilm = new HashMap<>();
+        relevanceByFilm.keySet().forEach(filmId -> likesByFilm.put(filmId, popularityIndex.getLikes(filmId)));
+
+        Comparator<Long> ranking = Comparator.<Long>comparingInt(relevanceByFilm::get).reversed()
+                .thenComparing(Comparator.<Long>comparingInt(likesByFilm::get).reversed())
+                .thenComparing(Comparator.naturalOrder());
+        PriorityQueue<Long> best = new PriorityQueue<>(ranking.reversed());
+        for (long filmId : relevanceByFilm.keySet()) {
+            best.add(filmId);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Long> filmIds = new ArrayList<>(best);
+        filmIds.sort(ranking);
+        return getFilmsByIds(filmIds);
+    }
+
+    /**
+     * Builds the film returned to callers from a stored film: a copy with the current number of likes
+     * and the current names of its directors.
+     *
+     * @param stored the stored film, or {@code null}.
+     * @return the assembled film, or {@code null} if {@code stored} is {@code null}.
+     */
+    private Film assemble(Film stored) {
+        if (stored == null) {
+            return null;
+        }
+        Film film = new Film();
+        film.setId(stored.getId());
+        film.setName(stored.getName());
+        film.setDescription(stored.getDescription());
+        film.setReleaseDate(stored.getReleaseDate());
+        film.setDuration(stored.getDuration());
+        film.setLikes(database.likes().getLikes(stored.getId()));
+        film.setMpa(stored.getMpa());
+        film.setGenres(new HashSet<>(stored.getGenres()));
+        film.setDirectors(stored.getDirectors().stream()
+                .map(director -> database.directors().get(director.getId()))
+                .filter(Objects::nonNull)
+                .map(director -> {
+                    Director copy = new Director();
+                    copy.setId(director.getId());
+                    copy.setName(director.getName());
+                    return copy;
+                })
+                .collect(Collectors.toSet()));
+        return film;
+    }
+
+    /**
+     * Validates a film and builds its stored form, with resolved genre and MPA names.
+     * Like {@link FilmDbStorage}, a film keeps only its first director.
+     *
+     * @param film          the film to validate.
+     * @param defaultGenres the genres to store when the film does not list any.
+     * @return the film to store.
+     * @throws NotFoundException if the MPA rating, a genre or the director does not exist.
+     */
+    private Film toStored(Film film, Set<Genre> defaultGenres) {
+        Film stored = new Film();
+        stored.setId(film.getId());
+        stored.setName(film.getName());
+        stored.setDescription(film.getDescription());
+        stored.setReleaseDate(film.getReleaseDate());
+        stored.setDuration(film.getDuration());
+
+        if (film.getMpa() != null) {
+            Mpa mpa = mpaRatings.get(film.getMpa().getId());
+            if (mpa == null) {
+                throw new NotFoundException(String.format("MPA with ID = %d not found", film.getMpa().getId()));
+            }
+            stored.setMpa(mpa);
+        }
+
+        Set<Genre> storedGenres = new LinkedHashSet<>();
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                Genre knownGenre = genres.get(genre.getId());
+                if (knownGenre == null) {
+                    throw new NotFoundException(String.format("Genre with ID = %d not found", genre.getId()));
+                }
+                storedGenres.add(knownGenre);
+            }
+        } else {
+            storedGenres.addAll(defaultGenres);
+        }
+        stored.setGenres(storedGenres);
+
+        Set<Director> storedDirectors = new HashSet<>();
+        if (film.getDirectors() != null) {
+            for (Director director : film.getDirectors()) {
+                if (!database.directors().containsKey(director.getId())) {
+                    throw new NotFoundException(String.format("Director with ID = %d not found", director.getId()));
+                }
+            }
+            film.getDirectors().stream().findFirst().ifPresent(director -> {
+                Director reference = new Director();
+                reference.setId(director.getId());
+                storedDirectors.add(reference);
+            });
+        }
+        stored.setDirectors(storedDirectors);
+        return stored;
+    }
+
+    private void validateUserExists(long userId) {
+        if (!database.users().containsKey(userId)) {
+            throw new NotFoundException(String.format("User with ID = %d not found", userId));
+        }
+    }
+
+    private void addLikeEvent(long filmId, long userId, String operation) {
+        UserEvent userEvent = new UserEvent();
+        userEvent.setUserId(userId);
+        userEvent.setEventType("LIKE");
+        userEvent.setOperation(operation);
+        userEvent.setEntityId(filmId);
+        userEvent.setTimestamp(Instant.now().toEpochMilli());
+        feedStorage.addEvent(userEvent);
+    }
+
+    private void indexForSearch(Film film) {
+        searchIndex.saveFilm(film.getId(), film.getName(), film.getDirectors()
+                .stream()
+                .map(Director::getId)
+                .toList(), film.getLikes());
+    }
+}
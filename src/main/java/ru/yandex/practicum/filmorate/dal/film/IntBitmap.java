@@ -0,0 +1,455 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Compressed set of non-negative {@code int} values in the style of Roaring bitmaps.
+ * <p>
+ * Values are split into chunks by their upper 16 bits. Each chunk is stored as a sorted
+ * {@code char} array while it holds at most {@value #ARRAY_MAX_SIZE} values (2 bytes per value)
+ * and as a fixed 8 KB bit set once it grows larger, so sparse and dense sets both stay compact.
+ * Intersections and differences work chunk by chunk and never box values.
+ * The class is not thread-safe.
+ * </p>
+ */
+public class IntBitmap {
+
+    /**
+     * Largest number of values kept in an array chunk before it is turned into a bit set.
+     */
+    static final int ARRAY_MAX_SIZE = 4096;
+
+    private static final int BITS_WORDS = 1 << 10;
+
+    private char[] keys = new char[0];
+    private Chunk[] chunks = new Chunk[0];
+    private int size;
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value to add, must not be negative.
+     * @return {@code true} if the value was not present.
+     */
+    public boolean add(int value) {
+        char key = high(value);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new Chunk());
+        }
+        return chunks[index].add(low(value));
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value the value to remove.
+     * @return {@code true} if the value was present.
+     */
+    public boolean remove(int value) {
+        int index = indexOf(high(value));
+        if (index < 0 || !chunks[index].remove(low(value))) {
+            return false;
+        }
+        if (chunks[index].cardinality == 0) {
+            removeChunk(index);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a value is present.
+     *
+     * @param value the value to check.
+     * @return {@code true} if the value is present.
+     */
+    public boolean contains(int value) {
+        int index = indexOf(high(value));
+        return index >= 0 && chunks[index].contains(low(value));
+    }
+
+    /**
+     * Checks whether the set is empty.
+     *
+     * @return {@code true} if there are no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the number of values in the set.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Counts the values present both in this set and in another one without building the intersection.
+     *
+     * @param other the other set.
+     * @return the size of the intersection.
+     */
+    public int andCardinality(IntBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                cardinality += chunks[i++].andCardinality(other.chunks[j++]);
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the values present both in this set and in another one.
+     *
+     * @param other the other set.
+     * @return a new set with the intersection.
+     */
+    public IntBitmap and(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendChunk(keys[i], chunks[i++].and(other.chunks[j++]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of this set that are not present in another one.
+     *
+     * @param other the other set.
+     * @return a new set with the difference.
+     */
+    public IntBitmap andNot(IntBitmap other) {
+        IntBitmap result = new IntBitmap();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.appendChunk(keys[i], chunks[i].andNot(other.chunks[j]));
+            } else {
+                result.appendChunk(keys[i], chunks[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds all values of another set to this one.
+     *
+     * @param other the set whose values are added.
+     */
+    public void or(IntBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int index = indexOf(other.keys[j]);
+            if (index < 0) {
+                insertChunk(-index - 1, other.keys[j], other.chunks[j].copy());
+            } else {
+                chunks[index] = chunks[index].or(other.chunks[j]);
+            }
+        }
+    }
+
+    /**
+     * Passes all values to the consumer in ascending order.
+     *
+     * @param consumer the consumer receiving values.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            chunks[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Returns all values in ascending order.
+     *
+     * @return a new array with the values.
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = new int[1];
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    private int indexOf(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertChunk(int index, char key, Chunk chunk) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            chunks = Arrays.copyOf(chunks, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(chunks, index, chunks, index + 1, size - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        size++;
+    }
+
+    private void appendChunk(char key, Chunk chunk) {
+        if (chunk.cardinality > 0) {
+            insertChunk(size, key, chunk);
+        }
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(chunks, index + 1, chunks, index, size - index - 1);
+        chunks[--size] = null;
+    }
+
+    private static char high(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    /**
+     * Values sharing the same upper 16 bits, stored either as a sorted array or as a bit set.
+     */
+    private static final class Chunk {
+
+        private char[] array = new char[4];
+        private long[] bits;
+        private int cardinality;
+
+        boolean contains(char value) {
+            if (bits != null) {
+                return (bits[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, value) >= 0;
+        }
+
+        boolean add(char value) {
+            if (bits != null) {
+                long before = bits[value >>> 6];
+                bits[value >>> 6] = before | (1L << value);
+                if (before == bits[value >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+
+            int position = Arrays.binarySearch(array, 0, cardinality, value);
+            if (position >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX_SIZE) {
+                toBits();
+                return add(value);
+            }
+            int insertAt = -position - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX_SIZE, cardinality * 2));
+            }
+            System.arraycopy(array, insertAt, array, insertAt + 1, cardinality - insertAt);
+            array[insertAt] = value;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char value) {
+            if (bits != null) {
+                long before = bits[value >>> 6];
+                bits[value >>> 6] = before & ~(1L << value);
+                if (before == bits[value >>> 6]) {
+                    return false;
+                }
+                if (--cardinality <= ARRAY_MAX_SIZE) {
+                    toArray();
+                }
+                return true;
+            }
+
+            int position = Arrays.binarySearch(array, 0, cardinality, value);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(array, position + 1, array, position, cardinality - position - 1);
+            cardinality--;
+            return true;
+        }
+
+        int andCardinality(Chunk other) {
+            if (bits != null && other.bits != null) {
+                int count = 0;
+                for (int i = 0; i < BITS_WORDS; i++) {
+                    count += Long.bitCount(bits[i] & other.bits[i]);
+                }
+                return count;
+            }
+            if (bits != null) {
+                return other.andCardinality(this);
+            }
+            if (other.bits != null) {
+                int count = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(array[i])) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < other.cardinality) {
+                if (array[i] < other.array[j]) {
+                    i++;
+                } else if (array[i] > other.array[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        Chunk and(Chunk other) {
+            if (bits == null) {
+                return filter(value -> other.contains((char) value));
+            }
+            if (other.bits == null) {
+                return other.filter(value -> contains((char) value));
+            }
+            long[] result = new long[BITS_WORDS];
+            for (int i = 0; i < BITS_WORDS; i++) {
+                result[i] = bits[i] & other.bits[i];
+            }
+            return ofBits(result);
+        }
+
+        Chunk andNot(Chunk other) {
+            if (bits == null) {
+                return filter(value -> !other.contains((char) value));
+            }
+            long[] result = bits.clone();
+            if (other.bits != null) {
+                for (int i = 0; i < BITS_WORDS; i++) {
+                    result[i] &= ~other.bits[i];
+                }
+            } else {
+                for (int i = 0; i < other.cardinality; i++) {
+                    result[other.array[i] >>> 6] &= ~(1L << other.array[i]);
+                }
+            }
+            return ofBits(result);
+        }
+
+        Chunk or(Chunk other) {
+            Chunk result;
+            Chunk added;
+            if (bits == null && other.bits != null) {
+                result = other.copy();
+                added = this;
+            } else {
+                result = copy();
+                added = other;
+            }
+            added.forEach(0, value -> result.add((char) value));
+            return result;
+        }
+
+        Chunk copy() {
+            Chunk copy = new Chunk();
+            copy.array = array != null ? array.clone() : null;
+            copy.bits = bits != null ? bits.clone() : null;
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        void forEach(int high, IntConsumer consumer) {
+            if (bits == null) {
+                for (int i = 0; i < cardinality; i++) {
+                    consumer.accept(high | array[i]);
+                }
+                return;
+            }
+            for (int i = 0; i < BITS_WORDS; i++) {
+                long word = bits[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        private Chunk filter(IntPredicate predicate) {
+            Chunk result = new Chunk();
+            result.array = new char[Math.max(4, cardinality)];
+            for (int i = 0; i < cardinality; i++) {
+                if (predicate.test(array[i])) {
+                    result.array[result.cardinality++] = array[i];
+                }
+            }
+            return result;
+        }
+
+        private void toBits() {
+            bits = new long[BITS_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bits[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+
+        private void toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int[] position = new int[1];
+            forEach(0, value -> values[position[0]++] = (char) value);
+            array = values;
+            bits = null;
+        }
+
+        private static Chunk ofBits(long[] bits) {
+            Chunk chunk = new Chunk();
+            chunk.array = null;
+            chunk.bits = bits;
+            for (long word : bits) {
+                chunk.cardinality += Long.bitCount(word);
+            }
+            if (chunk.cardinality <= ARRAY_MAX_SIZE) {
+                chunk.toArray();
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Completion trie whose every node keeps the {@value #TOP_SIZE} most popular entries of its subtree.
+ * <p>
+ * An entry is reachable from the start of its text and from the start of each of its words, so "kni"
+ * completes "The Dark Knight". Looking up completions is a walk down the typed prefix followed by reading
+ * the node's precomputed list, independent of the number of matching entries. When an entry is added,
+ * removed or changes popularity, the lists are rebuilt bottom-up along its paths from the lists of the
+ * children. The class is not thread-safe.
+ * </p>
+ */
+class SuggestionTrie {
+
+    /**
+     * Number of entries kept per node, the largest number of completions that can be returned.
+     */
+    static final int TOP_SIZE = 10;
+
+    /**
+     * Completion order: more popular first, then alphabetically.
+     */
+    private static final Comparator<Entry> POPULARITY_ORDER = Comparator
+            .comparingInt((Entry entry) -> entry.popularity).reversed()
+            .thenComparing(entry -> entry.text)
+            .thenComparing(entry -> entry.type)
+            .thenComparingLong(entry -> entry.id);
+
+    private final Node root = new Node();
+
+    /**
+     * Adds an entry.
+     *
+     * @param entry the entry to add.
+     */
+    void put(Entry entry) {
+        for (String key : keys(entry.key)) {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.getOrAddChild(key.charAt(i));
+                path.add(node);
+            }
+            node.entries.add(entry);
+            rebuild(path, key);
+        }
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param entry the entry previously passed to {@link #put(Entry)}.
+     */
+    void remove(Entry entry) {
+        for (String key : keys(entry.key)) {
+            List<Node> path = path(key);
+            if (path.size() == key.length() + 1) {
+                path.get(key.length()).entries.remove(entry);
+                rebuild(path, key);
+            }
+        }
+    }
+
+    /**
+     * Re-ranks an entry after its popularity changed.
+     *
+     * @param entry the entry whose popularity changed.
+     */
+    void refresh(Entry entry) {
+        for (String key : keys(entry.key)) {
+            rebuild(path(key), key);
+        }
+    }
+
+    /**
+     * Returns the most popular entries reachable from the prefix.
+     *
+     * @param prefix the normalized prefix.
+     * @param limit  the maximum number of entries, at most {@value #TOP_SIZE}.
+     * @return entries ordered by popularity, most popular first.
+     */
+    List<Entry> suggest(String prefix, int limit) {
+        List<Node> path = path(prefix);
+        if (path.size() < prefix.length() + 1) {
+            return List.of();
+        }
+        Entry[] top = path.get(prefix.length()).top;
+        return List.of(Arrays.copyOf(top, Math.min(limit, top.length)));
+    }
+
+    private List<Node> path(String key) {
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                break;
+            }
+            path.add(node);
+        }
+        return path;
+    }
+
+    private static void rebuild(List<Node> path, String key) {
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node node = path.get(depth);
+            if (depth > 0 && node.entries.isEmpty() && node.labels.length == 0) {
+                path.get(depth - 1).removeChild(key.charAt(depth - 1));
+                continue;
+            }
+            List<Entry> candidates = new ArrayList<>(node.entries);
+            for (Node child : node.children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            node.top = candidates.stream()
+                    .distinct()
+                    .sorted(POPULARITY_ORDER)
+                    .limit(TOP_SIZE)
+                    .toArray(Entry[]::new);
+        }
+    }
+
+    private static Set<String> keys(String text) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (!text.isEmpty()) {
+            keys.add(text);
+        }
+        for (int i = 1; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i)) && !Character.isLetterOrDigit(text.charAt(i - 1))) {
+                keys.add(text.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * A completion: a film title or a director name with its popularity.
+     */
+    static final class Entry {
+
+        final String type;
+        final long id;
+        final String text;
+        final String key;
+        int popularity;
+
+        Entry(String type, long id, String text, String key, int popularity) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.key = key;
+            this.popularity = popularity;
+        }
+    }
+
+    /**
+     * A trie node with children sorted by label.
+     */
+    private static final class Node {
+
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private final List<Entry> entries = new ArrayList<>(1);
+        private Entry[] top = NO_ENTRIES;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = new Node();
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Trie over the terms of normalized texts, answering prefix and typo-tolerant prefix lookups.
+ * <p>
+ * The terms of a text are the text itself and each of its words, so a query matches both from the start
+ * of the text and from the start of any of its words. Each node keeps the {@link IntBitmap} of IDs whose
+ * terms end there, and children are kept in sorted arrays to stay compact.
+ * </p>
+ * <p>
+ * A fuzzy lookup walks the trie once, carrying one row of the Levenshtein matrix per node, and skips every
+ * branch whose row already exceeds the allowed number of edits, which is the row-by-row form of a
+ * Levenshtein automaton: only the few branches close to the query are visited. The class is not thread-safe.
+ * </p>
+ */
+class TermTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Adds the terms of a text.
+     *
+     * @param id   the ID of the text.
+     * @param text the normalized text.
+     */
+    void put(int id, String text) {
+        for (String term : terms(text)) {
+            Node node = root;
+            for (int i = 0; i < term.length(); i++) {
+                node = node.getOrAddChild(term.charAt(i));
+            }
+            if (node.ids == null) {
+                node.ids = new IntBitmap();
+            }
+            node.ids.add(id);
+        }
+    }
+
+    /**
+     * Removes the terms of a text.
+     *
+     * @param id   the ID of the text.
+     * @param text the normalized text previously passed to {@link #put(int, String)}.
+     */
+    void remove(int id, String text) {
+        for (String term : terms(text)) {
+            remove(root, term, 0, id);
+        }
+    }
+
+    /**
+     * Returns the IDs of texts with a term starting with the prefix.
+     *
+     * @param prefix the normalized prefix.
+     * @return a new set of matching IDs.
+     */
+    IntBitmap findPrefix(String prefix) {
+        IntBitmap matches = new IntBitmap();
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node != null) {
+            collect(node, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the IDs of texts with a term starting with a string at most {@code maxEdits} insertions,
+     * deletions or substitutions away from the query.
+     *
+     * @param query    the normalized query.
+     * @param maxEdits the largest allowed edit distance.
+     * @return a new set of matching IDs.
+     */
+    IntBitmap findFuzzyPrefix(String query, int maxEdits) {
+        IntBitmap matches = new IntBitmap();
+        int[] row = new int[query.length() + 1];
+        for (int j = 0; j < row.length; j++) {
+            row[j] = j;
+        }
+        walk(root, query, maxEdits, row, matches);
+        return matches;
+    }
+
+    private static void walk(Node node, String query, int maxEdits, int[] row, IntBitmap matches) {
+        if (row[query.length()] <= maxEdits) {
+            collect(node, matches);
+            return;
+        }
+        for (int i = 0; i < node.labels.length; i++) {
+            char label = node.labels[i];
+            int[] next = new int[row.length];
+            next[0] = row[0] + 1;
+            int best = next[0];
+            for (int j = 1; j < row.length; j++) {
+                int substitution = row[j - 1] + (query.charAt(j - 1) == label ? 0 : 1);
+                next[j] = Math.min(substitution, Math.min(next[j - 1], row[j]) + 1);
+                best = Math.min(best, next[j]);
+            }
+            if (best <= maxEdits) {
+                walk(node.children[i], query, maxEdits, next, matches);
+            }
+        }
+    }
+
+    private static void collect(Node node, IntBitmap matches) {
+        if (node.ids != null) {
+            matches.or(node.ids);
+        }
+        for (Node child : node.children) {
+            collect(child, matches);
+        }
+    }
+
+    private static boolean remove(Node node, String term, int depth, int id) {
+        if (depth == term.length()) {
+            if (node.ids != null) {
+                node.ids.remove(id);
+                if (node.ids.isEmpty()) {
+                    node.ids = null;
+                }
+            }
+        } else {
+            char label = term.charAt(depth);
+            Node child = node.child(label);
+            if (child != null && remove(child, term, depth + 1, id)) {
+                node.removeChild(label);
+            }
+        }
+        return node.ids == null && node.labels.length == 0;
+    }
+
+    private static Set<String> terms(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (!text.isEmpty()) {
+            terms.add(text);
+        }
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * A trie node with children sorted by label.
+     */
+    private static final class Node {
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private IntBitmap ids;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAddChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = new Node();
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insertAt];
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+    }
+}
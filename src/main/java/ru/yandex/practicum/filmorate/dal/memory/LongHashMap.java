@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Hash map with primitive {@code long} keys.
+ * <p>
+ * Keys and values are kept in two parallel arrays with open addressing and linear probing, so an entry
+ * costs a {@code long} and a reference instead of a boxed key and a node object. Removal shifts the
+ * following entries of the probe sequence back, which keeps lookups free of tombstones. Key {@code 0}
+ * marks a free slot and its value is stored separately. The class is not thread-safe.
+ * </p>
+ *
+ * @param <V> the type of the values.
+ */
+class LongHashMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private Object[] values = new Object[MIN_CAPACITY];
+    private int size;
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key.
+     * @return the value, or {@code null} if the key is absent.
+     */
+    V get(long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int slot = find(key);
+        return slot >= 0 ? value(slot) : null;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key   the key.
+     * @param value the non-null value.
+     * @return the previous value, or {@code null} if the key was absent.
+     */
+    V put(long key, V value) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int slot = find(key);
+        if (slot >= 0) {
+            V previous = value(slot);
+            values[slot] = value;
+            return previous;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+            slot = find(key);
+        }
+        slot = -slot - 1;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key.
+     * @return the removed value, or {@code null} if the key was absent.
+     */
+    V remove(long key) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = null;
+                size--;
+            }
+            return previous;
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = value(slot);
+        shiftBack(slot);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of keys in the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every value to the consumer, in no particular order.
+     *
+     * @param consumer the consumer of the values.
+     */
+    void forEachValue(Consumer<? super V> consumer) {
+        if (hasZeroKey) {
+            consumer.accept(zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(value(slot));
+            }
+        }
+    }
+
+    /**
+     * Replaces every value with the result of a function.
+     *
+     * @param updater the function returning the new value, or {@code null} to remove the key.
+     */
+    void replaceAll(UnaryOperator<V> updater) {
+        List<Long> removedKeys = new ArrayList<>();
+        if (hasZeroKey) {
+            zeroValue = updater.apply(zeroValue);
+            if (zeroValue == null) {
+                removedKeys.add(0L);
+            }
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                values[slot] = updater.apply(value(slot));
+                if (values[slot] == null) {
+                    removedKeys.add(keys[slot]);
+                }
+            }
+        }
+        removedKeys.forEach(this::remove);
+    }
+
+    /**
+     * Removes all entries and releases the arrays.
+     */
+    void clear() {
+        keys = new long[MIN_CAPACITY];
+        values = new Object[MIN_CAPACITY];
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    /**
+     * Finds the slot of a non-zero key.
+     *
+     * @return the slot of the key, or {@code -(free slot) - 1} if the key is absent.
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void shiftBack(int free) {
+        int mask = keys.length - 1;
+        int slot = (free + 1) & mask;
+        while (keys[slot] != 0) {
+            int home = mix(keys[slot]) & mask;
+            // Запись сдвигается назад, только если свободная ячейка лежит между её исходной ячейкой и текущей
+            if (((slot - home) & mask) >= ((slot - free) & mask)) {
+                keys[free] = keys[slot];
+                values[free] = values[slot];
+                free = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[free] = 0;
+        values[free] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int free = -find(oldKeys[slot]) - 1;
+                keys[free] = oldKeys[slot];
+                values[free] = oldValues[slot];
+            }
+        }
+        Arrays.fill(oldValues, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) values[slot];
+    }
+
+    static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
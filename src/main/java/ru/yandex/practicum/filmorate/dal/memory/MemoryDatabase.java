@@ -0,0 +1,1069 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.film.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.dal.film.IntBitmap;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Tables of the in-memory storage backend, active with the {@code memory} profile.
+ * <p>
+ * Every table is a {@link StripedLongMap} keyed by entity ID, so reads and writes of different entities
+ * rarely contend. The storages keep in the tables only what they own: films without likes, users without
+ * friends and likes, reviews with their {@code useful} rating. Likes are held in a {@link FilmLikesIndex},
+ * friendships as the set of users each user added as a friend together with its reverse, the set of users
+ * who added each user, and review reactions as the sets of users who liked and disliked each review.
+ * IDs are assigned from sequences that only grow, so the IDs of entities also give their creation order.
+ * </p>
+ * <p>
+ * The storages read the tables directly but change them only through the methods of this class, which
+ * apply a change together with everything it implies (deleting a user also deletes their reviews,
+ * reactions, likes, friendships and events) and, when {@code filmorate.memory.wal-dir} is set, append it to
+ * a {@link WriteAheadLog}. A change is appended under the lock that guards it, so changes of the same
+ * entity reach the log in the order they were applied. With {@code filmorate.memory.wal-sync} a method
+ * returns only after its record is on disk; otherwise the record is forced with the next batch.
+ * </p>
+ * <p>
+ * When {@code filmorate.memory.snapshot-path} is set, the tables are also written to a JSON snapshot
+ * periodically and on shutdown. A snapshot is streamed to a temporary file that replaces the previous one
+ * atomically, and records the log position it covers; the log segments before that position are then
+ * deleted. At startup the snapshot is read through a memory mapping and the rest of the log replayed.
+ * Since writers are not stopped while a snapshot is taken, it may already contain some of the later
+ * changes. Every logged change sets a state rather than adjusting one, so replaying it again is harmless.
+ * </p>
+ */
+@Slf4j
+@Component
+@Profile("memory")
+public class MemoryDatabase {
+
+    // Типы записей журнала; коды хранятся в файлах и не должны меняться
+    private static final byte FILM_SAVED = 1;
+    private static final byte FILM_DELETED = 2;
+    private static final byte LIKE_ADDED = 3;
+    private static final byte LIKE_REMOVED = 4;
+    private static final byte USER_SAVED = 5;
+    private static final byte USER_DELETED = 6;
+    private static final byte FRIEND_ADDED = 7;
+    private static final byte FRIEND_REMOVED = 8;
+    private static final byte DIRECTOR_SAVED = 9;
+    private static final byte DIRECTOR_DELETED = 10;
+    private static final byte REVIEW_SAVED = 11;
+    private static final byte REVIEW_DELETED = 12;
+    private static final byte REACTION_CHANGED = 13;
+    private static final byte EVENT_ADDED = 14;
+    private static final byte EVENTS_REMOVED = 15;
+
+    private static final int SNAPSHOT_BUFFER_SIZE = 1 << 16;
+
+    private final ObjectMapper objectMapper;
+    private final String snapshotPath;
+    private final String walDirectory;
+    private final boolean walSync;
+    private WriteAheadLog wal;
+
+    private final StripedLongMap<Film> films;
+    private final StripedLongMap<User> users;
+    private final StripedLongMap<IntBitmap> friends;
+    private final StripedLongMap<IntBitmap> followers;
+    private final StripedLongMap<Director> directors;
+    private final StripedLongMap<Review> reviews;
+    private final StripedLongMap<IntBitmap> reviewLikes;
+    private final StripedLongMap<IntBitmap> reviewDislikes;
+    private final StripedLongMap<List<UserEvent>> events;
+    private final FilmLikesIndex likes = new FilmLikesIndex();
+
+    private final AtomicLong filmIds = new AtomicLong();
+    private final AtomicLong userIds = new AtomicLong();
+    private final AtomicLong directorIds = new AtomicLong();
+    private final AtomicLong reviewIds = new AtomicLong();
+    private final AtomicLong eventIds = new AtomicLong();
+
+    /**
+     * Constructor for {@code MemoryDatabase}.
+     *
+     * @param objectMapper the mapper writing and reading snapshots and log records.
+     * @param concurrency  the number of lock stripes per table.
+     * @param snapshotPath the snapshot file; snapshots are disabled when blank.
+     * @param walDirectory the directory of the write-ahead log; the log is disabled when blank.
+     * @param walSync      whether changes wait until their log record is forced to disk.
+     */
+    public MemoryDatabase(ObjectMapper objectMapper,
+                          @Value("${filmorate.memory.concurrency:64}") int concurrency,
+                          @Value("${filmorate.memory.snapshot-path:}") String snapshotPath,
+                          @Value("${filmorate.memory.wal-dir:}") String walDirectory,
+                          @Value("${filmorate.memory.wal-sync:true}") boolean walSync) {
+        this.objectMapper = objectMapper;
+        this.snapshotPath = snapshotPath;
+        this.walDirectory = walDirectory;
+        this.walSync = walSync;
+        this.films = new StripedLongMap<>(concurrency);
+        this.users = new StripedLongMap<>(concurrency);
+        this.friends = new StripedLongMap<>(concurrency);
+        this.followers = new StripedLongMap<>(concurrency);
+        this.directors = new StripedLongMap<>(concurrency);
+        this.reviews = new StripedLongMap<>(concurrency);
+        this.reviewLikes = new StripedLongMap<>(concurrency);
+        this.reviewDislikes = new StripedLongMap<>(concurrency);
+        this.events = new StripedLongMap<>(concurrency);
+    }
+
+    public StripedLongMap<Film> films() {
+        return films;
+    }
+
+    public StripedLongMap<User> users() {
+        return users;
+    }
+
+    /**
+     * Returns the friendships: the IDs of the users each user added as a friend.
+     *
+     * @return the friend sets keyed by user ID.
+     */
+    public StripedLongMap<IntBitmap> friends() {
+        return friends;
+    }
+
+    /**
+     * Returns the reverse of the friendships: the IDs of the users who added each user as a friend.
+     *
+     * @return the follower sets keyed by user ID.
+     */
+    public StripedLongMap<IntBitmap> followers() {
+        return followers;
+    }
+
+    public StripedLongMap<Director> directors() {
+        return directors;
+    }
+
+    public StripedLongMap<Review> reviews() {
+        return reviews;
+    }
+
+    /**
+     * Returns the IDs of the users who liked each review.
+     * Reactions of a review are only changed under the write lock of the review in {@link #reviews()}.
+     *
+     * @return the sets of users keyed by review ID.
+     */
+    public StripedLongMap<IntBitmap> reviewLikes() {
+        return reviewLikes;
+    }
+
+    /**
+     * Returns the IDs of the users who disliked each review.
+     * Reactions of a review are only changed under the write lock of the review in {@link #reviews()}.
+     *
+     * @return the sets of users keyed by review ID.
+     */
+    public StripedLongMap<IntBitmap> reviewDislikes() {
+        return reviewDislikes;
+    }
+
+    /**
+     * Returns the feed events of each user, in the order they were added.
+     *
+     * @return the event lists keyed by user ID.
+     */
+    public StripedLongMap<List<UserEvent>> events() {
+        return events;
+    }
+
+    public FilmLikesIndex likes() {
+        return likes;
+    }
+
+    public long lastFilmId() {
+        return filmIds.get();
+    }
+
+    public long lastUserId() {
+        return userIds.get();
+    }
+
+    /**
+     * Stores a new film with the next film ID.
+     *
+     * @param film the film to store; its ID is set.
+     */
+    public void insertFilm(Film film) {
+        long[] lsn = new long[1];
+        film.setId(nextIntId(filmIds, "Film"));
+        films.compute(film.getId(), current -> {
+            lsn[0] = append(FILM_SAVED, json(film));
+            return film;
+        });
+        commit(lsn[0]);
+    }
+
+    /**
+     * Replaces an existing film.
+     *
+     * @param id      the ID of the film.
+     * @param updater builds the new film from the current one.
+     * @return the previous film, or {@code null} if the film does not exist.
+     */
+    public Film updateFilm(long id, UnaryOperator<Film> updater) {
+        long[] lsn = new long[1];
+        Film previous = films.compute(id, current -> {
+            if (current == null) {
+                return null;
+            }
+            Film updated = updater.apply(current);
+            lsn[0] = append(FILM_SAVED, json(updated));
+            return updated;
+        });
+        commit(lsn[0]);
+        return previous;
+    }
+
+    /**
+     * Deletes a film together with its likes and reviews.
+     *
+     * @param id the ID of the film.
+     * @return {@code true} if the film existed.
+     */
+    public boolean deleteFilm(long id) {
+        if (!removeFilm(id)) {
+            return false;
+        }
+        commit(append(FILM_DELETED, ids(id)));
+        return true;
+    }
+
+    /**
+     * Adds a like under the lock of the film, so it cannot interleave with the film's deletion.
+     *
+     * @param filmId the ID of the film.
+     * @param userId the ID of the user.
+     * @return {@code true} if the film exists and the user had not liked it.
+     */
+    public boolean addLike(long filmId, long userId) {
+        long[] lsn = new long[1];
+        boolean[] added = new boolean[1];
+        films.compute(filmId, current -> {
+            if (current != null && likes.addLike(filmId, userId)) {
+                added[0] = true;
+                lsn[0] = append(LIKE_ADDED, ids(filmId, userId));
+            }
+            return current;
+        });
+        commit(lsn[0]);
+        return added[0];
+    }
+
+    /**
+     * Removes a like under the lock of the film.
+     *
+     * @param filmId the ID of the film.
+     * @param userId the ID of the user.
+     * @return {@code true} if the user had liked the film.
+     */
+    public boolean removeLike(long filmId, long userId) {
+        long[] lsn = new long[1];
+        boolean[] removed = new boolean[1];
+        films.compute(filmId, current -> {
+            if (likes.removeLike(filmId, userId)) {
+                removed[0] = true;
+                lsn[0] = append(LIKE_REMOVED, ids(filmId, userId));
+            }
+            return current;
+        });
+        commit(lsn[0]);
+        return removed[0];
+    }
+
+    /**
+     * Stores a new user with the next user ID.
+     *
+     * @param user the user to store; its ID is set.
+     */
+    public void insertUser(User user) {
+        long[] lsn = new long[1];
+        user.setId(nextIntId(userIds, "User"));
+        users.compute(user.getId(), current -> {
+            lsn[0] = append(USER_SAVED, json(user));
+            return user;
+        });
+        commit(lsn[0]);
+    }
+
+    /**
+     * Replaces an existing user.
+     *
+     * @param id      the ID of the user.
+     * @param updater builds the new user from the current one.
+     * @return the previous user, or {@code null} if the user does not exist.
+     */
+    public User updateUser(long id, UnaryOperator<User> updater) {
+        long[] lsn = new long[1];
+        User previous = users.compute(id, current -> {
+            if (current == null) {
+                return null;
+            }
+            User updated = updater.apply(current);
+            lsn[0] = append(USER_SAVED, json(updated));
+            return updated;
+        });
+        commit(lsn[0]);
+        return previous;
+    }
+
+    /**
+     * Deletes a user together with their likes, reviews, reactions, events and friendships.
+     *
+     * @param id the ID of the user.
+     * @return {@code true} if the user existed.
+     */
+    public boolean deleteUser(long id) {
+        if (!removeUser(id)) {
+            return false;
+        }
+        commit(append(USER_DELETED, ids(id)));
+        return true;
+    }
+
+    /**
+     * Adds {@code friendId} to the friends of {@code userId} under the locks of both users,
+     * so concurrent changes of the same friendship see each other.
+     *
+     * @param userId   the ID of the user.
+     * @param friendId the ID of the friend.
+     * @return {@code true} if neither user had added the other before.
+     */
+    public boolean addFriend(long userId, long friendId) {
+        long[] lsn = new long[1];
+        boolean isNew = friends.writeLocked(userId, friendId, () -> {
+            boolean related = isFriend(userId, friendId) || isFriend(friendId, userId);
+            changeFriend(userId, friendId, true);
+            lsn[0] = append(FRIEND_ADDED, ids(userId, friendId));
+            return !related;
+        });
+        commit(lsn[0]);
+        return isNew;
+    }
+
+    /**
+     * Removes {@code friendId} from the friends of {@code userId} under the locks of both users.
+     *
+     * @param userId   the ID of the user.
+     * @param friendId the ID of the friend.
+     * @return {@code true} if either user had added the other.
+     */
+    public boolean removeFriend(long userId, long friendId) {
+        long[] lsn = new long[1];
+        boolean related = friends.writeLocked(userId, friendId, () -> {
+            boolean wasRelated = isFriend(userId, friendId) || isFriend(friendId, userId);
+            changeFriend(userId, friendId, false);
+            lsn[0] = append(FRIEND_REMOVED, ids(userId, friendId));
+            return wasRelated;
+        });
+        commit(lsn[0]);
+        return related;
+    }
+
+    /**
+     * Stores a new director with the next director ID.
+     *
+     * @param director the director to store; its ID is set.
+     */
+    public void insertDirector(Director director) {
+        long[] lsn = new long[1];
+        director.setId(Math.toIntExact(directorIds.incrementAndGet()));
+        directors.compute(director.getId(), current -> {
+            lsn[0] = append(DIRECTOR_SAVED, json(director));
+            return director;
+        });
+        commit(lsn[0]);
+    }
+
+    /**
+     * Replaces an existing director.
+     *
+     * @param director the new director.
+     * @return {@code true} if the director existed.
+     */
+    public boolean updateDirector(Director director) {
+        long[] lsn = new long[1];
+        Director previous = directors.compute(director.getId(), current -> {
+            if (current == null) {
+                return null;
+            }
+            lsn[0] = append(DIRECTOR_SAVED, json(director));
+            return director;
+        });
+        commit(lsn[0]);
+        return previous != null;
+    }
+
+    /**
+     * Deletes a director. Films keep referring to the director and skip the reference when read.
+     *
+     * @param id the ID of the director.
+     */
+    public void deleteDirector(int id) {
+        long[] lsn = new long[1];
+        directors.compute(id, current -> {
+            if (current != null) {
+                lsn[0] = append(DIRECTOR_DELETED, ids(id));
+            }
+            return null;
+        });
+        commit(lsn[0]);
+    }
+
+    /**
+     * Stores a new review with the next review ID and no reactions.
+     *
+     * @param review the review to store; its ID is set and its rating reset.
+     */
+    public void insertReview(Review review) {
+        long[] lsn = new long[1];
+        review.setReviewId(reviewIds.incrementAndGet());
+        review.setUseful(0);
+        reviews.compute(review.getReviewId(), current -> {
+            lsn[0] = append(REVIEW_SAVED, json(review));
+            return review;
+        });
+        commit(lsn[0]);
+    }
+
+    /**
+     * Replaces an existing review, keeping its reactions.
+     *
+     * @param id      the ID of the review.
+     * @param updater builds the new review from the current one.
+     * @return the previous review, or {@code null} if the review does not exist.
+     */
+    public Review updateReview(long id, UnaryOperator<Review> updater) {
+        long[] lsn = new long[1];
+        Review previous = reviews.compute(id, current -> {
+            if (current == null) {
+                return null;
+            }
+            Review updated = updater.apply(current);
+            updated.setUseful(current.getUseful());
+            lsn[0] = append(REVIEW_SAVED, json(updated));
+            return updated;
+        });
+        commit(lsn[0]);
+        return previous;
+    }
+
+    /**
+     * Deletes a review together with its reactions.
+     *
+     * @param id the ID of the review.
+     * @return the deleted review, or {@code null} if the review does not exist.
+     */
+    public Review deleteReview(long id) {
+        long[] lsn = new long[1];
+        Review removed = reviews.compute(id, current -> {
+            if (current != null) {
+                reviewLikes.remove(id);
+                reviewDislikes.remove(id);
+                lsn[0] = append(REVIEW_DELETED, ids(id));
+            }
+            return null;
+        });
+        commit(lsn[0]);
+        return removed;
+    }
+
+    /**
+     * Sets the reaction of a user to a review and updates the rating of the review,
+     * under the write lock of the review, so the rating always matches the reactions.
+     *
+     * @param reviewId the ID of the review.
+     * @param userId   the ID of the user.
+     * @param liked    {@code true} for a like, {@code false} for a dislike, {@code null} to remove the reaction.
+     * @return the previous reaction in the same form; {@code null} also if the review does not exist.
+     */
+    public Boolean setReaction(long reviewId, long userId, Boolean liked) {
+        long[] lsn = new long[1];
+        Boolean[] previous = new Boolean[1];
+        reviews.compute(reviewId, review -> {
+            if (review != null) {
+                previous[0] = changeReaction(review, userId, liked);
+                lsn[0] = append(REACTION_CHANGED, ids(reviewId, userId, reactionCode(liked)));
+            }
+            return review;
+        });
+        commit(lsn[0]);
+        return previous[0];
+    }
+
+    /**
+     * Adds an event to the feed of its user with the next event ID.
+     * The ID is assigned under the lock of the user's feed, so the feed is ordered by ID.
+     *
+     * @param event the event to store; its ID is set.
+     */
+    public void insertEvent(UserEvent event) {
+        long[] lsn = new long[1];
+        events.compute(event.getUserId(), userEvents -> {
+            List<UserEvent> updated = userEvents != null ? userEvents : new ArrayList<>();
+            event.setEventId(eventIds.incrementAndGet());
+            updated.add(event);
+            lsn[0] = append(EVENT_ADDED, json(event));
+            return updated;
+        });
+        commit(lsn[0]);
+    }
+
+    /**
+     * Removes the events of a user with IDs in the given range, e.g. once they are archived.
+     *
+     * @param userId      the ID of the user.
+     * @param fromEventId the ID of the first event to remove.
+     * @param toEventId   the ID of the last event to remove.
+     * @return the number of removed events.
+     */
+    public int removeEvents(long userId, long fromEventId, long toEventId) {
+        long[] lsn = new long[1];
+        int[] removed = new int[1];
+        events.compute(userId, userEvents -> {
+            if (userEvents == null) {
+                return null;
+            }
+            removed[0] = removeEventRange(userEvents, fromEventId, toEventId);
+            if (removed[0] > 0) {
+                lsn[0] = append(EVENTS_REMOVED, ids(userId, fromEventId, toEventId));
+            }
+            return userEvents.isEmpty() ? null : userEvents;
+        });
+        commit(lsn[0]);
+        return removed[0];
+    }
+
+    /**
+     * Loads the snapshot, replays the write-ahead log after it and opens the log for new records.
+     * Runs before the storages build their indexes from the tables.
+     */
+    @PostConstruct
+    public void load() {
+        long snapshotLsn = loadSnapshot();
+        if (walDirectory.isBlank()) {
+            return;
+        }
+        if (snapshotPath.isBlank()) {
+            log.warn("Write-ahead log is enabled without snapshots, so it is never truncated");
+        }
+        Path directory = Path.of(walDirectory);
+        long[] replayed = new long[1];
+        long lastLsn = WriteAheadLog.replay(directory, snapshotLsn, (lsn, type, payload) -> {
+            replay(type, payload);
+            replayed[0]++;
+        });
+        wal = WriteAheadLog.open(directory, lastLsn);
+        log.info("Replayed {} write-ahead log records after LSN {}: {} films, {} users, {} reviews",
+                replayed[0], snapshotLsn, films.size(), users.size(), reviews.size());
+    }
+
+    /**
+     * Writes the snapshot and closes the write-ahead log.
+     */
+    @PreDestroy
+    public void close() {
+        saveSnapshot();
+        if (wal != null) {
+            wal.close();
+        }
+    }
+
+    /**
+     * Writes the tables to the snapshot file, if snapshots are enabled,
+     * and deletes the log segments the snapshot covers.
+     */
+    @Scheduled(initialDelayString = "${filmorate.memory.snapshot-interval-ms:60000}",
+            fixedDelayString = "${filmorate.memory.snapshot-interval-ms:60000}")
+    public synchronized void saveSnapshot() {
+        if (snapshotPath.isBlank()) {
+            return;
+        }
+        // Все изменения до начала нового сегмента уже применены к таблицам и попадут в снимок
+        long nextLsn = wal != null ? wal.rotate() : 1;
+        Snapshot snapshot = takeSnapshot(nextLsn - 1);
+        Path target = Path.of(snapshotPath).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(target.getParent());
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // JSON пишется в файл по мере формирования, без промежуточного массива размером со снимок
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), SNAPSHOT_BUFFER_SIZE);
+                objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, snapshot);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Failed to write snapshot {}", snapshotPath, e);
+            return;
+        }
+        if (wal != null) {
+            wal.deleteSegmentsBefore(nextLsn);
+        }
+        log.debug("Wrote snapshot {} up to LSN {}", snapshotPath, snapshot.lastLsn());
+    }
+
+    /**
+     * Loads the tables from the snapshot file, if snapshots are enabled and the file exists.
+     *
+     * @return the LSN of the last log record the snapshot covers; {@code 0} without a snapshot.
+     */
+    private long loadSnapshot() {
+        if (snapshotPath.isBlank() || !Files.exists(Path.of(snapshotPath))) {
+            return 0;
+        }
+        Snapshot snapshot;
+        try (FileChannel channel = FileChannel.open(Path.of(snapshotPath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            snapshot = objectMapper.readValue(new ByteBufferBackedInputStream(buffer), Snapshot.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read snapshot " + snapshotPath, e);
+        }
+
+        snapshot.users().forEach(user -> users.put(user.getId(), user));
+        snapshot.directors().forEach(director -> directors.put(director.getId(), director));
+        snapshot.films().forEach(film -> {
+            film.getDirectors().removeIf(director -> !directors.containsKey(director.getId()));
+            films.put(film.getId(), film);
+        });
+        snapshot.users().forEach(user -> {
+            user.getFriends().stream()
+                    .filter(users::containsKey)
+                    .forEach(friendId -> changeFriend(user.getId(), friendId, true));
+            user.getLikedFilms().stream()
+                    .filter(films::containsKey)
+                    .forEach(filmId -> likes.addLike(filmId, user.getId()));
+            user.setFriends(new HashSet<>());
+            user.setLikedFilms(new HashSet<>());
+        });
+        snapshot.reviews().stream()
+                .filter(review -> users.containsKey(review.getUserId()) && films.containsKey(review.getFilmId()))
+                .forEach(review -> {
+                    IntBitmap likedBy = reactions(snapshot.reviewLikes(), review.getReviewId());
+                    IntBitmap dislikedBy = reactions(snapshot.reviewDislikes(), review.getReviewId());
+                    review.setUseful(likedBy.cardinality() - dislikedBy.cardinality());
+                    reviews.put(review.getReviewId(), review);
+                    if (!likedBy.isEmpty()) {
+                        reviewLikes.put(review.getReviewId(), likedBy);
+                    }
+                    if (!dislikedBy.isEmpty()) {
+                        reviewDislikes.put(review.getReviewId(), dislikedBy);
+                    }
+                });
+        snapshot.events().stream()
+                .filter(event -> users.containsKey(event.getUserId()))
+                .forEach(this::restoreEvent);
+
+        filmIds.set(snapshot.lastFilmId());
+        userIds.set(snapshot.lastUserId());
+        directorIds.set(snapshot.lastDirectorId());
+        reviewIds.set(snapshot.lastReviewId());
+        eventIds.set(snapshot.lastEventId());
+        log.info("Loaded snapshot {}: {} films, {} users, {} reviews", snapshotPath, films.size(), users.size(),
+                reviews.size());
+        return snapshot.lastLsn();
+    }
+
+    private Snapshot takeSnapshot(long lastLsn) {
+        // Последовательности читаются первыми: ID любой попавшей в снимок записи не больше сохранённого
+        long lastFilmId = filmIds.get();
+        long lastUserId = userIds.get();
+        long lastDirectorId = directorIds.get();
+        long lastReviewId = reviewIds.get();
+        long lastEventId = eventIds.get();
+
+        List<User> userList = new ArrayList<>();
+        users.forEach(user -> {
+            User copy = copy(user);
+            copy.setFriends(new HashSet<>(friends.read(user.getId(), MemoryDatabase::toIds)));
+            copy.setLikedFilms(new HashSet<>(likes.getFilmIds(user.getId())));
+            userList.add(copy);
+        });
+        List<Film> filmList = new ArrayList<>();
+        films.forEach(film -> filmList.add(copy(film)));
+        List<Review> reviewList = new ArrayList<>();
+        Map<Long, List<Long>> likedReviews = new HashMap<>();
+        Map<Long, List<Long>> dislikedReviews = new HashMap<>();
+        reviews.forEach(review -> {
+            reviewList.add(copy(review));
+            likedReviews.put(review.getReviewId(), reviewLikes.read(review.getReviewId(), MemoryDatabase::toIds));
+            dislikedReviews.put(review.getReviewId(),
+                    reviewDislikes.read(review.getReviewId(), MemoryDatabase::toIds));
+        });
+        List<UserEvent> eventList = new ArrayList<>();
+        events.forEach(eventList::addAll);
+
+        return new Snapshot(lastLsn, lastFilmId, lastUserId, lastDirectorId, lastReviewId, lastEventId,
+                filmList, userList, directors.values(), reviewList, likedReviews, dislikedReviews, eventList);
+    }
+
+    /**
+     * Applies a log record to the tables during recovery.
+     * The record may already be reflected in the snapshot, so applying it must not depend on that.
+     */
+    private void replay(byte type, byte[] payload) {
+        ByteBuffer data = ByteBuffer.wrap(payload);
+        switch (type) {
+            case FILM_SAVED -> {
+                Film film = fromJson(payload, Film.class);
+                films.put(film.getId(), film);
+                filmIds.accumulateAndGet(film.getId(), Math::max);
+            }
+            case FILM_DELETED -> removeFilm(data.getLong());
+            case LIKE_ADDED -> {
+                long filmId = data.getLong();
+                long userId = data.getLong();
+                if (films.containsKey(filmId) && users.containsKey(userId)) {
+                    likes.addLike(filmId, userId);
+                }
+            }
+            case LIKE_REMOVED -> likes.removeLike(data.getLong(), data.getLong());
+            case USER_SAVED -> {
+                User user = fromJson(payload, User.class);
+                users.put(user.getId(), user);
+                userIds.accumulateAndGet(user.getId(), Math::max);
+            }
+            case USER_DELETED -> removeUser(data.getLong());
+            case FRIEND_ADDED -> changeFriend(data.getLong(), data.getLong(), true);
+            case FRIEND_REMOVED -> changeFriend(data.getLong(), data.getLong(), false);
+            case DIRECTOR_SAVED -> {
+                Director director = fromJson(payload, Director.class);
+                directors.put(director.getId(), director);
+                directorIds.accumulateAndGet(director.getId(), Math::max);
+            }
+            case DIRECTOR_DELETED -> directors.remove(data.getLong());
+            case REVIEW_SAVED -> {
+                Review review = fromJson(payload, Review.class);
+                review.setUseful(reviewLikes.read(review.getReviewId(), MemoryDatabase::cardinality)
+                        - reviewDislikes.read(review.getReviewId(), MemoryDatabase::cardinality));
+                reviews.put(review.getReviewId(), review);
+                reviewIds.accumulateAndGet(review.getReviewId(), Math::max);
+            }
+            case REVIEW_DELETED -> {
+                long id = data.getLong();
+                reviews.remove(id);
+                reviewLikes.remove(id);
+                reviewDislikes.remove(id);
+            }
+            case REACTION_CHANGED -> {
+                Review review = reviews.get(data.getLong());
+                if (review != null) {
+                    changeReaction(review, data.getLong(), reaction(data.getLong()));
+                }
+            }
+            case EVENT_ADDED -> restoreEvent(fromJson(payload, UserEvent.class));
+            case EVENTS_REMOVED -> {
+                long userId = data.getLong();
+                long fromEventId = data.getLong();
+                long toEventId = data.getLong();
+                events.compute(userId, userEvents -> {
+                    if (userEvents == null) {
+                        return null;
+                    }
+                    removeEventRange(userEvents, fromEventId, toEventId);
+                    return userEvents.isEmpty() ? null : userEvents;
+                });
+            }
+            default -> throw new IllegalStateException("Unknown write-ahead log record type " + type);
+        }
+    }
+
+    private boolean removeFilm(long id) {
+        if (films.remove(id) == null) {
+            return false;
+        }
+        likes.removeFilm(id);
+        reviews.replaceAll(review -> {
+            if (review.getFilmId() != id) {
+                return review;
+            }
+            reviewLikes.remove(review.getReviewId());
+            reviewDislikes.remove(review.getReviewId());
+            return null;
+        });
+        return true;
+    }
+
+    private boolean removeUser(long id) {
+        if (users.remove(id) == null) {
+            return false;
+        }
+        likes.removeUser(id);
+        reviews.replaceAll(review -> {
+            if (review.getUserId() != id) {
+                changeReaction(review, id, null);
+                return review;
+            }
+            reviewLikes.remove(review.getReviewId());
+            reviewDislikes.remove(review.getReviewId());
+            return null;
+        });
+        events.remove(id);
+        for (long friendId : friends.read(id, MemoryDatabase::toIds)) {
+            changeFriend(id, friendId, false);
+        }
+        for (long followerId : followers.read(id, MemoryDatabase::toIds)) {
+            changeFriend(followerId, id, false);
+        }
+        return true;
+    }
+
+    private boolean isFriend(long userId, long friendId) {
+        return friends.read(userId, userFriends -> userFriends != null
+                && userFriends.contains(Math.toIntExact(friendId)));
+    }
+
+    /**
+     * Adds or removes a friend and keeps the reverse set of followers in step.
+     */
+    private void changeFriend(long userId, long friendId, boolean add) {
+        friends.compute(userId, userFriends -> {
+            IntBitmap updated = changeMember(userFriends, friendId, add);
+            followers.compute(friendId, friendFollowers -> changeMember(friendFollowers, userId, add));
+            return updated;
+        });
+    }
+
+    private static IntBitmap changeMember(IntBitmap set, long id, boolean add) {
+        if (add) {
+            IntBitmap updated = set != null ? set : new IntBitmap();
+            updated.add(Math.toIntExact(id));
+            return updated;
+        }
+        if (set == null) {
+            return null;
+        }
+        set.remove(Math.toIntExact(id));
+        return set.isEmpty() ? null : set;
+    }
+
+    /**
+     * Replaces the reaction of a user to a review and updates the rating of the review.
+     * Must be called under the write lock of the review.
+     *
+     * @return the previous reaction: {@code true} for a like, {@code false} for a dislike, {@code null} for none.
+     */
+    private Boolean changeReaction(Review review, long userId, Boolean liked) {
+        long id = review.getReviewId();
+        Boolean previous = null;
+        if (removeFrom(reviewLikes, id, userId)) {
+            previous = Boolean.TRUE;
+            review.setUseful(review.getUseful() - 1);
+        } else if (removeFrom(reviewDislikes, id, userId)) {
+            previous = Boolean.FALSE;
+            review.setUseful(review.getUseful() + 1);
+        }
+        if (liked != null) {
+            addTo(liked ? reviewLikes : reviewDislikes, id, userId);
+            review.setUseful(review.getUseful() + (liked ? 1 : -1));
+        }
+        return previous;
+    }
+
+    /**
+     * Adds an event to the feed of its user unless the feed already has it.
+     */
+    private void restoreEvent(UserEvent event) {
+        events.compute(event.getUserId(), userEvents -> {
+            List<UserEvent> updated = userEvents != null ? userEvents : new ArrayList<>();
+            if (updated.isEmpty() || updated.get(updated.size() - 1).getEventId() < event.getEventId()) {
+                updated.add(event);
+            }
+            return updated;
+        });
+        eventIds.accumulateAndGet(event.getEventId(), Math::max);
+    }
+
+    /**
+     * Removes the events with IDs in a range from a feed ordered by ID.
+     */
+    private static int removeEventRange(List<UserEvent> userEvents, long fromEventId, long toEventId) {
+        int from = 0;
+        while (from < userEvents.size() && userEvents.get(from).getEventId() < fromEventId) {
+            from++;
+        }
+        int to = from;
+        while (to < userEvents.size() && userEvents.get(to).getEventId() <= toEventId) {
+            to++;
+        }
+        userEvents.subList(from, to).clear();
+        return to - from;
+    }
+
+    /**
+     * Takes the next film or user ID. The likes, search and recommendation indexes keep these IDs as
+     * {@code int}, so an ID beyond that range is refused here, before anything is stored or logged.
+     */
+    private static long nextIntId(AtomicLong ids, String entity) {
+        long id = ids.incrementAndGet();
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalStateException(entity + " IDs are exhausted: " + id + " does not fit the indexes");
+        }
+        return id;
+    }
+
+    private long append(byte type, byte[] payload) {
+        return wal != null ? wal.append(type, payload) : 0;
+    }
+
+    private void commit(long lsn) {
+        if (walSync && lsn > 0) {
+            wal.awaitDurable(lsn);
+        }
+    }
+
+    private byte[] json(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private <T> T fromJson(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + type.getSimpleName() + " from write-ahead log", e);
+        }
+    }
+
+    private static byte[] ids(long... ids) {
+        ByteBuffer buffer = ByteBuffer.allocate(ids.length * Long.BYTES);
+        Arrays.stream(ids).forEach(buffer::putLong);
+        return buffer.array();
+    }
+
+    private static long reactionCode(Boolean liked) {
+        return liked == null ? 0 : liked ? 1 : -1;
+    }
+
+    private static Boolean reaction(long code) {
+        return code == 0 ? null : code > 0;
+    }
+
+    private static boolean addTo(StripedLongMap<IntBitmap> sets, long reviewId, long userId) {
+        boolean[] added = new boolean[1];
+        sets.compute(reviewId, set -> {
+            IntBitmap updated = set != null ? set : new IntBitmap();
+            added[0] = updated.add(Math.toIntExact(userId));
+            return updated;
+        });
+        return added[0];
+    }
+
+    private static boolean removeFrom(StripedLongMap<IntBitmap> sets, long reviewId, long userId) {
+        boolean[] removed = new boolean[1];
+        sets.compute(reviewId, set -> {
+            if (set == null) {
+                return null;
+            }
+            removed[0] = set.remove(Math.toIntExact(userId));
+            return set.isEmpty() ? null : set;
+        });
+        return removed[0];
+    }
+
+    private static int cardinality(IntBitmap bitmap) {
+        return bitmap != null ? bitmap.cardinality() : 0;
+    }
+
+    private static IntBitmap reactions(Map<Long, List<Long>> reactionsByReview, long reviewId) {
+        return toBitmap(reactionsByReview.getOrDefault(reviewId, List.of()));
+    }
+
+    private static IntBitmap toBitmap(List<Long> ids) {
+        IntBitmap bitmap = new IntBitmap();
+        ids.forEach(id -> bitmap.add(Math.toIntExact(id)));
+        return bitmap;
+    }
+
+    private static List<Long> toIds(IntBitmap bitmap) {
+        return bitmap == null ? List.of() : Arrays.stream(bitmap.toArray()).asLongStream().boxed().toList();
+    }
+
+    private static Film copy(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa());
+        copy.setGenres(new HashSet<>(film.getGenres()));
+        copy.setDirectors(new HashSet<>(film.getDirectors()));
+        return copy;
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        return copy;
+    }
+
+    private static Review copy(Review review) {
+        Review copy = new Review();
+        copy.setReviewId(review.getReviewId());
+        copy.setContent(review.getContent());
+        copy.setIsPositive(review.getIsPositive());
+        copy.setUserId(review.getUserId());
+        copy.setFilmId(review.getFilmId());
+        copy.setUseful(review.getUseful());
+        return copy;
+    }
+
+    /**
+     * Content of a snapshot file.
+     * Users carry the IDs of their friends and liked films; review reactions are keyed by review ID.
+     * {@code lastLsn} is the last write-ahead log record reflected in the snapshot.
+     */
+    private record Snapshot(long lastLsn, long lastFilmId, long lastUserId, long lastDirectorId,
+                            long lastReviewId, long lastEventId, List<Film> films, List<User> users,
+                            List<Director> directors, List<Review> reviews, Map<Long, List<Long>> reviewLikes,
+                            Map<Long, List<Long>> reviewDislikes, List<UserEvent> events) {
+    }
+}
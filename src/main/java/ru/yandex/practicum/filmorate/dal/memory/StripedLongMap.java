@@ -0,0 +1,254 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Concurrent map with primitive {@code long} keys split into lock stripes.
+ * <p>
+ * Every stripe is a {@link LongHashMap} guarded by its own read-write lock, and a key always belongs
+ * to the same stripe, so operations on keys of different stripes never wait for each other.
+ * Values may be mutable: {@link #read(long, Function)} and {@link #compute(long, UnaryOperator)} run
+ * their function under the stripe lock, which makes reading or changing a value atomic.
+ * Operations over the whole map lock the stripes one at a time and are not atomic as a whole.
+ * </p>
+ *
+ * @param <V> the type of the values.
+ */
+public class StripedLongMap<V> {
+
+    private final Stripe<V>[] stripes;
+    private final int shift;
+
+    /**
+     * Constructs a map.
+     *
+     * @param concurrency the number of stripes, rounded up to a power of two.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StripedLongMap(int concurrency) {
+        int stripeCount = concurrency <= 1 ? 1 : Integer.highestOneBit(concurrency - 1) << 1;
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        shift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key.
+     * @return the value, or {@code null} if the key is absent.
+     */
+    public V get(long key) {
+        return read(key, Function.identity());
+    }
+
+    /**
+     * Checks whether a key is present.
+     *
+     * @param key the key.
+     * @return {@code true} if the map contains the key.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Applies a function to the value of a key under the stripe read lock.
+     *
+     * @param key    the key.
+     * @param reader the function reading the value; receives {@code null} if the key is absent.
+     * @param <R>    the type of the result.
+     * @return the result of the function.
+     */
+    public <R> R read(long key, Function<? super V, R> reader) {
+        Stripe<V> stripe = stripe(key);
+        stripe.lock.readLock().lock();
+        try {
+            return reader.apply(stripe.map.get(key));
+        } finally {
+            stripe.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @param key   the key.
+     * @param value the non-null value.
+     * @return the previous value, or {@code null} if the key was absent.
+     */
+    public V put(long key, V value) {
+        Stripe<V> stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            return stripe.map.put(key, value);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key.
+     * @return the removed value, or {@code null} if the key was absent.
+     */
+    public V remove(long key) {
+        return compute(key, value -> null);
+    }
+
+    /**
+     * Replaces the value of a key with the result of a function, under the stripe write lock.
+     * The function may also change the value in place and return it.
+     *
+     * @param key     the key.
+     * @param updater the function receiving the current value, or {@code null} if the key is absent,
+     *                and returning the new value, or {@code null} to remove the key.
+     * @return the value before the update.
+     */
+    public V compute(long key, UnaryOperator<V> updater) {
+        Stripe<V> stripe = stripe(key);
+        stripe.lock.writeLock().lock();
+        try {
+            V current = stripe.map.get(key);
+            V updated = updater.apply(current);
+            if (updated == null) {
+                stripe.map.remove(key);
+            } else if (updated != current) {
+                stripe.map.put(key, updated);
+            }
+            return current;
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action holding the write locks of the stripes of two keys.
+     * Stripes are locked in index order, so concurrent calls cannot deadlock. Other operations
+     * of this map on the two keys may be called from the action.
+     *
+     * @param key      the first key.
+     * @param otherKey the second key.
+     * @param action   the action to run.
+     * @param <R>      the type of the result.
+     * @return the result of the action.
+     */
+    public <R> R writeLocked(long key, long otherKey, Supplier<R> action) {
+        int first = stripeIndex(key);
+        int second = stripeIndex(otherKey);
+        ReadWriteLock firstLock = stripes[Math.min(first, second)].lock;
+        ReadWriteLock secondLock = stripes[Math.max(first, second)].lock;
+        firstLock.writeLock().lock();
+        secondLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            secondLock.writeLock().unlock();
+            firstLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every value to the consumer, one stripe at a time under its read lock.
+     *
+     * @param consumer the consumer of the values.
+     */
+    public void forEach(Consumer<? super V> consumer) {
+        for (Stripe<V> stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                stripe.map.forEachValue(consumer);
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces every value with the result of a function, one stripe at a time under its write lock.
+     *
+     * @param updater the function returning the new value, which may be the value changed in place,
+     *                or {@code null} to remove the key.
+     */
+    public void replaceAll(UnaryOperator<V> updater) {
+        for (Stripe<V> stripe : stripes) {
+            stripe.lock.writeLock().lock();
+            try {
+                stripe.map.replaceAll(updater);
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the map.
+     *
+     * @return a new list of the values, in no particular order.
+     */
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        forEach(values::add);
+        return values;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of keys in the map.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                size += stripe.map.size();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            stripe.lock.writeLock().lock();
+            try {
+                stripe.map.clear();
+            } finally {
+                stripe.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private Stripe<V> stripe(long key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private int stripeIndex(long key) {
+        // Старшие биты хеша: младшие выбирают ячейку внутри полосы
+        return shift == 32 ? 0 : LongHashMap.mix(key) >>> shift;
+    }
+
+    /**
+     * A part of the map with its lock.
+     */
+    private static final class Stripe<V> {
+
+        private final LongHashMap<V> map = new LongHashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+}
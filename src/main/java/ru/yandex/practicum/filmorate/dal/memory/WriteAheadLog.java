@@ -0,0 +1,422 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes with group commit.
+ * <p>
+ * Every record gets the next log sequence number (LSN) and is copied to an in-memory buffer. A single
+ * flusher thread writes the buffer to the current segment file and forces it to disk, so all records
+ * appended while the previous batch was being forced share one {@code fsync}. Callers that need
+ * durability wait for their LSN with {@link #awaitDurable(long)} after releasing their own locks.
+ * </p>
+ * <p>
+ * The log is split into segment files named after the LSN of their first record. {@link #rotate()} starts
+ * a new segment, so the segments before it can be deleted once a snapshot covers them.
+ * A record is {@code [payload length][CRC32][LSN][type][payload]}; replay stops at the first record that
+ * is incomplete or fails its checksum, which is where a crash interrupted the last write.
+ * </p>
+ */
+@Slf4j
+public class WriteAheadLog implements Closeable {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d{20})\\.log");
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + 1;
+    private static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    /**
+     * Guards the pending buffer and the LSN counters; never held during I/O.
+     */
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final Condition pendingAppended = bufferLock.newCondition();
+    private final Condition batchFlushed = bufferLock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private long lastLsn;
+    private long durableLsn;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Guards the segment file; batches are taken from the buffer and written under it, so they reach
+     * the file in LSN order.
+     */
+    private final ReentrantLock channelLock = new ReentrantLock();
+    private FileChannel channel;
+    private long segmentStartLsn;
+    private boolean segmentEmpty;
+
+    private final Thread flusher;
+
+    private WriteAheadLog(Path directory, long lastLsn) throws IOException {
+        this.directory = directory;
+        this.lastLsn = lastLsn;
+        this.durableLsn = lastLsn;
+        openSegment(lastLsn + 1);
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Opens the log for appending after its existing records, starting a new segment.
+     *
+     * @param directory the directory of the segment files.
+     * @param lastLsn   the LSN of the last record already in the log, as returned by {@link #replay}.
+     * @return the opened log.
+     */
+    public static WriteAheadLog open(Path directory, long lastLsn) {
+        try {
+            Files.createDirectories(directory);
+            return new WriteAheadLog(directory, lastLsn);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open write-ahead log in " + directory, e);
+        }
+    }
+
+    /**
+     * Reads the records of all segments in LSN order and passes those after {@code afterLsn} to the consumer.
+     * An incomplete or corrupted tail of the last segment is cut off.
+     *
+     * @param directory the directory of the segment files.
+     * @param afterLsn  the LSN of the last record already reflected in the state being recovered.
+     * @param consumer  the consumer of the records.
+     * @return the LSN of the last valid record, or {@code afterLsn} if the log has no later records.
+     * @throws IllegalStateException if a segment other than the last one is corrupted.
+     */
+    public static long replay(Path directory, long afterLsn, RecordConsumer consumer) {
+        NavigableMap<Long, Path> segments = segments(directory);
+        long lastLsn = afterLsn;
+        for (Path segment : segments.values()) {
+            boolean isLast = segment.equals(segments.lastEntry().getValue());
+            try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer data = ByteBuffer.allocate(Math.toIntExact(in.size()));
+                while (data.hasRemaining() && in.read(data) >= 0) {
+                    // читаем сегмент целиком
+                }
+                data.flip();
+                long validEnd = 0;
+                while (true) {
+                    Record record = readRecord(data);
+                    if (record == null) {
+                        break;
+                    }
+                    validEnd = data.position();
+                    lastLsn = Math.max(lastLsn, record.lsn());
+                    if (record.lsn() > afterLsn) {
+                        consumer.accept(record.lsn(), record.type(), record.payload());
+                    }
+                }
+                if (validEnd < in.size()) {
+                    if (!isLast) {
+                        throw new IllegalStateException("Write-ahead log segment " + segment + " is corrupted");
+                    }
+                    log.warn("Cutting off {} bytes of an incomplete record at the end of {}",
+                            in.size() - validEnd, segment);
+                    in.truncate(validEnd);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read write-ahead log segment " + segment, e);
+            }
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Appends a record to the buffer. The record reaches the disk with the next batch.
+     *
+     * @param type    the type of the record.
+     * @param payload the content of the record.
+     * @return the LSN of the record.
+     * @throws UncheckedIOException if a previous write failed.
+     */
+    public long append(byte type, byte[] payload) {
+        if (payload.length > MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Write-ahead log record is too large: " + payload.length);
+        }
+        bufferLock.lock();
+        try {
+            checkUsable();
+            long lsn = ++lastLsn;
+            pending = ensureCapacity(pending, HEADER_SIZE + payload.length);
+            CRC32 crc = new CRC32();
+            crc.update(ByteBuffer.allocate(Long.BYTES + 1).putLong(lsn).put(type).flip());
+            crc.update(payload);
+            pending.putInt(payload.length)
+                    .putInt((int) crc.getValue())
+                    .putLong(lsn)
+                    .put(type)
+                    .put(payload);
+            pendingAppended.signal();
+            return lsn;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the given LSN and all records before it are forced to disk.
+     *
+     * @param lsn the LSN returned by {@link #append(byte, byte[])}.
+     * @throws UncheckedIOException if the batch with the record failed to be written.
+     */
+    public void awaitDurable(long lsn) {
+        bufferLock.lock();
+        try {
+            while (durableLsn < lsn) {
+                checkUsable();
+                batchFlushed.awaitUninterruptibly();
+            }
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the buffer and starts a new segment, unless the current one has no records.
+     *
+     * @return the first LSN of the current segment; every record before it is in older segments.
+     */
+    public long rotate() {
+        channelLock.lock();
+        try {
+            flushBatch();
+            if (!segmentEmpty) {
+                channel.close();
+                bufferLock.lock();
+                try {
+                    openSegment(lastLsn + 1);
+                } finally {
+                    bufferLock.unlock();
+                }
+            }
+            return segmentStartLsn;
+        } catch (IOException e) {
+            fail(e);
+            throw new UncheckedIOException("Failed to rotate write-ahead log", e);
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes the segments whose records all precede the given LSN.
+     *
+     * @param lsn the first LSN to keep, as returned by {@link #rotate()}.
+     */
+    public void deleteSegmentsBefore(long lsn) {
+        for (Path segment : segments(directory).headMap(lsn, false).values()) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.warn("Failed to delete write-ahead log segment {}", segment, e);
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffered records and closes the log.
+     */
+    @Override
+    public void close() {
+        bufferLock.lock();
+        try {
+            closed = true;
+            pendingAppended.signal();
+        } finally {
+            bufferLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channelLock.lock();
+        try {
+            flushBatch();
+            channel.close();
+        } catch (IOException e) {
+            log.error("Failed to close write-ahead log", e);
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            bufferLock.lock();
+            try {
+                while (pending.position() == 0 && !closed && failure == null) {
+                    pendingAppended.awaitUninterruptibly();
+                }
+                if (closed || failure != null) {
+                    return;
+                }
+            } finally {
+                bufferLock.unlock();
+            }
+            channelLock.lock();
+            try {
+                flushBatch();
+            } catch (IOException e) {
+                log.error("Failed to write write-ahead log", e);
+                fail(e);
+                return;
+            } finally {
+                channelLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the buffered records, writes them to the current segment and forces it to disk.
+     * Must be called under {@link #channelLock}.
+     */
+    private void flushBatch() throws IOException {
+        long batchLastLsn;
+        bufferLock.lock();
+        try {
+            if (pending.position() == 0) {
+                return;
+            }
+            ByteBuffer batch = pending;
+            pending = writing;
+            writing = batch;
+            batchLastLsn = lastLsn;
+        } finally {
+            bufferLock.unlock();
+        }
+
+        writing.flip();
+        while (writing.hasRemaining()) {
+            channel.write(writing);
+        }
+        channel.force(false);
+        writing.clear();
+        segmentEmpty = false;
+
+        bufferLock.lock();
+        try {
+            durableLsn = batchLastLsn;
+            batchFlushed.signalAll();
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private void openSegment(long startLsn) throws IOException {
+        Path segment = directory.resolve(String.format("wal-%020d.log", startLsn));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        segmentStartLsn = startLsn;
+        segmentEmpty = true;
+    }
+
+    private void fail(IOException e) {
+        bufferLock.lock();
+        try {
+            failure = e;
+            batchFlushed.signalAll();
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    private static Record readRecord(ByteBuffer data) {
+        if (data.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = data.position();
+        int length = data.getInt();
+        int checksum = data.getInt();
+        long lsn = data.getLong();
+        byte type = data.get();
+        if (length < 0 || length > MAX_PAYLOAD_SIZE || data.remaining() < length) {
+            data.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        data.get(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES + 1).putLong(lsn).put(type).flip());
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            data.position(start);
+            return null;
+        }
+        return new Record(lsn, type, payload);
+    }
+
+    private static NavigableMap<Long, Path> segments(Path directory) {
+        NavigableMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.forEach(files::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list write-ahead log segments in " + directory, e);
+        }
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (matcher.matches()) {
+                segments.put(Long.parseLong(matcher.group(1)), file);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Receives the records of the log during replay.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+
+        void accept(long lsn, byte type, byte[] payload);
+    }
+
+    private record Record(long lsn, byte type, byte[] payload) {
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.dal.migration;
+
+public interface MigrationSqlConstants {
+
+    // Журнал применённых миграций схемы
+    String SQL_CREATE_SCHEMA_VERSION = """
+        CREATE TABLE IF NOT EXISTS schema_version (
+            version INT PRIMARY KEY,
+            description VARCHAR(200) NOT NULL,
+            checksum BIGINT NOT NULL,
+            installed_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+        )
+        """;
+    String SQL_SELECT_APPLIED_MIGRATIONS = "SELECT version, checksum FROM schema_version";
+    String SQL_INSERT_APPLIED_MIGRATION =
+        "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)";
+}
@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.dal.migration;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Applies versioned schema migrations at startup.
+ * <p>
+ * Migrations are SQL scripts named {@code V<version>__<description>.sql} in the migrations location.
+ * Applied versions are recorded in the {@code schema_version} table together with the checksum of their
+ * script, so every start applies only the pending scripts, in version order, and keeps the existing data.
+ * A script changed after it was applied stops the startup. Each script runs in its own transaction;
+ * since H2 commits DDL statements immediately, scripts are written to be safely re-run.
+ * </p>
+ * <p>
+ * Beans using JDBC are initialized after the migrations, see {@link SchemaMigratorDetector}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SchemaMigrator implements MigrationSqlConstants {
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final DataSource dataSource;
+    private final String location;
+
+    /**
+     * Constructor for {@code SchemaMigrator}.
+     *
+     * @param dataSource the data source to migrate.
+     * @param location   the location of the migration scripts.
+     */
+    public SchemaMigrator(DataSource dataSource,
+                          @Value("${filmorate.migrations.location:classpath:db/migration}") String location) {
+        this.dataSource = dataSource;
+        this.location = location;
+    }
+
+    /**
+     * Applies the pending migrations.
+     *
+     * @throws IllegalStateException if an applied migration was changed or is no longer present.
+     */
+    @PostConstruct
+    public void migrate() {
+        NavigableMap<Integer, Resource> migrations = findMigrations();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            jdbcTemplate.execute(SQL_CREATE_SCHEMA_VERSION);
+
+            Map<Integer, Long> applied = new HashMap<>();
+            jdbcTemplate.query(SQL_SELECT_APPLIED_MIGRATIONS, rs -> {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            });
+
+            int appliedNow = 0;
+            for (Map.Entry<Integer, Resource> migration : migrations.entrySet()) {
+                int version = migration.getKey();
+                Resource script = migration.getValue();
+                long checksum = checksum(script);
+                Long appliedChecksum = applied.remove(version);
+
+                if (appliedChecksum == null) {
+                    apply(connection, jdbcTemplate, version, script, checksum);
+                    appliedNow++;
+                } else if (appliedChecksum != checksum) {
+                    throw new IllegalStateException(String.format(
+                            "Migration %s was changed after it was applied", script.getFilename()));
+                }
+            }
+            if (!applied.isEmpty()) {
+                throw new IllegalStateException("Applied migrations are missing: " + applied.keySet());
+            }
+            log.info("Schema is up to date at version {}, {} migrations applied now",
+                    migrations.isEmpty() ? 0 : migrations.lastKey(), appliedNow);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void apply(Connection connection, JdbcTemplate jdbcTemplate, int version, Resource script,
+                       long checksum) {
+        log.info("Applying migration {}", script.getFilename());
+        try {
+            connection.setAutoCommit(false);
+            try {
+                ScriptUtils.executeSqlScript(connection, new EncodedResource(script, StandardCharsets.UTF_8));
+                jdbcTemplate.update(SQL_INSERT_APPLIED_MIGRATION, version, description(script), checksum);
+                connection.commit();
+            } catch (RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Migration " + script.getFilename() + " failed", e);
+        }
+    }
+
+    private NavigableMap<Integer, Resource> findMigrations() {
+        NavigableMap<Integer, Resource> migrations = new TreeMap<>();
+        try {
+            for (Resource script : new PathMatchingResourcePatternResolver().getResources(location + "/V*__*.sql")) {
+                Matcher matcher = MIGRATION_NAME.matcher(script.getFilename());
+                if (!matcher.matches()) {
+                    throw new IllegalStateException("Invalid migration name: " + script.getFilename());
+                }
+                Resource duplicate = migrations.put(Integer.parseInt(matcher.group(1)), script);
+                if (duplicate != null) {
+                    throw new IllegalStateException(String.format("Migrations %s and %s have the same version",
+                            duplicate.getFilename(), script.getFilename()));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list migrations in " + location, e);
+        }
+        return migrations;
+    }
+
+    private static String description(Resource script) {
+        Matcher matcher = MIGRATION_NAME.matcher(script.getFilename());
+        return matcher.matches() ? matcher.group(2).replace('_', ' ') : script.getFilename();
+    }
+
+    private static long checksum(Resource script) {
+        CRC32 crc = new CRC32();
+        try (InputStream in = script.getInputStream()) {
+            crc.update(in.readAllBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read migration " + script.getFilename(), e);
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dal.migration;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+
+import java.util.Set;
+
+/**
+ * Declares {@link SchemaMigrator} as a database initializer, so Spring Boot initializes every bean
+ * using JDBC, such as {@code JdbcTemplate} and the storages loading their indexes, after the migrations.
+ * Registered in {@code META-INF/spring.factories}.
+ */
+public class SchemaMigratorDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+
+    @Override
+    protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+        return Set.of(SchemaMigrator.class);
+    }
+}
@@ -0,0 +1,232 @@
+package ru.yandex.practicum.filmorate.dal.review;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dal.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.dto.ReviewDto;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory implementation of {@link ReviewStorage}, active with the {@code memory} profile.
+ * <p>
+ * Reviews are kept in the {@link MemoryDatabase} together with the sets of users who liked and disliked
+ * each of them. The database changes the sets and the {@code useful} rating of a review under the write
+ * lock of the review, so the rating always matches the sets.
+ * </p>
+ */
+@Slf4j
+@Repository
+@Profile("memory")
+public class InMemoryReviewStorage implements ReviewStorage {
+
+    private static final Comparator<Review> MOST_USEFUL_FIRST = Comparator
+            .comparingInt(Review::getUseful).reversed()
+            .thenComparingLong(Review::getReviewId);
+
+    private final MemoryDatabase database;
+    private final FeedStorage feedStorage;
+
+    public InMemoryReviewStorage(MemoryDatabase database, FeedStorage feedStorage) {
+        this.database = database;
+        this.feedStorage = feedStorage;
+    }
+
+    /**
+     * Adds a new review with the next review ID and returns it as a DTO.
+     *
+     * @param review the review to add.
+     * @return the added review as a DTO.
+     */
+    @Override
+    public ReviewDto addReview(Review review) {
+        Review saved = copy(review);
+        database.insertReview(saved);
+        log.debug("ID of just added review is: {}", saved.getReviewId());
+
+        addReviewEvent(saved.getUserId(), saved.getReviewId(), "ADD");
+        return getReviewById(saved.getReviewId());
+    }
+
+    /**
+     * Updates the content and the type of an existing review and returns it as a DTO.
+     *
+     * @param review the review with updated data.
+     * @return the updated review as a DTO.
+     * @throws NotFoundException if review not in storage.
+     */
+    @Override
+    public ReviewDto updateReview(Review review) {
+        Long id = review.getReviewId();
+        Review previous = database.updateReview(id, current -> {
+            Review updated = copy(current);
+            updated.setContent(review.getContent());
+            updated.setIsPositive(review.getIsPositive());
+            return updated;
+        });
+        if (previous == null) {
+            log.debug("Unsuccessful attempt to update review with ID: {} - not in storage", id);
+            throw new NotFoundException("There's no review you want to update!");
+        }
+
+        addReviewEvent(previous.getUserId(), id, "UPDATE");
+        return getReviewById(id);
+    }
+
+    /**
+     * Deletes a review by its ID together with its reactions.
+     *
+     * @param id the ID of the review to delete.
+     * @throws NotFoundException if review not in storage.
+     */
+    @Override
+    public void deleteReview(Long id) {
+        Review removed = database.deleteReview(id);
+        if (removed == null) {
+            log.debug("No review with ID: {}", id);
+            throw new NotFoundException("There's no review you want to update!");
+        }
+
+        addReviewEvent(removed.getUserId(), id, "REMOVE");
+    }
+
+    /**
+     * Fetches a review by its ID as a DTO.
+     *
+     * @param id the ID of the review.
+     * @return the review DTO with the specified ID.
+     * @throws NotFoundException if review not in storage.
+     */
+    @Override
+    public ReviewDto getReviewById(Long id) {
+        ReviewDto review = database.reviews().read(id, InMemoryReviewStorage::toDto);
+        if (review == null) {
+            throw new NotFoundException(String.format("Review with id = %d not found.", id));
+        }
+        return review;
+    }
+
+    /**
+     * Retrieves the most useful reviews, of one film or of all films, as DTOs.
+     *
+     * @param filmId the ID of film
+     * @param count  the number of reviews to retrieve.
+     * @return a collection of the reviews sorted by useful as DTOs.
+     */
+    @Override
+    public Collection<ReviewDto> getReviewsByIds(Optional<Long> filmId, Integer count) {
+        List<Review> reviews = new ArrayList<>();
+        database.reviews().forEach(review -> {
+            if (filmId.isEmpty() || filmId.get().equals(review.getFilmId())) {
+                reviews.add(copy(review));
+            }
+        });
+        return reviews.stream()
+                .sorted(MOST_USEFUL_FIRST)
+                .limit(count)
+                .map(InMemoryReviewStorage::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Adds a like to a review from a user, replacing the user's dislike.
+     *
+     * @param id     the ID of the review.
+     * @param userId the ID of the user liking the review.
+     * @throws NotFoundException if review not in storage.
+     */
+    @Override
+    public ReviewDto addLike(Long id, Long userId) {
+        react(id, userId, true);
+        return getReviewById(id);
+    }
+
+    /**
+     * Adds a dislike to a review from a user, replacing the user's like.
+     *
+     * @param id     the ID of the review.
+     * @param userId the ID of the user disliking the review.
+     * @throws NotFoundException if review not in storage.
+     */
+    @Override
+    public ReviewDto addDislike(Long id, Long userId) {
+        react(id, userId, false);
+        return getReviewById(id);
+    }
+
+    /**
+     * Removes a reaction like/dislike from a review by a user.
+     *
+     * @param id     the ID of the review.
+     * @param userId the ID of the user that delete like/dislike from the review.
+     * @throws NotFoundException if the review or the reaction is not in storage.
+     */
+    @Override
+    public ReviewDto removeReactionForReview(Long id, Long userId) {
+        if (database.setReaction(id, userId, null) == null) {
+            throw new NotFoundException("There's no review you want to update!");
+        }
+        return getReviewById(id);
+    }
+
+    /**
+     * Records a reaction, replacing the opposite one.
+     *
+     * @param id     the ID of the review.
+     * @param userId the ID of the reacting user.
+     * @param liked  {@code true} for a like, {@code false} for a dislike.
+     * @throws NotFoundException if review not in storage.
+     */
+    private void react(long id, long userId, boolean liked) {
+        if (!database.reviews().containsKey(id)) {
+            throw new NotFoundException(String.format("Review with id = %d not found.", id));
+        }
+        database.setReaction(id, userId, liked);
+    }
+
+    private void addReviewEvent(long userId, long reviewId, String operation) {
+        UserEvent userEvent = new UserEvent();
+        userEvent.setUserId(userId);
+        userEvent.setEventType("REVIEW");
+        userEvent.setOperation(operation);
+        userEvent.setEntityId(reviewId);
+        userEvent.setTimestamp(Instant.now().toEpochMilli());
+        feedStorage.addEvent(userEvent);
+    }
+
+    private static ReviewDto toDto(Review review) {
+        if (review == null) {
+            return null;
+        }
+        return ReviewDto.builder()
+                .reviewId(review.getReviewId())
+                .content(review.getContent())
+                .isPositive(review.getIsPositive())
+                .useful(review.getUseful())
+                .userId(review.getUserId())
+                .filmId(review.getFilmId())
+                .build();
+    }
+
+    private static Review copy(Review review) {
+        Review copy = new Review();
+        copy.setReviewId(review.getReviewId());
+        copy.setContent(review.getContent());
+        copy.setIsPositive(review.getIsPositive());
+        copy.setUserId(review.getUserId());
+        copy.setFilmId(review.getFilmId());
+        copy.setUseful(review.getUseful());
+        return copy;
+    }
+}
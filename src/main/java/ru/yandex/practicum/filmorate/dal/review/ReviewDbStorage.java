@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.dal.review;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -24,6 +25,7 @@ import java.util.*;
 @Slf4j
 @Repository
 @RequiredArgsConstructor
+@Profile("!memory")
 public class ReviewDbStorage implements ReviewStorage, ReviewSqlConstants {
 
     private final FeedDbStorage feedDbStorage;
@@ -0,0 +1,352 @@
+package ru.yandex.practicum.filmorate.dal.user;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.dal.feed.InMemoryFeedStorage;
+import ru.yandex.practicum.filmorate.dal.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.dal.film.IntBitmap;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory implementation of {@link UserStorage}, active with the {@code memory} profile.
+ * <p>
+ * Users are kept in the {@link MemoryDatabase} and friendships as the set of users each user added as a
+ * friend. This is the same relation {@link UserDbStorage} keeps as friendship requests: a request makes the
+ * recipient a friend of the requester, and confirming it makes the requester a friend of the recipient.
+ * The database changes a friendship under the locks of both users, so concurrent requests between the same
+ * two users see each other. Liked films are read from {@link InMemoryFilmStorage}.
+ * </p>
+ */
+@Repository
+@Profile("memory")
+public class InMemoryUserStorage implements UserStorage {
+
+    private final MemoryDatabase database;
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryFeedStorage feedStorage;
+
+    /**
+     * Constructs an {@link InMemoryUserStorage} with its dependencies.
+     *
+     * @param database      the tables of the in-memory backend.
+     * @param filmStorage the film storage holding the users' likes.
+     * @param feedStorage the storage of the users' feed events.
+     */
+    public InMemoryUserStorage(MemoryDatabase database, InMemoryFilmStorage filmStorage,
+                               InMemoryFeedStorage feedStorage) {
+        this.database = database;
+        this.filmStorage = filmStorage;
+        this.feedStorage = feedStorage;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return getUsers(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieves a page of users ordered by ID.
+     * IDs after {@code afterId} are probed in order, so the cost depends on the page size and on the number
+     * of deleted users in the range rather than on the number of users.
+     *
+     * @param afterId the ID after which the page starts; {@code 0} for the first page.
+     * @param limit   the maximum number of users in the page.
+     * @return a {@link Collection} of users with IDs greater than {@code afterId}.
+     */
+    @Override
+    public Collection<User> getUsers(long afterId, int limit) {
+        List<User> page = new ArrayList<>();
+        long lastId = database.lastUserId();
+        for (long id = afterId + 1; id <= lastId && page.size() < limit; id++) {
+            User user = assemble(id);
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        long lastId = database.lastUserId();
+        for (long id = 1; id <= lastId; id++) {
+            User user = assemble(id);
+            if (user != null) {
+                consumer.accept(user);
+            }
+        }
+    }
+
+    /**
+     * Retrieves a user by their ID.
+     *
+     * @param id the ID of the user to retrieve.
+     * @return the {@link User} if found.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public User getUserById(long id) {
+        User user = assemble(id);
+        if (user == null) {
+            throw new NotFoundException(String.format("User with id = %d not found.", id));
+        }
+        return user;
+    }
+
+    /**
+     * Adds a new user with the next user ID.
+     *
+     * @param user the {@link User} to add.
+     * @return the added {@link User} with its generated ID.
+     */
+    @Override
+    public User addUser(User user) {
+        User saved = copy(user);
+        database.insertUser(saved);
+
+        user.setId(saved.getId());
+        return getUserById(saved.getId());
+    }
+
+    /**
+     * Updates an existing user.
+     *
+     * @param user the {@link User} with updated information.
+     * @return the updated {@link User}.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public User updateUser(User user) {
+        User saved = copy(user);
+        if (database.updateUser(saved.getId(), current -> saved) == null) {
+            throw new NotFoundException(String.format("User with id = %d not found.", user.getId()));
+        }
+        return getUserById(user.getId());
+    }
+
+    /**
+     * Deletes a user together with their likes, reviews, reactions, events and friendships.
+     *
+     * @param id the ID of the user to delete.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public void deleteUser(long id) {
+        validateUserExists(id);
+        // Лайки снимаются через хранилище фильмов, чтобы обновились рейтинги
+        filmStorage.removeUserLikes(id);
+        if (!database.deleteUser(id)) {
+            throw new NotFoundException(String.format("User with id = %d not found.", id));
+        }
+    }
+
+    /**
+     * Adds {@code friendId} to the friends of {@code userId}.
+     * A feed event is added only when neither user had added the other before,
+     * as {@link UserDbStorage} adds it only for a new friendship request.
+     *
+     * @param userId   the ID of the first user.
+     * @param friendId the ID of the second user.
+     */
+    @Override
+    public void addFriend(long userId, long friendId) {
+        validateUserExists(userId);
+        validateUserExists(friendId);
+
+        if (database.addFriend(userId, friendId)) {
+            addFriendEvent(userId, friendId, "ADD");
+        }
+    }
+
+    /**
+     * Removes {@code friendId} from the friends of {@code userId}; {@code userId} stays a friend
+     * of {@code friendId} if it was one. A feed event is added when the users were related.
+     *
+     * @param userId   the ID of the first user.
+     * @param friendId the ID of the second user.
+     */
+    @Override
+    public void removeFriend(long userId, long friendId) {
+        validateUserExists(userId);
+        validateUserExists(friendId);
+
+        if (database.removeFriend(userId, friendId)) {
+            addFriendEvent(userId, friendId, "REMOVE");
+        }
+    }
+
+    /**
+     * Retrieves a collection of a user's friends, ordered by ID.
+     *
+     * @param userId the ID of the user.
+     * @return a {@link Collection} of the user's friends.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public Collection<User> getFriends(long userId) {
+        validateUserExists(userId);
+        return toUsers(database.friends().read(userId, friends -> friends != null ? friends.toArray() : new int[0]));
+    }
+
+    /**
+     * Retrieves the IDs of the friends of a user, in ascending order.
+     *
+     * @param userId the ID of the user.
+     * @return a {@link List} of the IDs of the user's friends.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<Long> getFriendIds(long userId) {
+        validateUserExists(userId);
+        return toIds(database.friends().read(userId, friends -> friends != null ? friends.toArray() : new int[0]));
+    }
+
+    /**
+     * Retrieves the IDs of the users who added a user as a friend, in ascending order.
+     *
+     * @param userId the ID of the user.
+     * @return a {@link List} of the IDs of the user's followers.
+     */
+    @Override
+    public List<Long> getFollowerIds(long userId) {
+        return toIds(database.followers().read(userId, followers -> followers != null
+                ? followers.toArray()
+                : new int[0]));
+    }
+
+    /**
+     * Retrieves the users who are friends of both users, ordered by ID.
+     *
+     * @param userId  the ID of the first user.
+     * @param otherId the ID of the second user.
+     * @return a {@link Collection} of mutual friends.
+     * @throws NotFoundException if either user does not exist.
+     */
+    @Override
+    public Collection<User> getCommonFriends(long userId, long otherId) {
+        validateUserExists(userId);
+        validateUserExists(otherId);
+
+        IntBitmap userFriends = database.friends().read(userId, InMemoryUserStorage::copy);
+        IntBitmap otherFriends = database.friends().read(otherId, InMemoryUserStorage::copy);
+        return toUsers(userFriends.and(otherFriends).toArray());
+    }
+
+    /**
+     * Retrieves the feed events of a user, oldest first.
+     *
+     * @param userId the ID of the user.
+     * @return a {@link List} of the user's events.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<UserEvent> getUserEvents(long userId) {
+        validateUserExists(userId);
+        return feedStorage.getEvents(userId);
+    }
+
+    /**
+     * Retrieves a page of events of a user, newest first.
+     *
+     * @param userId   the ID of the user.
+     * @param beforeId the ID of the event before which the page starts.
+     * @param limit    the maximum number of events in the page.
+     * @return a {@link List} of the user's events with IDs less than {@code beforeId}.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<UserEvent> getUserEvents(long userId, long beforeId, int limit) {
+        validateUserExists(userId);
+        return feedStorage.getEvents(userId, beforeId, limit);
+    }
+
+    /**
+     * Retrieves a page of events of a user that follow a given event, oldest first.
+     *
+     * @param userId  the ID of the user.
+     * @param afterId the ID of the event after which the page starts.
+     * @param limit   the maximum number of events in the page.
+     * @return a {@link List} of the user's events with IDs greater than {@code afterId}.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<UserEvent> getUserEventsAfter(long userId, long afterId, int limit) {
+        validateUserExists(userId);
+        return feedStorage.getEventsAfter(userId, afterId, limit);
+    }
+
+    /**
+     * Builds the user returned to callers: a copy with the IDs of their friends and liked films.
+     *
+     * @param id the ID of the user.
+     * @return the assembled user, or {@code null} if the user does not exist.
+     */
+    private User assemble(long id) {
+        User user = database.users().read(id, stored -> stored != null ? copy(stored) : null);
+        if (user == null) {
+            return null;
+        }
+        int[] friends = database.friends().read(id, set -> set != null ? set.toArray() : new int[0]);
+        user.setFriends(Arrays.stream(friends).asLongStream().boxed().collect(Collectors.toSet()));
+        user.setLikedFilms(new HashSet<>(filmStorage.getLikedFilmIds(id)));
+        return user;
+    }
+
+    private static List<Long> toIds(int[] ids) {
+        return Arrays.stream(ids).asLongStream().boxed().collect(Collectors.toList());
+    }
+
+    private List<User> toUsers(int[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(this::assemble)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private void validateUserExists(long userId) {
+        if (!database.users().containsKey(userId)) {
+            throw new NotFoundException(String.format("User with id = %d not found.", userId));
+        }
+    }
+
+    private void addFriendEvent(long userId, long friendId, String operation) {
+        UserEvent userEvent = new UserEvent();
+        userEvent.setUserId(userId);
+        userEvent.setEventType("FRIEND");
+        userEvent.setOperation(operation);
+        userEvent.setEntityId(friendId);
+        userEvent.setTimestamp(Instant.now().toEpochMilli());
+        feedStorage.addEvent(userEvent);
+    }
+
+    private static IntBitmap copy(IntBitmap bitmap) {
+        IntBitmap copy = new IntBitmap();
+        if (bitmap != null) {
+            copy.or(bitmap);
+        }
+        return copy;
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        return copy;
+    }
+}
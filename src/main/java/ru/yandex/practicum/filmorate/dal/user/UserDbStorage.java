@@ -1,9 +1,13 @@
 package ru.yandex.practicum.filmorate.dal.user;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dal.film.FilmStorage;
 import ru.yandex.practicum.filmorate.dal.feed.FeedDbStorage;
 import ru.yandex.practicum.filmorate.dal.mappers.UserEventRowMapper;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -16,6 +20,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -23,24 +28,34 @@ import java.util.stream.Collectors;
  * Provides CRUD operations and friendship management for {@link User} entities.
  */
 @Repository("userDbStorage")
+@Profile("!memory")
 public class UserDbStorage implements UserStorage, UserSqlConstants {
 
+    /**
+     * Number of users read and assembled at once while streaming all users.
+     */
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<User> userRowMapper;
     private final UserEventRowMapper userEventRowMapper;
     private final FeedDbStorage feedDbStorage;
+    private final FilmStorage filmStorage;
 
     /**
      * Constructs a {@link UserDbStorage} with its dependencies.
      *
      * @param jdbcTemplate  the {@link JdbcTemplate} used for database operations.
      * @param userRowMapper the {@link RowMapper} used to map result sets to {@link User} objects.
+     * @param filmStorage   the {@link FilmStorage} used to drop the user's likes together with the user.
      */
-    public UserDbStorage(JdbcTemplate jdbcTemplate, RowMapper<User> userRowMapper, UserEventRowMapper userEventRowMapper, FeedDbStorage feedDbStorage) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, RowMapper<User> userRowMapper, UserEventRowMapper userEventRowMapper,
+                         FeedDbStorage feedDbStorage, @Qualifier("filmDbStorage") FilmStorage filmStorage) {
         this.jdbcTemplate = jdbcTemplate;
         this.userRowMapper = userRowMapper;
         this.userEventRowMapper = userEventRowMapper;
         this.feedDbStorage = feedDbStorage;
+        this.filmStorage = filmStorage;
     }
 
     /**
@@ -53,6 +68,49 @@ public class UserDbStorage implements UserStorage, UserSqlConstants {
         return extractUsers(SELECT_ALL_USERS).values();
     }
 
+    /**
+     * Retrieves a page of users ordered by ID using keyset pagination.
+     *
+     * @param afterId the ID after which the page starts; {@code 0} for the first page.
+     * @param limit   the maximum number of users in the page.
+     * @return a {@link Collection} of users with IDs greater than {@code afterId}.
+     */
+    @Override
+    public Collection<User> getUsers(long afterId, int limit) {
+        return extractUsers(SELECT_USERS_PAGE, afterId, limit).values().stream()
+                .sorted(Comparator.comparingLong(User::getId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Streams all users page by page, each page read with keyset pagination over the primary key.
+     * Users are enriched with friends and likes in pages of {@value #STREAM_PAGE_SIZE}.
+     *
+     * @param consumer the consumer receiving users one by one.
+     */
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        Map<Long, User> page = new LinkedHashMap<>();
+        long afterId = 0;
+        int pageSize;
+
+        // H2 без LAZY_QUERY_EXECUTION материализует курсор целиком, поэтому пользователи читаются страницами по ключу
+        do {
+            jdbcTemplate.query(SELECT_USERS_PAGE, rs -> {
+                User user = userRowMapper.mapRow(rs, rs.getRow());
+                assert user != null;
+                user.setFriends(new HashSet<>());
+                user.setLikedFilms(new HashSet<>());
+                page.put(user.getId(), user);
+            }, afterId, STREAM_PAGE_SIZE);
+            pageSize = page.size();
+            if (pageSize > 0) {
+                afterId = page.keySet().stream().reduce((first, last) -> last).orElseThrow();
+            }
+            flushUsers(page, consumer);
+        } while (pageSize == STREAM_PAGE_SIZE);
+    }
+
     /**
      * Retrieves a user by their ID.
      *
@@ -123,12 +181,17 @@ public class UserDbStorage implements UserStorage, UserSqlConstants {
 
     /**
      * Deletes a user from the database by their ID.
+     * The user's likes are removed through {@link FilmStorage} first, so film like counters stay consistent.
      *
      * @param id the ID of the user to delete.
      */
     @Override
+    @Transactional
     public void deleteUser(long id) {
         validateUserExists(id);
+        filmStorage.removeUserLikes(id);
+        // Дописываем события из буфера, иначе они попадут в таблицу уже после удаления
+        feedDbStorage.flush();
         jdbcTemplate.update(DELETE_USER_FROM_USER_EVENTS, id);
         jdbcTemplate.update(DELETE_USER, id);
 
@@ -174,8 +237,43 @@ public class UserDbStorage implements UserStorage, UserSqlConstants {
     @Override
     public List<UserEvent> getUserEvents(long userId) {
         validateUserExists(userId);
-        String sql = "SELECT * FROM user_events WHERE user_Id = ?";
-        return jdbcTemplate.query(sql, userEventRowMapper, userId);
+        feedDbStorage.flush();
+        return jdbcTemplate.query(SELECT_USER_EVENTS, userEventRowMapper, userId);
+    }
+
+    /**
+     * Retrieves a page of events of a user, newest first.
+     * The page is read from the {@code (user_id, event_id)} index, so its cost does not depend on the number
+     * of the user's events.
+     *
+     * @param userId   the ID of the user.
+     * @param beforeId the ID of the event before which the page starts.
+     * @param limit    the maximum number of events in the page.
+     * @return a list of the user's events with IDs less than {@code beforeId}.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<UserEvent> getUserEvents(long userId, long beforeId, int limit) {
+        validateUserExists(userId);
+        feedDbStorage.flush();
+        return jdbcTemplate.query(SELECT_USER_EVENTS_PAGE, userEventRowMapper, userId, beforeId, limit);
+    }
+
+    /**
+     * Retrieves a page of events of a user that follow a given event, oldest first.
+     * The page is read from the ascending {@code (user_id, event_id)} index, so it costs the same at any offset.
+     *
+     * @param userId  the ID of the user.
+     * @param afterId the ID of the event after which the page starts.
+     * @param limit   the maximum number of events in the page.
+     * @return a list of the user's events with IDs greater than {@code afterId}.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<UserEvent> getUserEventsAfter(long userId, long afterId, int limit) {
+        validateUserExists(userId);
+        feedDbStorage.flush();
+        return jdbcTemplate.query(SELECT_USER_EVENTS_PAGE_AFTER, userEventRowMapper, userId, afterId, limit);
     }
 
     /**
@@ -223,6 +321,31 @@ public class UserDbStorage implements UserStorage, UserSqlConstants {
         return jdbcTemplate.query(SELECT_USER_FRIENDS, userRowMapper, userId, userId);
     }
 
+    /**
+     * Retrieves the IDs of the friends of a user.
+     *
+     * @param userId the ID of the user.
+     * @return a list of the IDs of the user's friends.
+     * @throws NotFoundException if the user does not exist.
+     */
+    @Override
+    public List<Long> getFriendIds(long userId) {
+        validateUserExists(userId);
+        return jdbcTemplate.queryForList(SELECT_USER_FRIEND_IDS, Long.class, userId, userId);
+    }
+
+    /**
+     * Retrieves the IDs of the users who have a user among their friends:
+     * those who sent the user a request and those whose request the user confirmed.
+     *
+     * @param userId the ID of the user.
+     * @return a list of the IDs of the user's followers.
+     */
+    @Override
+    public List<Long> getFollowerIds(long userId) {
+        return jdbcTemplate.queryForList(SELECT_USER_FOLLOWER_IDS, Long.class, userId, userId);
+    }
+
     /**
      * Retrieves a collection of mutual friends between two users.
      *
@@ -285,6 +408,19 @@ public class UserDbStorage implements UserStorage, UserSqlConstants {
         return userMap;
     }
 
+    /**
+     * Completes a chunk of streamed users with friends and likes, hands them to the consumer and clears the chunk.
+     *
+     * @param chunk    the users of the page read last.
+     * @param consumer the consumer receiving users one by one.
+     */
+    private void flushUsers(Map<Long, User> chunk, Consumer<User> consumer) {
+        enrichUserFriends(chunk);
+        enrichUserLikes(chunk);
+        chunk.values().forEach(consumer);
+        chunk.clear();
+    }
+
     /**
      * Enriches the provided users with their friends' IDs.
      * This method retrieves friendship information for all users in the map and updates each user's
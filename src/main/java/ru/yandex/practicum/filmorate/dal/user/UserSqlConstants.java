@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.dal.user;
 
 public interface UserSqlConstants {
     String SELECT_ALL_USERS = "SELECT * FROM users";
+    String SELECT_USERS_PAGE = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
     String SELECT_USER_BY_ID = "SELECT * FROM users WHERE user_id = ?";
     String INSERT_USER = "INSERT INTO users (user_email, user_login, user_name, user_birthday) VALUES (?, ?, ?, ?)";
     String UPDATE_USER = "UPDATE users SET user_email = ?, user_login = ?, user_name = ?, user_birthday = ? WHERE user_id = ?";
@@ -29,10 +30,40 @@ public interface UserSqlConstants {
             """;
     String SELECT_USER_FRIENDS = """
             SELECT u.*
-            FROM users u
-            JOIN user_friendships uf
-              ON (u.user_id = uf.recipient_id AND uf.requester_id = ?)
-               OR (u.user_id = uf.requester_id AND uf.recipient_id = ? AND uf.is_confirmed = true)
+            FROM user_friendships uf
+            JOIN users u ON u.user_id = uf.recipient_id
+            WHERE uf.requester_id = ?
+            UNION ALL
+            SELECT u.*
+            FROM user_friendships uf
+            JOIN users u ON u.user_id = uf.requester_id
+            WHERE uf.recipient_id = ? AND uf.is_confirmed = true
+            """;
+    String SELECT_USER_EVENTS = "SELECT * FROM user_events WHERE user_id = ? ORDER BY event_id";
+    // Порядок совпадает с индексом (user_id, event_id DESC), поэтому страница читается без сортировки
+    String SELECT_USER_EVENTS_PAGE = """
+            SELECT * FROM user_events
+            WHERE user_id = ? AND event_id < ?
+            ORDER BY user_id, event_id DESC
+            LIMIT ?
+            """;
+    // Страница вперёд читается по индексу (user_id, event_id) без сортировки
+    String SELECT_USER_EVENTS_PAGE_AFTER = """
+            SELECT * FROM user_events
+            WHERE user_id = ? AND event_id > ?
+            ORDER BY user_id, event_id
+            LIMIT ?
+            """;
+    String SELECT_USER_FRIEND_IDS = """
+            SELECT recipient_id FROM user_friendships WHERE requester_id = ?
+            UNION ALL
+            SELECT requester_id FROM user_friendships WHERE recipient_id = ? AND is_confirmed = true
+            """;
+    // Обратная выборка: у кого пользователь в друзьях
+    String SELECT_USER_FOLLOWER_IDS = """
+            SELECT requester_id FROM user_friendships WHERE recipient_id = ?
+            UNION ALL
+            SELECT recipient_id FROM user_friendships WHERE requester_id = ? AND is_confirmed = true
             """;
     String DELETE_USER_FROM_USER_EVENTS = """
             DELETE FROM user_events WHERE user_id = ?
@@ -5,6 +5,7 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for managing user storage operations.
@@ -19,6 +20,22 @@ public interface UserStorage {
      */
     Collection<User> getAllUsers();
 
+    /**
+     * Retrieves a page of users ordered by ID, starting after the given user ID.
+     *
+     * @param afterId the ID after which the page starts; {@code 0} for the first page.
+     * @param limit   the maximum number of users in the page.
+     * @return a collection of users with IDs greater than {@code afterId}.
+     */
+    Collection<User> getUsers(long afterId, int limit);
+
+    /**
+     * Passes every user, ordered by ID, to the given consumer without materializing all users.
+     *
+     * @param consumer the consumer receiving users one by one.
+     */
+    void streamAllUsers(Consumer<User> consumer);
+
     /**
      * Retrieves a user by their ID.
      *
@@ -74,6 +91,22 @@ public interface UserStorage {
      */
     Collection<User> getFriends(long userId);
 
+    /**
+     * Retrieves the IDs of the friends of a user.
+     *
+     * @param userId the ID of the user whose friends to retrieve.
+     * @return a list of the IDs of the user's friends.
+     */
+    List<Long> getFriendIds(long userId);
+
+    /**
+     * Retrieves the IDs of the users who have a user among their friends, and so follow the user's activity.
+     *
+     * @param userId the ID of the user whose followers to retrieve.
+     * @return a list of the IDs of the user's followers.
+     */
+    List<Long> getFollowerIds(long userId);
+
     /**
      * Retrieves the common friends between two users.
      *
@@ -91,4 +124,24 @@ public interface UserStorage {
      * @return a list of UserEvent objects associated with the specified user ID
      */
     List<UserEvent> getUserEvents(long userId);
+
+    /**
+     * Retrieves a page of events of a user, newest first.
+     *
+     * @param userId   the unique identifier of the user
+     * @param beforeId the ID of the event before which the page starts; {@link Long#MAX_VALUE} for the newest events
+     * @param limit    the maximum number of events in the page
+     * @return a list of the user's events with IDs less than {@code beforeId}
+     */
+    List<UserEvent> getUserEvents(long userId, long beforeId, int limit);
+
+    /**
+     * Retrieves a page of events of a user that follow a given event, oldest first.
+     *
+     * @param userId  the unique identifier of the user
+     * @param afterId the ID of the event after which the page starts
+     * @param limit   the maximum number of events in the page
+     * @return a list of the user's events with IDs greater than {@code afterId}
+     */
+    List<UserEvent> getUserEventsAfter(long userId, long afterId, int limit);
 }
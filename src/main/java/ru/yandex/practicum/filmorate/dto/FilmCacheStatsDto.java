@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Data Transfer Object for the counters of the film cache.
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FilmCacheStatsDto {
+
+    /**
+     * Number of lookups served from the cache.
+     */
+    long hits;
+
+    /**
+     * Number of lookups that went to the database.
+     */
+    long misses;
+
+    /**
+     * Number of films evicted because the cache was full.
+     */
+    long evictions;
+
+    /**
+     * Number of currently cached films.
+     */
+    int size;
+
+    /**
+     * Maximum number of cached films.
+     */
+    int maxSize;
+}
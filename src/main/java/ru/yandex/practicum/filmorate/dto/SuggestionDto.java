@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Data Transfer Object for a search-as-you-type completion of a film title or a director name.
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SuggestionDto {
+
+    /**
+     * Kind of completion: "title" or "director".
+     */
+    String type;
+
+    /**
+     * ID of the film or of the director.
+     */
+    long id;
+
+    /**
+     * Title of the film or name of the director.
+     */
+    String text;
+
+    /**
+     * Likes of the film, or of all films of the director.
+     */
+    int likes;
+}
@@ -7,6 +7,7 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
 import java.util.stream.Collectors;
 
@@ -61,6 +62,19 @@ public final class ApplicationExceptionHandler {
                 .body("{\"error\": \"" + errorMessage + "\"}");
     }
 
+    /**
+     * Handles the end of an event stream by timeout or at shutdown and returns a 503 Service Unavailable
+     * response. The stream has been answered already, so nothing is written; the client reconnects.
+     *
+     * @param e the exception to handle
+     * @return an empty `ResponseEntity`
+     */
+    @ExceptionHandler(AsyncRequestTimeoutException.class)
+    public ResponseEntity<String> handleAsyncRequestTimeoutException(final AsyncRequestTimeoutException e) {
+        log.debug("Asynchronous request timed out");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
+
     /**
      * Handles any uncaught exceptions and returns a 500 Internal Server Error response.
      *
@@ -1,9 +1,13 @@
 package ru.yandex.practicum.filmorate.mapper;
 
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dal.film.FilmCache;
+import ru.yandex.practicum.filmorate.dal.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.dto.FilmCacheStatsDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.GenreDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -59,6 +63,37 @@ public class FilmMapper {
         return filmDto;
     }
 
+    /**
+     * Converts the counters of the film cache to a {@link FilmCacheStatsDto}.
+     *
+     * @param stats the film cache counters.
+     * @return the corresponding {@link FilmCacheStatsDto}.
+     */
+    public FilmCacheStatsDto toDto(FilmCache.Stats stats) {
+        FilmCacheStatsDto statsDto = new FilmCacheStatsDto();
+        statsDto.setHits(stats.hits());
+        statsDto.setMisses(stats.misses());
+        statsDto.setEvictions(stats.evictions());
+        statsDto.setSize(stats.size());
+        statsDto.setMaxSize(stats.maxSize());
+        return statsDto;
+    }
+
+    /**
+     * Converts a search-as-you-type completion to a {@link SuggestionDto}.
+     *
+     * @param suggestion the completion found by the search index.
+     * @return the corresponding {@link SuggestionDto}.
+     */
+    public SuggestionDto toDto(FilmSearchIndex.Suggestion suggestion) {
+        SuggestionDto suggestionDto = new SuggestionDto();
+        suggestionDto.setType(suggestion.type());
+        suggestionDto.setId(suggestion.id());
+        suggestionDto.setText(suggestion.text());
+        suggestionDto.setLikes(suggestion.likes());
+        return suggestionDto;
+    }
+
     /**
      * Converts a {@link ResultSet} to a {@link FilmDto}.
      *
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.feed.FeedArchive;
+import ru.yandex.practicum.filmorate.dal.feed.FeedStorage;
+import ru.yandex.practicum.filmorate.dal.user.UserStorage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Service periodically moving old feed events from the feed storage to the {@link FeedArchive}.
+ * <p>
+ * An event is retired once it is older than {@code filmorate.feed.retention.ttl-days} or is not among the
+ * newest {@code filmorate.feed.retention.max-events-per-user} events of its user; {@code 0} disables either
+ * rule. The retired events are read page by page through the feed index, written to the archive in files
+ * of about {@code filmorate.feed.retention.batch-size} events, and removed from the storage only after
+ * their file is on disk, so a failed run leaves them in the feed to be retired by the next one.
+ * </p>
+ */
+@Service
+@Slf4j
+public final class FeedRetention {
+
+    private final FeedStorage feedStorage;
+    private final UserStorage userStorage;
+    private final FeedArchive archive;
+    private final int maxEventsPerUser;
+    private final int ttlDays;
+    private final int batchSize;
+
+    /**
+     * Constructor for {@code FeedRetention}.
+     *
+     * @param feedStorage      the storage the events are retired from.
+     * @param userStorage      the storage the feeds are read from.
+     * @param archive          the archive the events are moved to.
+     * @param maxEventsPerUser the number of newest events kept per user.
+     * @param ttlDays          the age in days after which events are retired.
+     * @param batchSize        the number of events read per page and written per archive file.
+     */
+    @Autowired
+    public FeedRetention(final FeedStorage feedStorage, final UserStorage userStorage, final FeedArchive archive,
+                         @Value("${filmorate.feed.retention.max-events-per-user:10000}") final int maxEventsPerUser,
+                         @Value("${filmorate.feed.retention.ttl-days:365}") final int ttlDays,
+                         @Value("${filmorate.feed.retention.batch-size:10000}") final int batchSize) {
+        this.feedStorage = feedStorage;
+        this.userStorage = userStorage;
+        this.archive = archive;
+        this.maxEventsPerUser = maxEventsPerUser;
+        this.ttlDays = ttlDays;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Moves the events to retire to the archive.
+     */
+    @Scheduled(initialDelayString = "${filmorate.feed.retention.interval-ms:3600000}",
+            fixedDelayString = "${filmorate.feed.retention.interval-ms:3600000}")
+    public synchronized void retire() {
+        if (ttlDays <= 0 && maxEventsPerUser <= 0) {
+            return;
+        }
+        long expiresBefore = ttlDays > 0 ? System.currentTimeMillis() - Duration.ofDays(ttlDays).toMillis() : 0;
+        Map<Long, Long> expired = new TreeMap<>(feedStorage.findExpiredEvents(expiresBefore,
+                Math.max(0, maxEventsPerUser)));
+        if (expired.isEmpty()) {
+            log.debug("No feed events to retire");
+            return;
+        }
+
+        List<UserEvent> batch = new ArrayList<>();
+        List<EventRange> ranges = new ArrayList<>();
+        int retired = 0;
+        for (Map.Entry<Long, Long> entry : expired.entrySet()) {
+            long userId = entry.getKey();
+            long beforeId = entry.getValue() + 1;
+            List<UserEvent> page;
+            do {
+                try {
+                    page = userStorage.getUserEvents(userId, beforeId, batchSize);
+                } catch (NotFoundException e) {
+                    // Пользователь удалён вместе с его лентой
+                    break;
+                }
+                if (page.isEmpty()) {
+                    break;
+                }
+                UserEvent oldest = page.get(page.size() - 1);
+                batch.addAll(page);
+                ranges.add(new EventRange(userId, oldest.getEventId(), page.get(0).getEventId()));
+                beforeId = oldest.getEventId();
+                if (batch.size() >= batchSize) {
+                    retired += archiveAndRemove(batch, ranges);
+                }
+            } while (page.size() == batchSize);
+        }
+        retired += archiveAndRemove(batch, ranges);
+        log.info("Retired {} feed events of {} users", retired, expired.size());
+    }
+
+    /**
+     * Writes the collected events to the archive, then removes them from the storage.
+     *
+     * @return the number of removed events.
+     */
+    private int archiveAndRemove(final List<UserEvent> batch, final List<EventRange> ranges) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        archive.write(batch);
+        int removed = ranges.stream()
+                .mapToInt(range -> feedStorage.removeEvents(range.userId(), range.fromEventId(), range.toEventId()))
+                .sum();
+        batch.clear();
+        ranges.clear();
+        return removed;
+    }
+
+    /**
+     * The IDs of a page of retired events of a user.
+     */
+    private record EventRange(long userId, long fromEventId, long toEventId) {
+    }
+}
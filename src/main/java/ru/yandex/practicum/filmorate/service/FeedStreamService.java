@@ -0,0 +1,307 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dal.user.UserStorage;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Service pushing new feed events to subscribed clients as Server-Sent Events.
+ * <p>
+ * Every committed event is put into the queues of the subscribers of its user; a small pool of sender
+ * threads drains the queues into the connections, so a publisher never waits for a client. A queue holds
+ * at most {@code filmorate.feed.stream.queue-size} events: a subscriber whose queue is full does not keep
+ * up and is disconnected. A client reconnecting with the {@code Last-Event-ID} header first receives the
+ * events it missed: the sender reads them from the feed storage in pages of {@code queue-size} events,
+ * forward from that ID, before anything queued. The client thus gets every event the storage still keeps,
+ * however long it was away; events already removed by the feed retention are not sent again.
+ * </p>
+ */
+@Service
+@Slf4j
+public final class FeedStreamService {
+
+    private static final String EVENT_NAME = "feed";
+
+    private final UserStorage userStorage;
+    private final int queueSize;
+    private final int maxSubscriptions;
+    private final long timeoutMs;
+    private final ExecutorService senders;
+    private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for {@code FeedStreamService}.
+     *
+     * @param userStorage      the storage of users and their events.
+     * @param queueSize        the maximum number of events waiting to be sent to one subscriber.
+     * @param maxSubscriptions the maximum number of open streams per user; the oldest one is closed first.
+     * @param timeoutMs        the time after which a stream is closed, so the client reconnects.
+     * @param senderThreads    the number of threads sending events.
+     */
+    @Autowired
+    public FeedStreamService(final UserStorage userStorage,
+                             @Value("${filmorate.feed.stream.queue-size:256}") final int queueSize,
+                             @Value("${filmorate.feed.stream.max-per-user:8}") final int maxSubscriptions,
+                             @Value("${filmorate.feed.stream.timeout-ms:1800000}") final long timeoutMs,
+                             @Value("${filmorate.feed.stream.sender-threads:4}") final int senderThreads) {
+        this.userStorage = userStorage;
+        this.queueSize = queueSize;
+        this.maxSubscriptions = maxSubscriptions;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a stream of the new events of a user.
+     *
+     * @param userId      the ID of the user.
+     * @param lastEventId the ID of the last event the client received, or {@code null} for new events only.
+     * @return the emitter sending the events.
+     */
+    public SseEmitter subscribe(final long userId, final Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(userId, emitter, queueSize);
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        // Подписчик регистрируется до чтения пропущенных событий, чтобы не потерять события между ними
+        List<Subscriber> userSubscribers = subscribers.compute(userId, (id, current) -> {
+            List<Subscriber> updated = current != null ? current : new CopyOnWriteArrayList<>();
+            updated.add(subscriber);
+            return updated;
+        });
+        if (userSubscribers.size() > maxSubscriptions) {
+            evict(userSubscribers.get(0), "too many streams of the user");
+        }
+        if (lastEventId != null) {
+            log.debug("Resuming feed stream of user {} after event {}", userId, lastEventId);
+            subscriber.resumeAfter = lastEventId;
+        }
+        subscriber.heartbeat = true;
+        subscriber.started = true;
+        schedule(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Closes the streams of a user, e.g. after the user is deleted.
+     *
+     * @param userId the ID of the user.
+     */
+    public void closeStreams(final long userId) {
+        List<Subscriber> userSubscribers = subscribers.get(userId);
+        if (userSubscribers != null) {
+            userSubscribers.forEach(subscriber -> evict(subscriber, "user deleted"));
+        }
+    }
+
+    /**
+     * Puts a committed event into the queues of its user's subscribers.
+     *
+     * @param event the user event published by the feed storage.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(final UserEvent event) {
+        List<Subscriber> userSubscribers = subscribers.get(event.getUserId());
+        if (userSubscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : userSubscribers) {
+            if (subscriber.offer(event)) {
+                schedule(subscriber);
+            } else {
+                evict(subscriber, "slow consumer");
+            }
+        }
+    }
+
+    /**
+     * Sends a comment to every stream, so broken connections are noticed and proxies keep idle ones open.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.feed.stream.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber -> {
+            subscriber.heartbeat = true;
+            schedule(subscriber);
+        }));
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscribers.values().forEach(userSubscribers -> userSubscribers.forEach(subscriber ->
+                evict(subscriber, "shutdown")));
+        senders.shutdown();
+    }
+
+    /**
+     * Disconnects a subscriber. The emitter is completed by the sender thread, because a sender blocked
+     * on a stalled connection holds the emitter and must not block the caller.
+     */
+    private void evict(final Subscriber subscriber, final String reason) {
+        if (subscriber.closed.compareAndSet(false, true)) {
+            log.info("Closing feed stream of user {}: {}", subscriber.userId, reason);
+            unsubscribe(subscriber);
+            schedule(subscriber);
+        }
+    }
+
+    private void unsubscribe(final Subscriber subscriber) {
+        subscriber.closed.set(true);
+        subscribers.computeIfPresent(subscriber.userId, (id, userSubscribers) -> {
+            userSubscribers.remove(subscriber);
+            return userSubscribers.isEmpty() ? null : userSubscribers;
+        });
+    }
+
+    private void schedule(final Subscriber subscriber) {
+        if (subscriber.started && subscriber.sending.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> send(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.sending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Sends everything queued for a subscriber; runs on a sender thread, one at a time per subscriber.
+     */
+    private void send(final Subscriber subscriber) {
+        try {
+            do {
+                if (subscriber.closed.get()) {
+                    subscriber.emitter.complete();
+                    return;
+                }
+                if (subscriber.heartbeat) {
+                    subscriber.heartbeat = false;
+                    subscriber.emitter.send(SseEmitter.event().comment(""));
+                }
+                if (subscriber.resumeAfter != null) {
+                    sendMissed(subscriber);
+                }
+                UserEvent event;
+                while ((event = subscriber.poll()) != null && !subscriber.closed.get()) {
+                    send(subscriber, event);
+                }
+                subscriber.sending.set(false);
+            } while (subscriber.hasWork() && subscriber.sending.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился; эмиттер закрывается контейнером
+            log.debug("Feed stream of user {} is closed: {}", subscriber.userId, e.getMessage());
+            unsubscribe(subscriber);
+            subscriber.sending.set(false);
+        }
+    }
+
+    /**
+     * Sends the events stored after the client's last event, page by page, and then drops the queued events
+     * already sent. Events committed meanwhile are queued as usual; a page shorter than requested is the end.
+     * Only the events actually sent are dropped: an event committed out of ID order after its page was read
+     * has a smaller ID than the last one sent, but stays queued.
+     */
+    private void sendMissed(final Subscriber subscriber) throws IOException {
+        long lastSent = subscriber.resumeAfter;
+        Set<Long> sent = new HashSet<>();
+        List<UserEvent> page;
+        try {
+            do {
+                page = userStorage.getUserEventsAfter(subscriber.userId, lastSent, queueSize);
+                for (UserEvent event : page) {
+                    if (subscriber.closed.get()) {
+                        return;
+                    }
+                    send(subscriber, event);
+                    sent.add(event.getEventId());
+                    lastSent = event.getEventId();
+                }
+            } while (page.size() == queueSize);
+        } catch (RuntimeException e) {
+            // Клиент переподключится с последним полученным ID и продолжит с него
+            log.warn("Failed to read missed feed events of user {}: {}", subscriber.userId, e.getMessage());
+            unsubscribe(subscriber);
+            return;
+        }
+        subscriber.resumed(sent);
+    }
+
+    private static void send(final Subscriber subscriber, final UserEvent event) throws IOException {
+        subscriber.emitter.send(SseEmitter.event()
+                .id(String.valueOf(event.getEventId()))
+                .name(EVENT_NAME)
+                .data(event));
+    }
+
+    /**
+     * An open stream with the events waiting to be sent to it.
+     */
+    private static final class Subscriber {
+
+        private final long userId;
+        private final SseEmitter emitter;
+        private final int capacity;
+        private final Queue<UserEvent> queue = new ArrayDeque<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean heartbeat;
+        private volatile boolean started;
+        private volatile Long resumeAfter;
+
+        Subscriber(final long userId, final SseEmitter emitter, final int capacity) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.capacity = capacity;
+        }
+
+        synchronized boolean offer(final UserEvent event) {
+            if (queue.size() >= capacity) {
+                return false;
+            }
+            return queue.add(event);
+        }
+
+        synchronized UserEvent poll() {
+            return queue.poll();
+        }
+
+        /**
+         * Ends the catch-up: the queued events that were also read from the storage are already sent.
+         */
+        synchronized void resumed(final Set<Long> sent) {
+            queue.removeIf(event -> sent.contains(event.getEventId()));
+            resumeAfter = null;
+        }
+
+        synchronized boolean hasWork() {
+            return !queue.isEmpty() || heartbeat || closed.get();
+        }
+    }
+}
@@ -2,9 +2,12 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dal.film.FilmCache;
+import ru.yandex.practicum.filmorate.dal.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dto.FilmCacheStatsDto;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.dto.SuggestionDto;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -12,6 +15,7 @@ import ru.yandex.practicum.filmorate.dal.film.FilmStorage;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -26,6 +30,16 @@ public final class FilmService {
      */
     private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
 
+    /**
+     * The largest page of films that can be requested at once.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Supported search modes.
+     */
+    private static final Set<String> SEARCH_MODES = Set.of("substring", "prefix", "fuzzy");
+
     /**
      * Storage for handling film-related data.
      */
@@ -36,16 +50,40 @@ public final class FilmService {
      */
     private final FilmMapper filmMapper;
 
+    /**
+     * Cache of assembled films, queried for its counters.
+     */
+    private final FilmCache filmCache;
+
+    /**
+     * Search index, queried for search-as-you-type completions.
+     */
+    private final FilmSearchIndex searchIndex;
+
     /**
      * Constructor for {@code FilmService}.
      *
      * @param filmStorage the storage for managing films.
      * @param filmMapper  the mapper for converting {@link Film} to {@link FilmDto}.
+     * @param filmCache   the cache of assembled films.
+     * @param searchIndex the search index over titles and director names.
      */
     @Autowired
-    public FilmService(@Qualifier("filmDbStorage") final FilmStorage filmStorage, final FilmMapper filmMapper) {
+    public FilmService(final FilmStorage filmStorage, final FilmMapper filmMapper,
+                       final FilmCache filmCache, final FilmSearchIndex searchIndex) {
         this.storage = filmStorage;
         this.filmMapper = filmMapper;
+        this.filmCache = filmCache;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the film cache.
+     *
+     * @return the film cache counters.
+     */
+    public FilmCacheStatsDto getFilmCacheStats() {
+        return filmMapper.toDto(filmCache.getStats());
     }
 
     /**
@@ -61,6 +99,36 @@ public final class FilmService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Fetches a page of films ordered by ID as DTOs.
+     *
+     * @param after the ID after which the page starts; {@code 0} for the first page.
+     * @param limit the maximum number of films in the page.
+     * @return a collection of film DTOs with IDs greater than {@code after}.
+     * @throws ValidationException if the limit is not between 1 and {@value #MAX_PAGE_SIZE}.
+     */
+    public Collection<FilmDto> getFilms(final long after, final int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        log.debug("Fetching {} films after id {}", limit, after);
+        return storage.getFilms(after, limit)
+                .stream()
+                .map(filmMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Passes all films as DTOs to the given consumer one by one.
+     *
+     * @param consumer the consumer receiving film DTOs.
+     */
+    public void streamAllFilms(final Consumer<FilmDto> consumer) {
+        log.debug("Streaming all films");
+        storage.streamAllFilms(film -> consumer.accept(filmMapper.toDto(film)));
+    }
+
     /**
      * Fetches a film by its ID as a DTO.
      *
@@ -165,44 +233,21 @@ public final class FilmService {
         log.debug("Validated release date for film: {}", film.getReleaseDate());
     }
 
-    public List<FilmDto> getRecommendations(Long userId) {
-        Map<Long, Set<Long>> userLikes = storage.getAllUserLikes();
-
-        Set<Long> likedByUser = userLikes.getOrDefault(userId, Collections.emptySet());
-        Map<Long, Integer> similarityScores = new HashMap<>();
-
-        // Calculate similarity scores
-        for (Map.Entry<Long, Set<Long>> entry : userLikes.entrySet()) {
-            if (!entry.getKey().equals(userId)) {
-                Set<Long> commonLikes = new HashSet<>(likedByUser);
-                commonLikes.retainAll(entry.getValue());
-                similarityScores.put(entry.getKey(), commonLikes.size());
-            }
-        }
-
-        // Remove users with zero similarity scores
-        similarityScores.entrySet().removeIf(entry -> entry.getValue() == 0);
-
-        // Check if there are any similar users
-        if (similarityScores.isEmpty()) {
-            log.debug("No similar users found for userId {}", userId);
-            return List.of();
-        }
-
-        // Find the most similar user
-        Long mostSimilarUserId = similarityScores.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
-
-        if (mostSimilarUserId == null) {
-            log.debug("No most similar user found for userId {}", userId);
-            return List.of();
+    /**
+     * Fetches films recommended to a user: films liked by the most similar users and not yet liked
+     * by the given user, ranked by the similarity of the users who liked them.
+     *
+     * @param userId the ID of the user.
+     * @param limit  the maximum number of films to return.
+     * @return a list of recommended films as DTOs, best first.
+     * @throws ValidationException if the limit is not between 1 and {@value #MAX_PAGE_SIZE}.
+     */
+    public List<FilmDto> getRecommendations(final Long userId, final int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
         }
 
-        // Get recommendations
-        Set<Long> recommendations = new HashSet<>(userLikes.get(mostSimilarUserId));
-        recommendations.removeAll(likedByUser);
+        List<Long> recommendations = storage.getRecommendedFilmIds(userId, limit);
 
         if (recommendations.isEmpty()) {
             log.debug("No recommendations found for userId {}", userId);
@@ -210,8 +255,8 @@ public final class FilmService {
         }
 
         log.debug("Found recommendations for userId {}: {}", userId, recommendations);
-        return recommendations.stream()
-                .map(storage::getFilmById)
+        return storage.getFilmsByIds(recommendations)
+                .stream()
                 .map(filmMapper::toDto)
                 .collect(Collectors.toList());
     }
@@ -265,12 +310,25 @@ public final class FilmService {
     /**
      * Searches for films based on the given query and criteria.
      *
-     * @param query the search query substring.
+     * @param query the search query.
      * @param by    the search criteria: "title", "director", or both separated by a comma.
+     * @param mode  the matching mode: "substring", "prefix" (a word starts with the query)
+     *              or "fuzzy" (the same, tolerating typos).
+     * @param limit the maximum number of films to return.
      * @return a list of films matching the search criteria.
+     * @throws ValidationException if the criteria or the mode are invalid or the limit is not between 1 and
+     *                             {@value #MAX_PAGE_SIZE}.
      */
-    public List<FilmDto> searchFilms(final String query, final String by) {
-        log.debug("Searching for films with query '{}' by '{}'", query, by);
+    public List<FilmDto> searchFilms(final String query, final String by, final String mode, final int limit) {
+        log.debug("Searching for {} films with query '{}' by '{}' in {} mode", limit, query, by, mode);
+
+        if (!SEARCH_MODES.contains(mode)) {
+            throw new ValidationException("Invalid 'mode' parameter. Must be 'substring', 'prefix' or 'fuzzy'.");
+        }
+
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
 
         Set<String> criteria = Arrays.stream(by.split(","))
                 .map(String::trim)
@@ -280,7 +338,7 @@ public final class FilmService {
             throw new ValidationException("Invalid 'by' parameter. Must include 'title' or 'director'.");
         }
 
-        List<Film> results = new ArrayList<>(storage.searchFilms(query, criteria));
+        List<Film> results = new ArrayList<>(storage.searchFilms(query, criteria, mode, limit));
         log.debug("Found {} films matching the query '{}' by '{}'", results.size(), query, by);
 
         return results.stream()
@@ -288,4 +346,24 @@ public final class FilmService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Suggests the most liked film titles and director names completing the typed text.
+     *
+     * @param query the typed text.
+     * @param limit the maximum number of completions.
+     * @return completions ordered by likes, most liked first.
+     * @throws ValidationException if the limit is not between 1 and {@value FilmSearchIndex#MAX_SUGGESTIONS}.
+     */
+    public List<SuggestionDto> suggest(final String query, final int limit) {
+        if (limit <= 0 || limit > FilmSearchIndex.MAX_SUGGESTIONS) {
+            throw new ValidationException("Limit must be between 1 and " + FilmSearchIndex.MAX_SUGGESTIONS);
+        }
+
+        log.debug("Suggesting {} completions for '{}'", limit, query);
+        return searchIndex.suggest(query, limit)
+                .stream()
+                .map(filmMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.film.FilmStorage;
+import ru.yandex.practicum.filmorate.dto.FilmDto;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Service serving film recommendations from precomputed snapshots.
+ * <p>
+ * Recommendations of active users, those who asked for recommendations within
+ * {@code filmorate.recommendations.active-ttl-ms}, are computed in the background and kept in an
+ * off-heap {@link RecommendationTable}. A like or unlike marks its author as stale at once and records the
+ * film; the next refresh recomputes only the stale users and the active users who liked a changed film,
+ * because the author may have entered or left their neighbourhoods, and copies everyone else's entries
+ * from the previous table. Active users missing from the table are computed by the refresh too.
+ * Stale users, users missing from the table, users whose recommended films were deleted and requests for
+ * more than {@value #SNAPSHOT_SIZE} films are served by {@link FilmService#getRecommendations(Long, int)}.
+ * </p>
+ */
+@Service
+@Slf4j
+public final class RecommendationService {
+
+    /**
+     * Number of recommended films precomputed per user.
+     */
+    private static final int SNAPSHOT_SIZE = 100;
+
+    private final FilmStorage filmStorage;
+    private final FilmService filmService;
+    private final FilmMapper filmMapper;
+    private final long activeTtlMs;
+
+    /**
+     * Active users mapped to the time of their latest request, in milliseconds.
+     */
+    private final Map<Long, Long> activeUsers = new ConcurrentHashMap<>();
+
+    /**
+     * Stale users mapped to the sequence number of their latest like event.
+     */
+    private final Map<Long, Long> staleUsers = new ConcurrentHashMap<>();
+
+    /**
+     * Films liked or unliked since the previous refresh.
+     */
+    private final Set<Long> changedFilms = ConcurrentHashMap.newKeySet();
+    private final AtomicLong likeSequence = new AtomicLong();
+    private volatile RecommendationTable snapshot = RecommendationTable.EMPTY;
+
+    /**
+     * Constructor for {@code RecommendationService}.
+     *
+     * @param filmStorage the storage providing likes and films.
+     * @param filmService the service computing recommendations on demand.
+     * @param filmMapper  the mapper for converting films to DTOs.
+     * @param activeTtlMs the time after the latest request during which a user is kept in the snapshot.
+     */
+    @Autowired
+    public RecommendationService(final FilmStorage filmStorage,
+                                 final FilmService filmService, final FilmMapper filmMapper,
+                                 @Value("${filmorate.recommendations.active-ttl-ms:86400000}") final long activeTtlMs) {
+        this.filmStorage = filmStorage;
+        this.filmService = filmService;
+        this.filmMapper = filmMapper;
+        this.activeTtlMs = activeTtlMs;
+    }
+
+    /**
+     * Fetches films recommended to a user, from the snapshot when it is up to date for the user.
+     * The user becomes active, so the next refresh puts them into the snapshot.
+     *
+     * @param userId the ID of the user.
+     * @param limit  the maximum number of films to return.
+     * @return a list of recommended films as DTOs, best first.
+     */
+    public List<FilmDto> getRecommendations(final long userId, final int limit) {
+        activeUsers.put(userId, System.currentTimeMillis());
+        if (limit > 0 && limit <= SNAPSHOT_SIZE && !staleUsers.containsKey(userId)) {
+            Optional<List<Long>> recommendations = snapshot.get(userId, limit);
+            if (recommendations.isPresent()) {
+                List<Film> films = filmStorage.getFilmsByIds(recommendations.get());
+                if (films.size() == recommendations.get().size()) {
+                    log.debug("Serving recommendations for userId {} from snapshot", userId);
+                    return films.stream()
+                            .map(filmMapper::toDto)
+                            .collect(Collectors.toList());
+                }
+                // Часть фильмов удалена после построения снимка
+                staleUsers.put(userId, likeSequence.get());
+            }
+        }
+        return filmService.getRecommendations(userId, limit);
+    }
+
+    /**
+     * Forgets a user who is about to be deleted; the films they liked are treated as changed,
+     * so the users who share them are recomputed without the deleted user.
+     *
+     * @param userId the ID of the user.
+     */
+    public void removeUser(final long userId) {
+        changedFilms.addAll(filmStorage.getLikedFilmIds(userId));
+        activeUsers.remove(userId);
+        staleUsers.remove(userId);
+    }
+
+    /**
+     * Marks the author of a committed like or unlike as stale and records the film.
+     *
+     * @param event the user event published by the feed storage.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(final UserEvent event) {
+        if ("LIKE".equals(event.getEventType())) {
+            changedFilms.add(event.getEntityId());
+            staleUsers.put(event.getUserId(), likeSequence.incrementAndGet());
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot for the active users, recomputing only those whose recommendations may have changed.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.refresh-delay-ms:10000}")
+    public void refreshSnapshot() {
+        long sequence = likeSequence.get();
+        long activeSince = System.currentTimeMillis() - activeTtlMs;
+        activeUsers.values().removeIf(lastRequest -> lastRequest < activeSince);
+
+        Set<Long> recompute = new HashSet<>(staleUsers.keySet());
+        List<Long> films = new ArrayList<>(changedFilms);
+        changedFilms.removeAll(films);
+        films.forEach(filmId -> recompute.addAll(filmStorage.getUserIdsWhoLiked(filmId)));
+        recompute.retainAll(activeUsers.keySet());
+
+        RecommendationTable current = snapshot;
+        List<Long> userIds = activeUsers.keySet().stream().sorted().toList();
+        if (recompute.isEmpty() && userIds.size() == current.size()
+                && userIds.stream().allMatch(current::contains)) {
+            staleUsers.values().removeIf(likeSequenceNumber -> likeSequenceNumber <= sequence);
+            return;
+        }
+
+        RecommendationTable.Builder builder = new RecommendationTable.Builder();
+        int computed = 0;
+        for (long userId : userIds) {
+            if (recompute.contains(userId) || !builder.addFrom(current, userId)) {
+                builder.add(userId, filmStorage.getRecommendedFilmIds(userId, SNAPSHOT_SIZE));
+                computed++;
+            }
+        }
+        snapshot = builder.build();
+        staleUsers.values().removeIf(likeSequenceNumber -> likeSequenceNumber <= sequence);
+
+        log.debug("Refreshed recommendation snapshot of {} active users, {} recomputed", userIds.size(), computed);
+    }
+}
@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable table of precomputed recommendations keyed by user ID, stored off-heap.
+ * <p>
+ * The table consists of three direct int buffers: sorted user IDs, offsets of each user's
+ * recommendations and the concatenated recommended film IDs. A lookup is a binary search over
+ * the user IDs, and the table costs 4 bytes per recommended film without adding objects to the heap.
+ * </p>
+ */
+final class RecommendationTable {
+
+    static final RecommendationTable EMPTY = new Builder().build();
+
+    private final IntBuffer userIds;
+    private final IntBuffer offsets;
+    private final IntBuffer filmIds;
+
+    private RecommendationTable(IntBuffer userIds, IntBuffer offsets, IntBuffer filmIds) {
+        this.userIds = userIds;
+        this.offsets = offsets;
+        this.filmIds = filmIds;
+    }
+
+    /**
+     * Returns the precomputed recommendations of a user.
+     *
+     * @param userId the ID of the user.
+     * @param limit  the maximum number of film IDs to return.
+     * @return the recommended film IDs, best first, or an empty {@link Optional} if the user is not in the table.
+     */
+    Optional<List<Long>> get(long userId, int limit) {
+        int index = binarySearch(userId);
+        if (index < 0) {
+            return Optional.empty();
+        }
+
+        int from = offsets.get(index);
+        int to = Math.min(offsets.get(index + 1), from + limit);
+        List<Long> recommendations = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            recommendations.add((long) filmIds.get(i));
+        }
+        return Optional.of(recommendations);
+    }
+
+    /**
+     * Checks whether the table holds recommendations of a user.
+     *
+     * @param userId the ID of the user.
+     * @return {@code true} if the user is in the table.
+     */
+    boolean contains(long userId) {
+        return binarySearch(userId) >= 0;
+    }
+
+    /**
+     * Returns the number of users in the table.
+     *
+     * @return the number of users.
+     */
+    int size() {
+        return userIds.limit();
+    }
+
+    private int binarySearch(long userId) {
+        int low = 0;
+        int high = userIds.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = userIds.get(middle);
+            if (middleId < userId) {
+                low = middle + 1;
+            } else if (middleId > userId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Collects recommendations of users in ascending order of user IDs.
+     */
+    static final class Builder {
+
+        private int[] userIds = new int[64];
+        private int[] offsets = new int[65];
+        private int[] filmIds = new int[256];
+        private int users;
+        private int films;
+
+        /**
+         * Appends the recommendations of a user; users must be added in ascending order of IDs.
+         *
+         * @param userId  the ID of the user.
+         * @param filmIds the recommended film IDs, best first.
+         */
+        void add(long userId, List<Long> filmIds) {
+            if (users == userIds.length) {
+                userIds = Arrays.copyOf(userIds, users * 2);
+                offsets = Arrays.copyOf(offsets, users * 2 + 1);
+            }
+            while (films + filmIds.size() > this.filmIds.length) {
+                this.filmIds = Arrays.copyOf(this.filmIds, this.filmIds.length * 2);
+            }
+
+            userIds[users] = Math.toIntExact(userId);
+            for (long filmId : filmIds) {
+                this.filmIds[films++] = Math.toIntExact(filmId);
+            }
+            offsets[++users] = films;
+        }
+
+        /**
+         * Appends the recommendations a user has in another table without unpacking them;
+         * users must be added in ascending order of IDs.
+         *
+         * @param table  the table to copy from.
+         * @param userId the ID of the user.
+         * @return {@code false} if the user is not in the table and nothing was added.
+         */
+        boolean addFrom(RecommendationTable table, long userId) {
+            int index = table.binarySearch(userId);
+            if (index < 0) {
+                return false;
+            }
+            int from = table.offsets.get(index);
+            int count = table.offsets.get(index + 1) - from;
+            if (users == userIds.length) {
+                userIds = Arrays.copyOf(userIds, users * 2);
+                offsets = Arrays.copyOf(offsets, users * 2 + 1);
+            }
+            while (films + count > filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, filmIds.length * 2);
+            }
+
+            userIds[users] = Math.toIntExact(userId);
+            table.filmIds.get(from, filmIds, films, count);
+            films += count;
+            offsets[++users] = films;
+            return true;
+        }
+
+        /**
+         * Copies the collected recommendations off-heap.
+         *
+         * @return the built table.
+         */
+        RecommendationTable build() {
+            return new RecommendationTable(
+                    toDirectBuffer(userIds, users),
+                    toDirectBuffer(offsets, users + 1),
+                    toDirectBuffer(filmIds, films));
+        }
+
+        private static IntBuffer toDirectBuffer(int[] values, int length) {
+            IntBuffer buffer = ByteBuffer.allocateDirect(length * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+            buffer.put(values, 0, length);
+            return buffer.flip().asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.dal.user.UserStorage;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Service serving timelines of friends' activity, newest events first.
+ * <p>
+ * Timelines are built on write: every committed event is appended to the timelines of the author's
+ * followers, each keeping only the newest {@code filmorate.timeline.capacity} events. A timeline is
+ * created the first time its owner reads it, from the newest events of each friend, so only users who
+ * read their timelines pay for fan-out; the number of timelines kept is bounded as well, and the least
+ * recently read ones are dropped first.
+ * </p>
+ * <p>
+ * Authors with more than {@code filmorate.timeline.celebrity-followers} followers are not fanned out:
+ * their events are read from the feed storage when a follower reads the timeline. Pages older than what
+ * a timeline keeps are read from the feed storage too. A timeline is rebuilt after its owner's friendships
+ * change, and only events of current friends are returned.
+ * </p>
+ */
+@Service
+@Slf4j
+public final class TimelineService {
+
+    private static final Comparator<UserEvent> NEWEST_FIRST =
+            Comparator.comparingLong(UserEvent::getEventId).reversed();
+
+    private final UserStorage userStorage;
+    private final int capacity;
+    private final int celebrityFollowers;
+    private final int maxTimelines;
+    private final Map<Long, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Set<Long> celebrities = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor for {@code TimelineService}.
+     *
+     * @param userStorage        the storage of users, their friendships and events.
+     * @param capacity           the number of events kept per timeline.
+     * @param celebrityFollowers the number of followers above which an author is not fanned out.
+     * @param maxTimelines       the number of timelines kept.
+     */
+    @Autowired
+    public TimelineService(final UserStorage userStorage,
+                           @Value("${filmorate.timeline.capacity:200}") final int capacity,
+                           @Value("${filmorate.timeline.celebrity-followers:1000}") final int celebrityFollowers,
+                           @Value("${filmorate.timeline.max-timelines:10000}") final int maxTimelines) {
+        this.userStorage = userStorage;
+        this.capacity = capacity;
+        this.celebrityFollowers = celebrityFollowers;
+        this.maxTimelines = maxTimelines;
+    }
+
+    /**
+     * Fetches a page of the timeline of a user: the events of the user's friends, newest first.
+     *
+     * @param userId the ID of the user.
+     * @param before the ID of the event before which the page starts.
+     * @param limit  the maximum number of events in the page.
+     * @return a list of the friends' events with IDs less than {@code before}.
+     */
+    public List<UserEvent> getTimeline(final long userId, final long before, final int limit) {
+        Set<Long> friendIds = new HashSet<>(userStorage.getFriendIds(userId));
+        Timeline timeline = timelines.get(userId);
+        if (timeline == null) {
+            timeline = createTimeline(userId, friendIds);
+        }
+        timeline.touch();
+
+        List<UserEvent> page = new ArrayList<>();
+        if (!timeline.page(before, limit, friendIds, page)) {
+            log.debug("Timeline of user {} does not reach event {}, reading friends' feeds", userId, before);
+            return readFeeds(friendIds, before, limit);
+        }
+        List<Long> celebrityFriends = friendIds.stream().filter(celebrities::contains).toList();
+        if (celebrityFriends.isEmpty()) {
+            return page;
+        }
+        page.addAll(readFeeds(celebrityFriends, before, limit));
+        return newest(page, limit);
+    }
+
+    /**
+     * Drops the timelines of users whose friendships changed; they are rebuilt when next read.
+     *
+     * @param userIds the IDs of the users.
+     */
+    public void invalidate(final long... userIds) {
+        for (long userId : userIds) {
+            timelines.remove(userId);
+        }
+    }
+
+    /**
+     * Appends a committed event to the existing timelines of the author's followers,
+     * unless the author has too many followers.
+     *
+     * @param event the user event published by the feed storage.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserEvent(final UserEvent event) {
+        if (timelines.isEmpty()) {
+            return;
+        }
+        List<Long> followerIds = userStorage.getFollowerIds(event.getUserId());
+        if (followerIds.size() > celebrityFollowers) {
+            if (celebrities.add(event.getUserId())) {
+                log.debug("User {} has {} followers, serving their events on read", event.getUserId(),
+                        followerIds.size());
+            }
+            return;
+        }
+        celebrities.remove(event.getUserId());
+        for (long followerId : followerIds) {
+            Timeline timeline = timelines.get(followerId);
+            if (timeline != null) {
+                timeline.add(event);
+            }
+        }
+    }
+
+    /**
+     * Registers a new timeline, so events committed from now on are appended to it,
+     * and then fills it with the newest events of the friends.
+     */
+    private Timeline createTimeline(final long userId, final Set<Long> friendIds) {
+        Timeline created = new Timeline(capacity);
+        Timeline existing = timelines.putIfAbsent(userId, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (timelines.size() > maxTimelines) {
+            evictLeastRecentlyRead();
+        }
+        log.debug("Building timeline of user {} from {} friends", userId, friendIds.size());
+        created.load(readFeeds(friendIds, Long.MAX_VALUE, capacity));
+        return created;
+    }
+
+    /**
+     * Drops a tenth of the timelines, least recently read first.
+     */
+    private void evictLeastRecentlyRead() {
+        timelines.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastRead()))
+                .limit(Math.max(1, maxTimelines / 10))
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(timelines::remove);
+    }
+
+    /**
+     * Reads a page of events of several users from the feed storage (fan-out on read).
+     */
+    private List<UserEvent> readFeeds(final Collection<Long> userIds, final long before, final int limit) {
+        List<UserEvent> events = new ArrayList<>();
+        userIds.forEach(userId -> events.addAll(userStorage.getUserEvents(userId, before, limit)));
+        return newest(events, limit);
+    }
+
+    private static List<UserEvent> newest(final List<UserEvent> events, final int limit) {
+        Set<Long> seen = new HashSet<>();
+        return events.stream()
+                .sorted(NEWEST_FIRST)
+                .filter(event -> seen.add(event.getEventId()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The newest events of the friends of one user, oldest first.
+     */
+    private static final class Timeline {
+
+        private final int capacity;
+        private final List<UserEvent> events = new ArrayList<>();
+        private boolean loaded;
+        private boolean truncated;
+        private volatile long lastRead = System.nanoTime();
+
+        Timeline(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Adds the events read at creation; until then the timeline answers no pages.
+         *
+         * @param history the newest events of the friends, at most {@code capacity} of them.
+         */
+        synchronized void load(final List<UserEvent> history) {
+            history.forEach(this::insert);
+            truncated |= history.size() >= capacity;
+            loaded = true;
+        }
+
+        synchronized void add(final UserEvent event) {
+            insert(event);
+        }
+
+        /**
+         * Collects the events of current friends before the given one, newest first.
+         *
+         * @return {@code false} if the timeline may lack events of the page, which must then be read elsewhere.
+         */
+        synchronized boolean page(final long before, final int limit, final Set<Long> friendIds,
+                                  final List<UserEvent> page) {
+            if (!loaded) {
+                return false;
+            }
+            for (int i = events.size() - 1; i >= 0 && page.size() < limit; i--) {
+                UserEvent event = events.get(i);
+                if (event.getEventId() < before && friendIds.contains(event.getUserId())) {
+                    page.add(event);
+                }
+            }
+            return page.size() == limit || !truncated;
+        }
+
+        void touch() {
+            lastRead = System.nanoTime();
+        }
+
+        long lastRead() {
+            return lastRead;
+        }
+
+        /**
+         * Inserts an event at its place by ID; events usually arrive in order, so the search starts at the end.
+         */
+        private void insert(final UserEvent event) {
+            int position = events.size();
+            while (position > 0 && events.get(position - 1).getEventId() > event.getEventId()) {
+                position--;
+            }
+            if (position > 0 && events.get(position - 1).getEventId() == event.getEventId()) {
+                return;
+            }
+            events.add(position, event);
+            if (events.size() > capacity) {
+                events.remove(0);
+                truncated = true;
+            }
+        }
+    }
+}
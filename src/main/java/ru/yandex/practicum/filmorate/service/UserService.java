@@ -2,8 +2,9 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dal.feed.FeedArchive;
 import ru.yandex.practicum.filmorate.dal.user.UserStorage;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.UserDto;
@@ -14,6 +15,7 @@ import ru.yandex.practicum.filmorate.model.UserEvent;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -23,28 +25,106 @@ import java.util.stream.Collectors;
 @Slf4j
 public final class UserService {
 
+    /**
+     * The largest page of users that can be requested at once.
+     */
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserStorage storage;
     private final UserMapper userMapper;
-    private final FilmService filmService;
+    private final RecommendationService recommendationService;
+    private final TimelineService timelineService;
+    private final FeedStreamService feedStreamService;
+    private final FeedArchive feedArchive;
 
     /**
      * Constructor for {@code UserService}.
      *
      * @param userStorage the storage implementation for managing users.
      * @param userMapper the mapper for converting User to UserDto.
+     * @param timelineService the service serving timelines of friends' activity.
+     * @param feedStreamService the service pushing new feed events to clients.
+     * @param feedArchive the archive of retired feed events.
      */
     @Autowired
-    public UserService(@Qualifier("userDbStorage") final UserStorage userStorage, final UserMapper userMapper,
-                       final FilmService filmService) {
+    public UserService(final UserStorage userStorage, final UserMapper userMapper,
+                       final RecommendationService recommendationService, final TimelineService timelineService,
+                       final FeedStreamService feedStreamService, final FeedArchive feedArchive) {
         this.storage = userStorage;
         this.userMapper = userMapper;
-        this.filmService = filmService;
+        this.recommendationService = recommendationService;
+        this.timelineService = timelineService;
+        this.feedStreamService = feedStreamService;
+        this.feedArchive = feedArchive;
     }
 
     public List<UserEvent> getUserFeed(long userId) {
         return storage.getUserEvents(userId);
     }
 
+    /**
+     * Fetches a page of a user's feed, newest events first.
+     *
+     * @param userId the ID of the user.
+     * @param before the ID of the event before which the page starts; {@link Long#MAX_VALUE} for the newest events.
+     * @param limit  the maximum number of events in the page.
+     * @return a list of the user's events with IDs less than {@code before}.
+     * @throws ValidationException if the limit is not between 1 and {@value #MAX_PAGE_SIZE}.
+     */
+    public List<UserEvent> getUserFeed(long userId, long before, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        log.debug("Fetching {} feed events of user {} before event {}", limit, userId, before);
+        return storage.getUserEvents(userId, before, limit);
+    }
+
+    /**
+     * Fetches the archived events of a user's feed, for export.
+     *
+     * @param userId the ID of the user.
+     * @return a list of the user's events retired from the feed, oldest first.
+     */
+    public List<UserEvent> getArchivedFeed(long userId) {
+        storage.getUserById(userId);
+
+        log.debug("Fetching archived feed events of user {}", userId);
+        return feedArchive.read(userId);
+    }
+
+    /**
+     * Fetches a page of the activity of a user's friends, newest events first.
+     *
+     * @param userId the ID of the user.
+     * @param before the ID of the event before which the page starts; {@link Long#MAX_VALUE} for the newest events.
+     * @param limit  the maximum number of events in the page.
+     * @return a list of the friends' events with IDs less than {@code before}.
+     * @throws ValidationException if the limit is not between 1 and {@value #MAX_PAGE_SIZE}.
+     */
+    public List<UserEvent> getFriendsFeed(long userId, long before, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        log.debug("Fetching {} friends' feed events of user {} before event {}", limit, userId, before);
+        return timelineService.getTimeline(userId, before, limit);
+    }
+
+    /**
+     * Opens a stream of a user's new feed events.
+     *
+     * @param userId      the ID of the user.
+     * @param lastEventId the ID of the last event the client received, or {@code null} for new events only.
+     * @return the emitter sending the events as Server-Sent Events.
+     */
+    public SseEmitter streamUserFeed(long userId, Long lastEventId) {
+        storage.getUserById(userId);
+
+        log.debug("Opening feed stream of user {} after event {}", userId, lastEventId);
+        return feedStreamService.subscribe(userId, lastEventId);
+    }
+
 
     /**
      * Fetches all users as DTOs.
@@ -59,6 +139,36 @@ public final class UserService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Fetches a page of users ordered by ID as DTOs.
+     *
+     * @param after the ID after which the page starts; {@code 0} for the first page.
+     * @param limit the maximum number of users in the page.
+     * @return a collection of user DTOs with IDs greater than {@code after}.
+     * @throws ValidationException if the limit is not between 1 and {@value #MAX_PAGE_SIZE}.
+     */
+    public Collection<UserDto> getUsers(final long after, final int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        log.debug("Fetching {} users after id {}", limit, after);
+        return storage.getUsers(after, limit)
+                .stream()
+                .map(userMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Passes all users as DTOs to the given consumer one by one.
+     *
+     * @param consumer the consumer receiving user DTOs.
+     */
+    public void streamAllUsers(final Consumer<UserDto> consumer) {
+        log.debug("Streaming all users");
+        storage.streamAllUsers(user -> consumer.accept(userMapper.toDto(user)));
+    }
+
     /**
      * Fetches a user by their ID as a DTO.
      *
@@ -104,7 +214,10 @@ public final class UserService {
      */
     public void deleteUser(final long id) {
         log.debug("Deleting user with id {}", id);
+        recommendationService.removeUser(id);
         storage.deleteUser(id);
+        timelineService.invalidate(id);
+        feedStreamService.closeStreams(id);
     }
 
     /**
@@ -120,6 +233,8 @@ public final class UserService {
         }
         log.debug("Adding friend relationship between user {} and user {}", userId, friendId);
         storage.addFriend(userId, friendId);
+        // Ленты обоих пользователей перестраиваются с событиями нового друга
+        timelineService.invalidate(userId, friendId);
     }
 
     /**
@@ -182,8 +297,8 @@ public final class UserService {
         }
     }
 
-    public List<FilmDto> getRecommendations(Long userId) {
-        log.debug("Fetching recommendations for user with id {}", userId);
-        return filmService.getRecommendations(userId);
+    public List<FilmDto> getRecommendations(Long userId, int limit) {
+        log.debug("Fetching {} recommendations for user with id {}", limit, userId);
+        return recommendationService.getRecommendations(userId, limit);
     }
 }
\ No newline at end of file
@@ -1,16 +1,3 @@
-DROP TABLE IF EXISTS user_film_likes CASCADE;
-DROP TABLE IF EXISTS film_genres CASCADE;
-DROP TABLE IF EXISTS user_friendships CASCADE;
-DROP TABLE IF EXISTS films CASCADE;
-DROP TABLE IF EXISTS genres CASCADE;
-DROP TABLE IF EXISTS mpa_ratings CASCADE;
-DROP TABLE IF EXISTS users CASCADE;
-DROP TABLE IF EXISTS user_events CASCADE;
-DROP TABLE IF EXISTS directors CASCADE;
-DROP TABLE IF EXISTS users CASCADE;
-DROP TABLE IF EXISTS reviews CASCADE;
-DROP TABLE IF EXISTS review_likes CASCADE;
-
 CREATE TABLE IF NOT EXISTS genres (
     genre_id INT AUTO_INCREMENT PRIMARY KEY,
     genre_name VARCHAR(50) NOT NULL
@@ -33,7 +20,7 @@ CREATE TABLE IF NOT EXISTS films (
     film_release_date DATE NOT NULL,
     film_duration INT,
     film_mpa_rating_id INT,
-    likes_count INT,
+    likes_count INT NOT NULL DEFAULT 0,
     film_director_id INT,
     FOREIGN KEY (film_mpa_rating_id) REFERENCES mpa_ratings(mpa_rating_id),
     FOREIGN KEY (film_director_id) REFERENCES directors(director_id) ON DELETE SET NULL
@@ -93,4 +80,8 @@ CREATE TABLE IF NOT EXISTS review_likes (
     review_id BIGINT REFERENCES reviews(id) ON DELETE CASCADE,
     user_id BIGINT REFERENCES users(user_id) ON DELETE CASCADE,
     status BOOLEAN
-);
\ No newline at end of file
+);
+
+-- Индексы по внешним ключам H2 создаёт сам; этот индекс дополнительно покрывает
+-- поиск подтверждённых заявок в друзья по получателю
+CREATE INDEX IF NOT EXISTS idx_user_friendships_recipient ON user_friendships (recipient_id, is_confirmed, requester_id);
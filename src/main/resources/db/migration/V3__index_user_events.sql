@@ -0,0 +1,5 @@
+-- Время события хранится как TIMESTAMP вместо строки
+ALTER TABLE user_events ALTER COLUMN timestamp SET DATA TYPE TIMESTAMP;
+
+-- Лента читается страницами от новых событий к старым прямо по индексу
+CREATE INDEX IF NOT EXISTS idx_user_events_user_event ON user_events (user_id, event_id DESC);
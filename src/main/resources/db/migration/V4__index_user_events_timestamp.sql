@@ -0,0 +1,2 @@
+-- Устаревшие события ищутся по времени без полного просмотра таблицы
+CREATE INDEX IF NOT EXISTS idx_user_events_timestamp ON user_events (timestamp);
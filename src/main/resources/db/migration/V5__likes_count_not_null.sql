@@ -0,0 +1,5 @@
+-- В базах, созданных до миграций, likes_count был необязательным и не заполнялся: считаем его по лайкам
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM user_film_likes u WHERE u.film_id = f.film_id)
+WHERE likes_count IS NULL;
+ALTER TABLE films ALTER COLUMN likes_count SET DEFAULT 0;
+ALTER TABLE films ALTER COLUMN likes_count SET NOT NULL;
@@ -0,0 +1,3 @@
+-- Поток событий догоняет клиента страницами от старых событий к новым; H2 не читает индекс
+-- (user_id, event_id DESC) в обратном порядке и сортировал бы весь остаток ленты на каждой странице
+CREATE INDEX IF NOT EXISTS idx_user_events_user_event_asc ON user_events (user_id, event_id);
@@ -0,0 +1,4 @@
+-- Индексы в памяти (лайки, поиск, рекомендации) хранят ID фильмов и пользователей в int. Вставка с ID
+-- за пределами int должна падать в своей транзакции, а не после фиксации, при обновлении индексов
+ALTER TABLE films ADD CONSTRAINT IF NOT EXISTS films_id_in_int_range CHECK (film_id <= 2147483647);
+ALTER TABLE users ADD CONSTRAINT IF NOT EXISTS users_id_in_int_range CHECK (user_id <= 2147483647);
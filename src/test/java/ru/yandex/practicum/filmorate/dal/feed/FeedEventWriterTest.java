@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.dal.feed;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Runs the feed pipeline against a pool smaller than the number of concurrent transactions,
+ * and checks how the writer batches events and survives bad ones.
+ */
+class FeedEventWriterTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final int CLIENTS = 16;
+    private static final int EVENTS_PER_CLIENT = 200;
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final HikariDataSource dataSource = new HikariDataSource();
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private FeedEventWriter writer;
+    private long userId;
+
+    FeedEventWriterTest() {
+        dataSource.setJdbcUrl("jdbc:h2:mem:feed" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(POOL_SIZE);
+        new SchemaMigrator(dataSource, "classpath:db/migration").migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.update("INSERT INTO users (user_email, user_login, user_name, user_birthday) "
+                + "VALUES ('user@mail.ru', 'user', 'User', DATE '1990-01-01')");
+        userId = jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("Should drain a full buffer while transactions hold every pooled connection")
+    void testAsyncBackpressureDoesNotStarveWriter() {
+        FeedDbStorage storage = storage("async", 4);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> addEventsConcurrently(storage));
+        storage.flush();
+
+        assertThat(countEvents()).isEqualTo(CLIENTS * EVENTS_PER_CLIENT);
+    }
+
+    @Test
+    @DisplayName("Should write synchronous events when their transaction commits and drop them on rollback")
+    void testSyncEventsFollowTheirTransaction() {
+        FeedDbStorage storage = storage("sync", 4);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> addEventsConcurrently(storage));
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            storage.addEvent(event());
+            throw new IllegalStateException("Rolled back");
+        })).isInstanceOf(IllegalStateException.class);
+        storage.addEvent(event());
+
+        assertThat(countEvents()).isEqualTo(CLIENTS * EVENTS_PER_CLIENT + 1);
+    }
+
+    @Test
+    @DisplayName("Should write the events of concurrently committing transactions in one batch")
+    void testConcurrentTransactionsShareBatch() {
+        // Каждая транзакция держит своё соединение, пока ждёт писателя, и ещё одно нужно самому писателю
+        dataSource.getHikariConfigMXBean().setMaximumPoolSize(CLIENTS + 1);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        writer = new FeedEventWriter(countingBatches(batchSizes), CLIENTS, CLIENTS, "sync");
+        FeedDbStorage storage = new FeedDbStorage(jdbcTemplate, event -> {
+        }, writer);
+        storage.loadLastEventId();
+
+        List<Thread> clients = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Thread client = new Thread(() -> transactionTemplate.executeWithoutResult(status -> {
+                storage.addEvent(event());
+            }));
+            client.start();
+            clients.add(client);
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            // Писатель запускается, когда все транзакции уже отдали ему события и ждут его перед фиксацией
+            while (!clients.stream().allMatch(FeedEventWriterTest::awaitsWriter)) {
+                Thread.sleep(10);
+            }
+            writer.start();
+            for (Thread client : clients) {
+                client.join();
+            }
+        });
+
+        assertThat(batchSizes).containsExactly(CLIENTS);
+        assertThat(countEvents()).isEqualTo(CLIENTS);
+    }
+
+    @Test
+    @DisplayName("Should fail a malformed event alone and keep writing the following ones")
+    void testMalformedEventDoesNotStopWriter() {
+        FeedDbStorage storage = storage("sync", 4);
+        UserEvent malformed = event();
+        malformed.setUserId(null);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            assertThatThrownBy(() -> storage.addEvent(malformed)).isInstanceOf(NullPointerException.class);
+            addEventsConcurrently(storage);
+        });
+
+        assertThat(countEvents()).isEqualTo(CLIENTS * EVENTS_PER_CLIENT);
+    }
+
+    private FeedDbStorage storage(String durability, int bufferSize) {
+        writer = new FeedEventWriter(dataSource, bufferSize, 8, durability);
+        writer.start();
+        FeedDbStorage storage = new FeedDbStorage(jdbcTemplate, event -> {
+        }, writer);
+        storage.loadLastEventId();
+        return storage;
+    }
+
+    private void addEventsConcurrently(FeedDbStorage storage) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            results.add(clients.submit(() -> {
+                for (int j = 0; j < EVENTS_PER_CLIENT; j++) {
+                    transactionTemplate.executeWithoutResult(status -> storage.addEvent(event()));
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        clients.shutdown();
+    }
+
+    private static boolean awaitsWriter(Thread thread) {
+        return thread.getState() == Thread.State.WAITING && Arrays.stream(thread.getStackTrace())
+                .anyMatch(frame -> frame.getClassName().equals(FeedEventWriter.class.getName())
+                        && frame.getMethodName().equals("await"));
+    }
+
+    /**
+     * Wraps the pool, so the statements of its connections report the size of every batch they execute.
+     */
+    private DataSource countingBatches(List<Integer> batchSizes) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return proxy(Connection.class, (method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    return result instanceof PreparedStatement statement ? countingBatches(statement, batchSizes)
+                            : result;
+                });
+            }
+        };
+    }
+
+    private static PreparedStatement countingBatches(PreparedStatement statement, List<Integer> batchSizes) {
+        AtomicInteger added = new AtomicInteger();
+        return proxy(PreparedStatement.class, (method, args) -> {
+            if (method.getName().equals("addBatch")) {
+                added.incrementAndGet();
+            } else if (method.getName().equals("executeBatch")) {
+                batchSizes.add(added.getAndSet(0));
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> handler.handle(method, args)));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private interface Handler {
+        Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private int countEvents() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user_events", Integer.class);
+    }
+
+    private UserEvent event() {
+        UserEvent event = new UserEvent();
+        event.setUserId(userId);
+        event.setEventType("LIKE");
+        event.setOperation("ADD");
+        event.setEntityId(1L);
+        event.setTimestamp(System.currentTimeMillis());
+        return event;
+    }
+}
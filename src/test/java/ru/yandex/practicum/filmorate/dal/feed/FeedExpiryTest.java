@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.dal.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that both feed storages pick the same events to retire by age and by the per-user limit.
+ */
+class FeedExpiryTest {
+
+    private static final int LIMIT = 10;
+    private static final long NOW = 1_000_000_000L;
+    private static final long EXPIRES_BEFORE = NOW - 1_000;
+
+    private final HikariDataSource dataSource = new HikariDataSource();
+    private final JdbcTemplate jdbcTemplate;
+    private final FeedEventWriter writer;
+    private final FeedDbStorage dbStorage;
+    private final InMemoryFeedStorage memoryStorage = new InMemoryFeedStorage(
+            new MemoryDatabase(new ObjectMapper().findAndRegisterModules(), 4, "", "", false), event -> {
+    });
+
+    FeedExpiryTest() {
+        dataSource.setJdbcUrl("jdbc:h2:mem:expiry;DB_CLOSE_DELAY=-1");
+        new SchemaMigrator(dataSource, "classpath:db/migration").migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        writer = new FeedEventWriter(dataSource, 16, 8, "sync");
+        writer.start();
+        dbStorage = new FeedDbStorage(jdbcTemplate, event -> {
+        }, writer);
+        dbStorage.loadLastEventId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    @Test
+    @DisplayName("Should retire events over the limit and expired events, newest retired event per user")
+    void testExpiredEventsMatchInBothStorages() {
+        long overLimit = insertUser();
+        long small = insertUser();
+        long expired = insertUser();
+        long untouched = insertUser();
+
+        // Три старых события и ещё двенадцать новых: сверх лимита пять, из них старых три
+        List<Long> overLimitIds = addEvents(overLimit, 3, NOW - 5_000);
+        overLimitIds.addAll(addEvents(overLimit, 12, NOW));
+        addEvents(small, 5, NOW);
+        List<Long> expiredIds = addEvents(expired, 4, NOW - 5_000);
+        expiredIds.addAll(addEvents(expired, 2, NOW));
+        addEvents(untouched, LIMIT, NOW);
+
+        Map<Long, Long> expected = Map.of(overLimit, overLimitIds.get(4), expired, expiredIds.get(3));
+        assertThat(dbStorage.findExpiredEvents(EXPIRES_BEFORE, LIMIT)).isEqualTo(expected);
+        assertThat(memoryStorage.findExpiredEvents(EXPIRES_BEFORE, LIMIT)).isEqualTo(expected);
+
+        Map<Long, Long> byLimitOnly = Map.of(overLimit, overLimitIds.get(4));
+        assertThat(dbStorage.findExpiredEvents(0, LIMIT)).isEqualTo(byLimitOnly);
+        assertThat(memoryStorage.findExpiredEvents(0, LIMIT)).isEqualTo(byLimitOnly);
+
+        Map<Long, Long> byAgeOnly = Map.of(overLimit, overLimitIds.get(2), expired, expiredIds.get(3));
+        assertThat(dbStorage.findExpiredEvents(EXPIRES_BEFORE, 0)).isEqualTo(byAgeOnly);
+        assertThat(memoryStorage.findExpiredEvents(EXPIRES_BEFORE, 0)).isEqualTo(byAgeOnly);
+    }
+
+    private long insertUser() {
+        jdbcTemplate.update("INSERT INTO users (user_email, user_login, user_name, user_birthday) "
+                + "VALUES ('user@mail.ru', 'user', 'User', DATE '1990-01-01')");
+        return jdbcTemplate.queryForObject("SELECT MAX(user_id) FROM users", Long.class);
+    }
+
+    /**
+     * Adds the same events to both storages; they hand out event IDs in the same order.
+     *
+     * @return the IDs of the added events.
+     */
+    private List<Long> addEvents(long userId, int count, long timestamp) {
+        List<Long> eventIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserEvent dbEvent = event(userId, timestamp);
+            UserEvent memoryEvent = event(userId, timestamp);
+            dbStorage.addEvent(dbEvent);
+            memoryStorage.addEvent(memoryEvent);
+            assertThat(memoryEvent.getEventId()).isEqualTo(dbEvent.getEventId());
+            eventIds.add(dbEvent.getEventId());
+        }
+        return eventIds;
+    }
+
+    private static UserEvent event(long userId, long timestamp) {
+        UserEvent event = new UserEvent();
+        event.setUserId(userId);
+        event.setEventType("LIKE");
+        event.setOperation("ADD");
+        event.setEntityId(1L);
+        event.setTimestamp(timestamp);
+        return event;
+    }
+}
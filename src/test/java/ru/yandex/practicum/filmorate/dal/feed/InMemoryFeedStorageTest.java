@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.dal.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.memory.MemoryDatabase;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryFeedStorageTest {
+
+    private final MemoryDatabase database =
+            new MemoryDatabase(new ObjectMapper().findAndRegisterModules(), 4, "", "", false);
+    private final InMemoryFeedStorage feedStorage = new InMemoryFeedStorage(database, event -> {
+    });
+
+    @BeforeEach
+    void setUp() {
+        // События двух пользователей чередуются, поэтому ID событий одного пользователя идут с пропусками
+        for (int i = 0; i < 10; i++) {
+            feedStorage.addEvent(event(1));
+            feedStorage.addEvent(event(2));
+        }
+    }
+
+    @Test
+    @DisplayName("Should page a user's feed forward from any event, oldest first")
+    void testPagesAfterEvent() {
+        List<Long> expected = feedStorage.getEvents(1).stream().map(UserEvent::getEventId).toList();
+
+        List<Long> paged = new ArrayList<>();
+        long after = 0;
+        List<UserEvent> page;
+        do {
+            page = feedStorage.getEventsAfter(1, after, 3);
+            page.forEach(event -> paged.add(event.getEventId()));
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getEventId();
+            }
+        } while (page.size() == 3);
+
+        assertThat(paged).containsExactlyElementsOf(expected);
+        assertThat(feedStorage.getEventsAfter(1, expected.get(4) + 1, 2)).extracting(UserEvent::getEventId)
+                .containsExactly(expected.get(5), expected.get(6));
+        assertThat(feedStorage.getEventsAfter(1, expected.get(9), 5)).isEmpty();
+        assertThat(feedStorage.getEventsAfter(3, 0, 5)).isEmpty();
+    }
+
+    private static UserEvent event(long userId) {
+        UserEvent event = new UserEvent();
+        event.setUserId(userId);
+        event.setTimestamp(System.currentTimeMillis());
+        event.setEventType("LIKE");
+        event.setOperation("ADD");
+        event.setEntityId(1L);
+        return event;
+    }
+}
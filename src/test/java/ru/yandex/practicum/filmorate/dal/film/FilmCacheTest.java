@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmCacheTest {
+
+    private final FilmCache cache = new FilmCache(100);
+
+    @Test
+    @DisplayName("Should cache a load while other films are invalidated")
+    void testInvalidationOfOtherFilmKeepsLoad() {
+        long generation = cache.generation();
+        cache.invalidate(2);
+        cache.invalidate(3);
+        cache.put(film(1), generation);
+
+        assertThat(cache.get(1)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should not cache a load started before the film was invalidated")
+    void testInvalidationOfSameFilmDropsLoad() {
+        long generation = cache.generation();
+        cache.invalidate(1);
+        cache.put(film(1), generation);
+
+        assertThat(cache.get(1)).isNull();
+
+        cache.put(film(1), cache.generation());
+        assertThat(cache.get(1)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should not cache a load older than every tracked invalidation")
+    void testLoadOlderThanTrackedInvalidationsIsDropped() {
+        long generation = cache.generation();
+        for (long filmId = 1_000; filmId < 10_000; filmId++) {
+            cache.invalidate(filmId);
+        }
+        cache.put(film(1), generation);
+
+        assertThat(cache.get(1)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should not cache loads started before a director change")
+    void testDirectorInvalidationDropsLoads() {
+        Director director = new Director();
+        director.setId(7);
+        Film film = film(1);
+        film.getDirectors().add(director);
+        cache.put(film, cache.generation());
+        long generation = cache.generation();
+
+        cache.invalidateDirector(7);
+        cache.put(film(2), generation);
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isNull();
+        assertThat(cache.getStats().size()).isZero();
+    }
+
+    private static Film film(long id) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName("Film " + id);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        return film;
+    }
+}
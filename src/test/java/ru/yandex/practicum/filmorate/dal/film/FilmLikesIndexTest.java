@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+/**
+ * Checks the bitmap similarity path against a plain Jaccard implementation over hash sets,
+ * bounds its cost on a catalog with a million likes and times it against the former recommender.
+ */
+@Slf4j
+class FilmLikesIndexTest {
+
+    private static final int NEIGHBOURS = 30;
+    private static final int TIMED_USERS = 200;
+
+    private final Random random = new Random(11);
+    private final FilmLikesIndex index = new FilmLikesIndex();
+    private final Map<Long, Set<Long>> filmsByUser = new HashMap<>();
+
+    @Test
+    @DisplayName("Should recommend the films scored by the most similar users")
+    void testRecommendationsMatchReference() {
+        // Кандидатов больше 4096, поэтому их объединение хранится блоками-битсетами
+        like(6_000, 3_000, 60, 0.7);
+        for (int i = 0; i < 6_000; i++) {
+            long filmId = 1 + random.nextInt(3_000);
+            long userId = 1 + random.nextInt(6_000);
+            index.removeLike(filmId, userId);
+            filmsByUser.getOrDefault(userId, new HashSet<>()).remove(filmId);
+        }
+
+        for (long userId = 1; userId <= 100; userId++) {
+            Map<Long, Double> expectedScores = referenceScores(userId);
+            List<Long> recommended = index.getRecommendedFilmIds(userId, 10);
+
+            assertThat(recommended).hasSize(Math.min(10, expectedScores.size()));
+            double lowestRecommended = Double.MAX_VALUE;
+            for (Long filmId : recommended) {
+                assertThat(expectedScores).containsKey(filmId);
+                assertThat(expectedScores.get(filmId)).isLessThanOrEqualTo(lowestRecommended + 1e-9);
+                lowestRecommended = expectedScores.get(filmId);
+            }
+            double threshold = lowestRecommended;
+            expectedScores.entrySet().stream()
+                    .filter(entry -> !recommended.contains(entry.getKey()))
+                    .forEach(entry -> assertThat(entry.getValue()).isLessThanOrEqualTo(threshold + 1e-9));
+        }
+    }
+
+    @Test
+    @DisplayName("Should find common films and keep counts after removals")
+    void testCommonFilmsAndRemovals() {
+        like(200, 500, 40, 0.5);
+        Set<Long> common = new HashSet<>(filmsByUser.get(1L));
+        common.retainAll(filmsByUser.get(2L));
+
+        assertThat(index.getCommonFilmIds(1, 2)).containsExactlyElementsOf(common.stream().sorted().toList());
+
+        index.removeUser(1);
+        index.removeFilm(1);
+        filmsByUser.remove(1L);
+        filmsByUser.values().forEach(films -> films.remove(1L));
+
+        assertThat(index.getRecommendedFilmIds(1, 10)).isEmpty();
+        assertThat(index.getLikes(1)).isZero();
+        long filmId = 2;
+        List<Long> likedBy = filmsByUser.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(filmId))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        assertThat(index.getUserIds(filmId)).containsExactlyElementsOf(likedBy);
+        assertThat(index.getLikes(filmId)).isEqualTo(likedBy.size());
+        assertThat(index.getUserIds(1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should recommend over a million likes within a time limit")
+    void testRecommendationsOnLargeCatalog() {
+        like(20_000, 5_000, 50, 0.3);
+
+        assertTimeout(Duration.ofSeconds(15), () -> {
+            for (long userId = 1; userId <= 200; userId++) {
+                assertThat(index.getRecommendedFilmIds(userId, 10)).hasSizeLessThanOrEqualTo(10);
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("Should time the ranked recommender against the single nearest neighbour on the same likes")
+    void testRankedAgainstNearestNeighbour() {
+        like(20_000, 5_000, 50, 0.3);
+        NearestNeighbourRecommender nearestNeighbour = new NearestNeighbourRecommender(filmsByUser);
+
+        // Первый проход прогревает JIT для обоих вариантов
+        time(nearestNeighbour::recommend);
+        time(userId -> index.getRecommendedFilmIds(userId, 10));
+        long nearestNeighbourNanos = time(nearestNeighbour::recommend);
+        long rankedNanos = time(userId -> index.getRecommendedFilmIds(userId, 10));
+
+        log.info("Recommendations for {} users over {} likes: single nearest neighbour {} ms, "
+                        + "{} nearest neighbours {} ms", TIMED_USERS,
+                filmsByUser.values().stream().mapToInt(Set::size).sum(),
+                nearestNeighbourNanos / 1_000_000, NEIGHBOURS, rankedNanos / 1_000_000);
+        for (long userId = 1; userId <= TIMED_USERS; userId++) {
+            assertThat(nearestNeighbour.recommend(userId)).isNotEmpty();
+            assertThat(index.getRecommendedFilmIds(userId, 10)).hasSize(10);
+        }
+    }
+
+    private static long time(LongFunction<List<Long>> recommender) {
+        long started = System.nanoTime();
+        for (long userId = 1; userId <= TIMED_USERS; userId++) {
+            recommender.apply(userId);
+        }
+        return System.nanoTime() - started;
+    }
+
+    /**
+     * Gives every user {@code likesPerUser} random likes; a share of them goes to the 5% most popular films.
+     */
+    private void like(int users, int films, int likesPerUser, double popularShare) {
+        int popularFilms = Math.max(1, films / 20);
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                long filmId = 1 + (random.nextDouble() < popularShare
+                        ? random.nextInt(popularFilms)
+                        : random.nextInt(films));
+                index.addLike(filmId, userId);
+                filmsByUser.computeIfAbsent(userId, id -> new HashSet<>()).add(filmId);
+            }
+        }
+    }
+
+    /**
+     * Scores films with the Jaccard similarities of the {@value #NEIGHBOURS} most similar users,
+     * higher similarity and then lower user ID first.
+     */
+    private Map<Long, Double> referenceScores(long userId) {
+        Set<Long> liked = filmsByUser.getOrDefault(userId, Set.of());
+        Map<Long, Double> similarities = new HashMap<>();
+        filmsByUser.forEach((otherId, otherLiked) -> {
+            if (otherId == userId || otherLiked.isEmpty()) {
+                return;
+            }
+            Set<Long> common = new HashSet<>(liked);
+            common.retainAll(otherLiked);
+            if (!common.isEmpty()) {
+                similarities.put(otherId,
+                        (double) common.size() / (liked.size() + otherLiked.size() - common.size()));
+            }
+        });
+
+        Map<Long, Double> scores = new HashMap<>();
+        similarities.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(NEIGHBOURS)
+                .forEach(neighbour -> filmsByUser.get(neighbour.getKey()).stream()
+                        .filter(filmId -> !liked.contains(filmId))
+                        .forEach(filmId -> scores.merge(filmId, neighbour.getValue(), Double::sum)));
+        return scores;
+    }
+
+    /**
+     * The recommender used before the ranking: all films of the single user with the most likes in common,
+     * the lowest ID among equals, over the same bitmaps as {@link FilmLikesIndex}.
+     */
+    private static final class NearestNeighbourRecommender {
+
+        private final Map<Integer, IntBitmap> usersByFilm = new HashMap<>();
+        private final Map<Integer, IntBitmap> filmsByUser = new HashMap<>();
+
+        NearestNeighbourRecommender(Map<Long, Set<Long>> likes) {
+            likes.forEach((userId, filmIds) -> filmIds.forEach(filmId -> {
+                usersByFilm.computeIfAbsent(filmId.intValue(), id -> new IntBitmap()).add(userId.intValue());
+                filmsByUser.computeIfAbsent(userId.intValue(), id -> new IntBitmap()).add(filmId.intValue());
+            }));
+        }
+
+        List<Long> recommend(long userId) {
+            IntBitmap likedByUser = filmsByUser.get((int) userId);
+            if (likedByUser == null) {
+                return List.of();
+            }
+
+            IntBitmap candidates = new IntBitmap();
+            likedByUser.forEach(filmId -> candidates.or(usersByFilm.get(filmId)));
+            candidates.remove((int) userId);
+
+            int mostSimilarUserId = -1;
+            int mostCommonLikes = 0;
+            for (int candidateId : candidates.toArray()) {
+                int commonLikes = likedByUser.andCardinality(filmsByUser.get(candidateId));
+                if (commonLikes > mostCommonLikes) {
+                    mostSimilarUserId = candidateId;
+                    mostCommonLikes = commonLikes;
+                }
+            }
+
+            if (mostSimilarUserId < 0) {
+                return List.of();
+            }
+            return Arrays.stream(filmsByUser.get(mostSimilarUserId).andNot(likedByUser).toArray())
+                    .asLongStream()
+                    .boxed()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+/**
+ * Checks the popularity index against a full sort of the films and bounds the cost of likes and top queries.
+ */
+class FilmPopularityIndexTest {
+
+    private static final int FILMS = 50_000;
+    private static final int GENRES = 6;
+
+    private final Random random = new Random(42);
+    private final Map<Long, Film> films = new HashMap<>();
+    private FilmPopularityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= FILMS; id++) {
+            Film film = new Film();
+            film.setId(id);
+            film.setReleaseDate(LocalDate.of(1990 + random.nextInt(30), 1, 1));
+            film.setLikes(random.nextInt(100));
+            film.getGenres().add(new Genre(1 + random.nextInt(GENRES), null));
+            films.put(id, film);
+        }
+        index = new FilmPopularityIndex();
+        index.load(films.values());
+    }
+
+    @Test
+    @DisplayName("Should rank films by likes and then by ID")
+    void testGetTopFilmIds() {
+        assertThat(index.getTopFilmIds(100)).isEqualTo(expectedTop(100, null, null));
+        assertThat(index.getTopFilmIds(50, 3, null)).isEqualTo(expectedTop(50, 3, null));
+        assertThat(index.getTopFilmIds(50, null, 2005)).isEqualTo(expectedTop(50, null, 2005));
+        assertThat(index.getTopFilmIds(10, 2, 2010)).isEqualTo(expectedTop(10, 2, 2010));
+        assertThat(index.getTopFilmIds(10, 2, 1900)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should keep rankings in order under likes, unlikes, updates and deletions")
+    void testChangesKeepRankings() {
+        for (int i = 0; i < 10_000; i++) {
+            long filmId = 1 + random.nextInt(FILMS);
+            Film film = films.get(filmId);
+            switch (random.nextInt(10)) {
+                case 0 -> {
+                    index.removeFilm(filmId);
+                    films.remove(filmId);
+                }
+                case 1 -> {
+                    if (film != null) {
+                        film.setReleaseDate(LocalDate.of(1990 + random.nextInt(30), 1, 1));
+                        index.saveFilm(film);
+                    }
+                }
+                default -> {
+                    int delta = random.nextBoolean() ? 1 : -1;
+                    index.changeLikes(filmId, delta);
+                    if (film != null) {
+                        film.setLikes(Math.max(0, film.getLikes() + delta));
+                    }
+                }
+            }
+        }
+
+        assertThat(index.getTopFilmIds(200)).isEqualTo(expectedTop(200, null, null));
+        assertThat(index.getTopFilmIds(200, 4, null)).isEqualTo(expectedTop(200, 4, null));
+        assertThat(index.getTopFilmIds(200, 4, 1999)).isEqualTo(expectedTop(200, 4, 1999));
+        films.values().forEach(film -> assertThat(index.getLikes(film.getId())).isEqualTo(film.getLikes()));
+    }
+
+    @Test
+    @DisplayName("Should serve likes and top queries without scanning the catalog")
+    void testLikesAndTopQueriesAreCheap() {
+        // Полный проход по 50 000 фильмам на каждый из 200 000 вызовов не уложился бы в лимит
+        assertTimeout(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 100_000; i++) {
+                index.changeLikes(1 + random.nextInt(FILMS), 1);
+                assertThat(index.getTopFilmIds(10, 1 + random.nextInt(GENRES), null)).hasSizeLessThanOrEqualTo(10);
+            }
+        });
+    }
+
+    private List<Long> expectedTop(int count, Integer genreId, Integer year) {
+        return new ArrayList<>(films.values()).stream()
+                .filter(film -> genreId == null || film.getGenres().stream().anyMatch(g -> g.getId() == genreId))
+                .filter(film -> year == null || film.getReleaseDate().getYear() == year)
+                .sorted(Comparator.comparingInt(Film::getLikes).reversed().thenComparingLong(Film::getId))
+                .limit(count)
+                .map(Film::getId)
+                .toList();
+    }
+}
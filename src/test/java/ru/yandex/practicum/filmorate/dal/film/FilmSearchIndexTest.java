@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilmSearchIndexTest {
+
+    private final FilmSearchIndex index = new FilmSearchIndex();
+
+    @BeforeEach
+    void setUp() {
+        index.saveDirector(1, "Christopher Nolan");
+        index.saveDirector(2, "Denis Villeneuve");
+        index.saveFilm(1, "Interstellar", List.of(1), 10);
+        index.saveFilm(2, "The Dark Knight", List.of(1), 30);
+        index.saveFilm(3, "Dune", List.of(2), 20);
+        index.saveFilm(4, "Arrival", List.of(2), 5);
+        index.saveFilm(5, "Knives Out", List.of(), 7);
+    }
+
+    @Test
+    @DisplayName("Should find substrings of three or more characters anywhere in the text")
+    void testSubstringSearch() {
+        assertThat(index.search("stel", true, false, "substring")).containsOnlyKeys(1L);
+        assertThat(index.search("KNI", true, false, "substring")).containsOnlyKeys(2L, 5L);
+        assertThat(index.search("nolan", false, true, "substring")).containsOnlyKeys(1L, 2L);
+        assertThat(index.search("xyz", true, true, "substring")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should answer one and two character queries from word prefixes")
+    void testShortQueriesMatchWordPrefixes() {
+        assertThat(index.search("d", true, false, "substring")).containsOnlyKeys(2L, 3L);
+        assertThat(index.search("kn", true, false, "substring")).containsOnlyKeys(2L, 5L);
+        assertThat(index.search("ar", true, false, "substring")).containsOnlyKeys(4L);
+        assertThat(index.search("de", false, true, "substring")).containsOnlyKeys(3L, 4L);
+    }
+
+    @Test
+    @DisplayName("Should rank exact, prefix, word and substring matches")
+    void testRelevance() {
+        index.saveFilm(6, "Dune: Part Two", List.of(2), 15);
+        index.saveFilm(7, "Sand Dune", List.of(), 1);
+        index.saveFilm(8, "Dunedin", List.of(), 1);
+
+        Map<Long, Integer> relevance = index.search("dune", true, false, "substring");
+
+        assertThat(relevance).containsEntry(3L, FilmSearchIndex.EXACT_MATCH)
+                .containsEntry(6L, FilmSearchIndex.PREFIX_MATCH)
+                .containsEntry(8L, FilmSearchIndex.PREFIX_MATCH)
+                .containsEntry(7L, FilmSearchIndex.WORD_MATCH);
+    }
+
+    @Test
+    @DisplayName("Should forget deleted films and directors")
+    void testRemovals() {
+        index.removeFilm(2);
+        index.removeDirector(2);
+
+        assertThat(index.search("knight", true, false, "substring")).isEmpty();
+        assertThat(index.search("villeneuve", false, true, "substring")).isEmpty();
+        assertThat(index.search("nolan", false, true, "substring")).containsOnlyKeys(1L);
+    }
+
+    @Test
+    @DisplayName("Should re-rank completions by likes applied on the next request")
+    void testSuggestionsFollowLikes() {
+        assertThat(index.suggest("d", 5)).extracting(FilmSearchIndex.Suggestion::text)
+                .containsExactly("The Dark Knight", "Denis Villeneuve", "Dune");
+
+        index.changeLikes(2, 1);
+        index.changeLikes(3, 15);
+        index.changeLikes(2, -2);
+
+        assertThat(index.suggest("d", 5)).extracting(FilmSearchIndex.Suggestion::text)
+                .containsExactly("Denis Villeneuve", "Dune", "The Dark Knight");
+        assertThat(index.suggest("d", 5)).extracting(FilmSearchIndex.Suggestion::likes)
+                .containsExactly(40, 35, 29);
+    }
+
+    @Test
+    @DisplayName("Should rank directors by the likes of all their films")
+    void testDirectorSuggestions() {
+        index.changeLikes(4, 20);
+
+        assertThat(index.suggest("villeneuve", 5)).singleElement()
+                .satisfies(suggestion -> {
+                    assertThat(suggestion.type()).isEqualTo("director");
+                    assertThat(suggestion.likes()).isEqualTo(45);
+                });
+
+        index.removeFilm(3);
+
+        assertThat(index.suggest("denis", 5)).singleElement()
+                .extracting(FilmSearchIndex.Suggestion::likes).isEqualTo(25);
+        assertThat(index.suggest("dune", 5)).isEmpty();
+    }
+}
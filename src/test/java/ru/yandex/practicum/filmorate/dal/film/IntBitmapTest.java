@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.dal.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the bitmap against {@link TreeSet} for sparse array chunks and dense bit set chunks.
+ */
+class IntBitmapTest {
+
+    private final Random random = new Random(7);
+
+    @Test
+    @DisplayName("Should add, remove and count values like a sorted set")
+    void testAddRemoveContains() {
+        IntBitmap bitmap = new IntBitmap();
+        Set<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            int value = randomValue();
+            if (random.nextInt(4) == 0) {
+                assertThat(bitmap.remove(value)).isEqualTo(expected.remove(value));
+            } else {
+                assertThat(bitmap.add(value)).isEqualTo(expected.add(value));
+            }
+        }
+
+        assertThat(bitmap.cardinality()).isEqualTo(expected.size());
+        assertThat(bitmap.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+        expected.forEach(value -> assertThat(bitmap.contains(value)).isTrue());
+        assertThat(bitmap.contains(-1 >>> 1)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should turn a chunk into a bit set and back while it grows and shrinks")
+    void testChunkConversion() {
+        IntBitmap bitmap = new IntBitmap();
+        for (int value = 0; value < IntBitmap.ARRAY_MAX_SIZE * 3; value++) {
+            bitmap.add(value);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(IntBitmap.ARRAY_MAX_SIZE * 3);
+
+        for (int value = 0; value < IntBitmap.ARRAY_MAX_SIZE * 3; value += 2) {
+            bitmap.remove(value);
+        }
+        for (int value = 1; value < IntBitmap.ARRAY_MAX_SIZE * 3; value += 4) {
+            bitmap.remove(value);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(IntBitmap.ARRAY_MAX_SIZE * 3 / 4);
+        assertThat(bitmap.contains(3)).isTrue();
+        assertThat(bitmap.contains(5)).isFalse();
+
+        for (int value = 3; value < IntBitmap.ARRAY_MAX_SIZE * 3; value += 4) {
+            bitmap.remove(value);
+        }
+        assertThat(bitmap.isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should compute intersections, differences and unions of mixed chunks")
+    void testSetOperations() {
+        for (int round = 0; round < 20; round++) {
+            Set<Integer> left = randomSet();
+            Set<Integer> right = randomSet();
+            IntBitmap leftBitmap = bitmapOf(left);
+            IntBitmap rightBitmap = bitmapOf(right);
+
+            Set<Integer> and = new TreeSet<>(left);
+            and.retainAll(right);
+            Set<Integer> andNot = new TreeSet<>(left);
+            andNot.removeAll(right);
+            Set<Integer> or = new TreeSet<>(left);
+            or.addAll(right);
+
+            assertThat(leftBitmap.andCardinality(rightBitmap)).isEqualTo(and.size());
+            assertThat(leftBitmap.and(rightBitmap).toArray()).containsExactly(toArray(and));
+            assertThat(leftBitmap.andNot(rightBitmap).toArray()).containsExactly(toArray(andNot));
+            leftBitmap.or(rightBitmap);
+            assertThat(leftBitmap.toArray()).containsExactly(toArray(or));
+            assertThat(leftBitmap.cardinality()).isEqualTo(or.size());
+        }
+    }
+
+    /**
+     * Values in four chunks; chunk 0 gets dense sets, the others sparse ones.
+     */
+    private int randomValue() {
+        int chunk = random.nextInt(4);
+        int low = chunk == 0 ? random.nextInt(IntBitmap.ARRAY_MAX_SIZE * 4) : random.nextInt(1 << 16);
+        return chunk << 16 | low;
+    }
+
+    private Set<Integer> randomSet() {
+        Set<Integer> set = new TreeSet<>();
+        int size = random.nextInt(IntBitmap.ARRAY_MAX_SIZE * 3);
+        for (int i = 0; i < size; i++) {
+            set.add(randomValue());
+        }
+        return set;
+    }
+
+    private static IntBitmap bitmapOf(Set<Integer> values) {
+        IntBitmap bitmap = new IntBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static int[] toArray(Set<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
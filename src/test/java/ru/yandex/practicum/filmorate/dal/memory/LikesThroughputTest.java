@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.film.FilmSqlConstants;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures how many likes per second the in-memory backend with a synchronous write-ahead log accepts,
+ * next to H2 row inserts of the same likes in transactions like those of the database storage.
+ * The comparison favours H2: by default it forces its file to disk only every half second, while the
+ * log forces every batch before the like returns. Both sides run after a warm-up round. The numbers
+ * depend on the disk, so they are logged and the test only checks that the likes were stored.
+ */
+@Slf4j
+class LikesThroughputTest {
+
+    private static final int FILMS = 1_000;
+    private static final int USERS = 1_000;
+    private static final int CLIENTS = 16;
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long RUN_MILLIS = 3_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should measure likes per second of the logged memory backend and of H2")
+    void testLikesThroughput() throws Exception {
+        long memoryLikes = runMemory();
+        long h2Likes = runH2();
+
+        log.info("Likes, {} clients: memory with synchronous WAL {}/s, H2 with default write delay {}/s",
+                CLIENTS, memoryLikes * 1000 / RUN_MILLIS, h2Likes * 1000 / RUN_MILLIS);
+        assertThat(memoryLikes).isPositive();
+        assertThat(h2Likes).isPositive();
+    }
+
+    private long runMemory() throws Exception {
+        MemoryDatabase database = new MemoryDatabase(new ObjectMapper().findAndRegisterModules(), 64, "",
+                directory.resolve("wal").toString(), true);
+        database.load();
+        try {
+            for (int i = 0; i < FILMS; i++) {
+                Film film = new Film();
+                film.setName("Film " + i);
+                film.setReleaseDate(LocalDate.of(2000, 1, 1));
+                database.insertFilm(film);
+            }
+            for (int i = 0; i < USERS; i++) {
+                User user = new User();
+                user.setEmail("user" + i + "@mail.ru");
+                user.setLogin("user" + i);
+                user.setName("User " + i);
+                user.setBirthday(LocalDate.of(1990, 1, 1));
+                database.insertUser(user);
+            }
+            Like like = (filmIndex, userIndex) -> assertThat(database.addLike(1 + filmIndex, 1 + userIndex)).isTrue();
+            run(like, 0, WARMUP_MILLIS);
+            long likes = run(like, USERS / 2, RUN_MILLIS);
+            assertThat(database.likes().getUserIds(1)).isNotEmpty();
+            return likes;
+        } finally {
+            database.close();
+        }
+    }
+
+    private long runH2() throws Exception {
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl("jdbc:h2:file:" + directory.resolve("h2"));
+            dataSource.setMaximumPoolSize(CLIENTS);
+            new SchemaMigrator(dataSource, "classpath:db/migration").migrate();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            TransactionTemplate transactionTemplate =
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+            List<Object[]> films = new ArrayList<>();
+            for (int i = 0; i < FILMS; i++) {
+                films.add(new Object[]{"Film " + i, Date.valueOf("2000-01-01")});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO films (film_name, film_release_date) VALUES (?, ?)", films);
+            List<Object[]> users = new ArrayList<>();
+            for (int i = 0; i < USERS; i++) {
+                users.add(new Object[]{"user" + i + "@mail.ru", "user" + i, "User " + i, Date.valueOf("1990-01-01")});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO users (user_email, user_login, user_name, user_birthday) "
+                    + "VALUES (?, ?, ?, ?)", users);
+            long firstFilmId = jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM films", Long.class);
+            long firstUserId = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class);
+
+            Like like = (filmIndex, userIndex) -> transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(FilmSqlConstants.SQL_INSERT_LIKE, firstFilmId + filmIndex, firstUserId + userIndex);
+                jdbcTemplate.update(FilmSqlConstants.SQL_INCREMENT_LIKES_COUNT, firstFilmId + filmIndex);
+            });
+            run(like, 0, WARMUP_MILLIS);
+            return run(like, USERS / 2, RUN_MILLIS);
+        }
+    }
+
+    /**
+     * Adds likes from {@value #CLIENTS} threads until the time is up. Every thread walks its own users,
+     * starting at {@code firstUser}, through all films, so no like is added twice.
+     *
+     * @return the number of added likes.
+     */
+    private static long run(Like like, int firstUser, long millis) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long deadline = System.currentTimeMillis() + millis;
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            int client = i;
+            results.add(clients.submit(() -> {
+                long likes = 0;
+                int user = firstUser + client;
+                int film = 0;
+                while (System.currentTimeMillis() < deadline && user < firstUser + USERS / 2) {
+                    like.add(film, user);
+                    likes++;
+                    if (++film == FILMS) {
+                        film = 0;
+                        user += CLIENTS;
+                    }
+                }
+                return likes;
+            }));
+        }
+        long likes = 0;
+        for (Future<Long> result : results) {
+            likes += result.get();
+        }
+        clients.shutdown();
+        assertThat(clients.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        return likes;
+    }
+
+    @FunctionalInterface
+    private interface Like {
+
+        void add(int filmIndex, int userIndex);
+    }
+}
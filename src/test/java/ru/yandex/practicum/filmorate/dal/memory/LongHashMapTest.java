@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the open addressing map against {@link HashMap}, including key {@code 0}, growth and backward shifts.
+ */
+class LongHashMapTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    @DisplayName("Should put, get and remove keys like a hash map")
+    void testMatchesHashMap() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            // Узкий диапазон ключей даёт длинные цепочки проб и частые сдвиги при удалении
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key, (long) i)).isEqualTo(expected.put(key, (long) i));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = -100; key < 4_900; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        List<Long> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertThat(values).containsExactlyInAnyOrderElementsOf(expected.values());
+    }
+
+    @Test
+    @DisplayName("Should keep key zero apart from the free slot marker")
+    void testZeroKey() {
+        LongHashMap<String> map = new LongHashMap<>();
+
+        assertThat(map.get(0)).isNull();
+        assertThat(map.put(0, "zero")).isNull();
+        assertThat(map.put(1, "one")).isNull();
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.get(0)).isEqualTo("zero");
+
+        assertThat(map.remove(0)).isEqualTo("zero");
+        assertThat(map.remove(0)).isNull();
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(1)).isEqualTo("one");
+    }
+
+    @Test
+    @DisplayName("Should replace and drop values in place and clear the map")
+    void testReplaceAllAndClear() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        for (long key = 0; key < 1_000; key++) {
+            map.put(key, key);
+        }
+
+        map.replaceAll(value -> value % 2 == 0 ? null : value * 10);
+
+        assertThat(map.size()).isEqualTo(500);
+        assertThat(map.get(0)).isNull();
+        assertThat(map.get(2)).isNull();
+        assertThat(map.get(999)).isEqualTo(9_990L);
+
+        map.clear();
+        assertThat(map.size()).isZero();
+        assertThat(map.get(999)).isNull();
+    }
+}
@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that deleting a film or a user removes everything that refers to it,
+ * that a snapshot restores the tables and that film and user IDs stay within the range of the indexes.
+ */
+class MemoryDatabaseTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final MemoryDatabase database = new MemoryDatabase(objectMapper, 4, "", "", false);
+    private long film;
+    private long otherFilm;
+    private long user;
+    private long friend;
+    private long follower;
+
+    @BeforeEach
+    void setUp() {
+        film = insertFilm();
+        otherFilm = insertFilm();
+        user = insertUser();
+        friend = insertUser();
+        follower = insertUser();
+
+        database.addLike(film, user);
+        database.addLike(film, friend);
+        database.addLike(otherFilm, user);
+        database.addFriend(user, friend);
+        database.addFriend(follower, user);
+        database.insertEvent(event(user));
+        database.insertEvent(event(friend));
+    }
+
+    @Test
+    @DisplayName("Should delete the likes, reviews and reactions of a deleted film")
+    void testDeleteFilmCascades() {
+        long review = insertReview(friend, film);
+        long otherReview = insertReview(friend, otherFilm);
+        database.setReaction(review, user, true);
+        database.setReaction(otherReview, user, false);
+
+        assertThat(database.deleteFilm(film)).isTrue();
+        assertThat(database.deleteFilm(film)).isFalse();
+
+        assertThat(database.films().containsKey(film)).isFalse();
+        assertThat(database.likes().getLikes(film)).isZero();
+        assertThat(database.likes().getUserIds(film)).isEmpty();
+        assertThat(database.reviews().containsKey(review)).isFalse();
+        assertThat(database.reviewLikes().containsKey(review)).isFalse();
+        assertThat(database.reviews().get(otherReview).getUseful()).isEqualTo(-1);
+        assertThat(database.likes().getUserIds(otherFilm)).containsExactly(user);
+    }
+
+    @Test
+    @DisplayName("Should delete the likes, reviews, reactions, events and friendships of a deleted user")
+    void testDeleteUserCascades() {
+        long ownReview = insertReview(user, otherFilm);
+        long friendReview = insertReview(friend, film);
+        database.setReaction(ownReview, friend, true);
+        database.setReaction(friendReview, user, true);
+        database.setReaction(friendReview, follower, true);
+
+        assertThat(database.deleteUser(user)).isTrue();
+        assertThat(database.deleteUser(user)).isFalse();
+
+        assertThat(database.users().containsKey(user)).isFalse();
+        assertThat(database.likes().getUserIds(film)).containsExactly(friend);
+        assertThat(database.likes().getLikes(otherFilm)).isZero();
+        assertThat(database.reviews().containsKey(ownReview)).isFalse();
+        assertThat(database.reviewLikes().containsKey(ownReview)).isFalse();
+        assertThat(database.reviews().get(friendReview).getUseful()).isEqualTo(1);
+        assertThat(database.events().containsKey(user)).isFalse();
+        assertThat(database.events().get(friend)).hasSize(1);
+        assertThat(database.friends().containsKey(user)).isFalse();
+        assertThat(database.followers().containsKey(user)).isFalse();
+        assertThat(database.followers().containsKey(friend)).isFalse();
+        assertThat(database.friends().containsKey(follower)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should restore films, users, likes, friendships, reviews and events from a snapshot")
+    void testSnapshotRoundTrip(@TempDir Path directory) {
+        String snapshotPath = directory.resolve("snapshot.json").toString();
+        MemoryDatabase original = new MemoryDatabase(objectMapper, 4, snapshotPath, "", false);
+        MemoryDatabase restored = new MemoryDatabase(objectMapper, 4, snapshotPath, "", false);
+        copyInto(original);
+        long review = insertReview(original, user, film);
+        original.setReaction(review, friend, false);
+
+        original.saveSnapshot();
+        restored.load();
+
+        assertThat(restored.films().size()).isEqualTo(2);
+        assertThat(restored.users().get(user).getLogin()).isEqualTo("user");
+        assertThat(restored.likes().getUserIds(film)).containsExactly(user, friend);
+        assertThat(restored.friends().get(user).contains((int) friend)).isTrue();
+        assertThat(restored.followers().get(user).contains((int) follower)).isTrue();
+        assertThat(restored.reviews().get(review).getUseful()).isEqualTo(-1);
+        assertThat(restored.events().get(user)).hasSize(1);
+        assertThat(restored.lastFilmId()).isEqualTo(otherFilm);
+    }
+
+    /**
+     * Repeats the changes of {@link #setUp()} on another database, which then has the same IDs.
+     */
+    @Test
+    @DisplayName("Should refuse film and user IDs beyond int before storing anything")
+    void testIdsBeyondIntAreRefused() {
+        ((AtomicLong) ReflectionTestUtils.getField(database, "filmIds")).set(Integer.MAX_VALUE);
+        ((AtomicLong) ReflectionTestUtils.getField(database, "userIds")).set(Integer.MAX_VALUE);
+
+        assertThatThrownBy(this::insertFilm).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(this::insertUser).isInstanceOf(IllegalStateException.class);
+        assertThat(database.films().size()).isEqualTo(2);
+        assertThat(database.users().size()).isEqualTo(3);
+    }
+
+    private void copyInto(MemoryDatabase other) {
+        for (int i = 0; i < 2; i++) {
+            Film newFilm = new Film();
+            newFilm.setName("Film");
+            newFilm.setReleaseDate(LocalDate.of(2000, 1, 1));
+            other.insertFilm(newFilm);
+        }
+        for (int i = 0; i < 3; i++) {
+            other.insertUser(user());
+        }
+        other.addLike(film, user);
+        other.addLike(film, friend);
+        other.addLike(otherFilm, user);
+        other.addFriend(user, friend);
+        other.addFriend(follower, user);
+        other.insertEvent(event(user));
+    }
+
+    private long insertFilm() {
+        Film newFilm = new Film();
+        newFilm.setName("Film");
+        newFilm.setReleaseDate(LocalDate.of(2000, 1, 1));
+        database.insertFilm(newFilm);
+        return newFilm.getId();
+    }
+
+    private long insertUser() {
+        User newUser = user();
+        database.insertUser(newUser);
+        return newUser.getId();
+    }
+
+    private long insertReview(long userId, long filmId) {
+        return insertReview(database, userId, filmId);
+    }
+
+    private static long insertReview(MemoryDatabase target, long userId, long filmId) {
+        Review review = new Review();
+        review.setContent("Review");
+        review.setIsPositive(true);
+        review.setUserId(userId);
+        review.setFilmId(filmId);
+        target.insertReview(review);
+        return review.getReviewId();
+    }
+
+    private static User user() {
+        User newUser = new User();
+        newUser.setEmail("user@mail.ru");
+        newUser.setLogin("user");
+        newUser.setName("User");
+        newUser.setBirthday(LocalDate.of(1990, 1, 1));
+        return newUser;
+    }
+
+    private static UserEvent event(long userId) {
+        UserEvent event = new UserEvent();
+        event.setUserId(userId);
+        event.setEventType("FRIEND");
+        event.setOperation("ADD");
+        event.setEntityId(1L);
+        event.setTimestamp(0L);
+        return event;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.dal.memory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLongMapTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    @DisplayName("Should spread keys over stripes and keep every entry")
+    void testBasicOperations() {
+        StripedLongMap<Long> map = new StripedLongMap<>(5);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, key);
+        }
+
+        assertThat(map.size()).isEqualTo(10_000);
+        assertThat(map.containsKey(9_999)).isTrue();
+        assertThat(map.remove(9_999)).isEqualTo(9_999L);
+        assertThat(map.containsKey(9_999)).isFalse();
+        assertThat(map.compute(1, value -> null)).isEqualTo(1L);
+        assertThat(map.<Long>read(2, value -> value * 2)).isEqualTo(4L);
+        assertThat(map.values()).hasSize(9_998).doesNotContain(1L, 9_999L);
+
+        map.replaceAll(value -> value < 100 ? value : null);
+        assertThat(map.size()).isEqualTo(99);
+
+        map.clear();
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should not lose concurrent updates of the same keys")
+    void testConcurrentCompute() throws Exception {
+        StripedLongMap<long[]> map = new StripedLongMap<>(4);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    map.compute(i % 64, counter -> {
+                        long[] updated = counter != null ? counter : new long[1];
+                        updated[0]++;
+                        return updated;
+                    });
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        long total = 0;
+        for (long[] counter : map.values()) {
+            total += counter[0];
+        }
+        assertThat(total).isEqualTo(THREADS * 100_000L);
+    }
+
+    @Test
+    @DisplayName("Should lock two keys in any order without deadlock")
+    void testWriteLockedPairs() throws Exception {
+        StripedLongMap<Long> map = new StripedLongMap<>(16);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean reversed = t % 2 == 0;
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    long key = i % 100;
+                    long otherKey = (i * 7 + 13) % 100;
+                    long first = reversed ? otherKey : key;
+                    long second = reversed ? key : otherKey;
+                    map.writeLocked(first, second, () -> {
+                        // Перенос единицы между ключами: сумма сохраняется, если пара заблокирована целиком
+                        map.compute(first, value -> (value == null ? 0 : value) - 1);
+                        map.compute(second, value -> (value == null ? 0 : value) + 1);
+                        return null;
+                    });
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(map.values().stream().mapToLong(Long::longValue).sum()).isZero();
+    }
+}
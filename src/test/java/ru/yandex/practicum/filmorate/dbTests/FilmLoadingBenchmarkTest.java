@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.dbTests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.film.FilmSqlConstants;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the result-set rows and the latency of loading the whole catalog with the former single query,
+ * which joined genres and likes and grouped them, and with the current base query plus batched genre queries.
+ * <p>
+ * Seeding 100 000 films and 10 000 000 likes takes minutes and the database cache takes a gigabyte, so the
+ * benchmark runs only on request:
+ * {@code mvn test -Dtest=FilmLoadingBenchmarkTest -Dfilmorate.benchmark=true -DargLine=-Xmx3g}.
+ * The sizes can be changed with {@code -Dfilmorate.benchmark.films} and
+ * {@code -Dfilmorate.benchmark.likes-per-user}.
+ * </p>
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "filmorate.benchmark", matches = "true")
+class FilmLoadingBenchmarkTest {
+
+    // Запрос загрузки всех фильмов до разделения: жанры × лайки строк на фильм до группировки
+    private static final String SQL_SELECT_ALL_FILMS_JOINED = """
+            SELECT f.film_id, f.film_name, f.film_description, f.film_release_date,
+               f.film_duration, m.mpa_rating_id, m.mpa_rating_name,
+               d.director_id, d.director_name, g.genre_id, g.genre_name,
+               COUNT(ufl.user_id) AS likes_count
+            FROM films f
+            LEFT JOIN mpa_ratings m ON f.film_mpa_rating_id = m.mpa_rating_id
+            LEFT JOIN directors d ON f.film_director_id = d.director_id
+            LEFT JOIN film_genres fg ON f.film_id = fg.film_id
+            LEFT JOIN genres g ON fg.genre_id = g.genre_id
+            LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
+            GROUP BY f.film_id, m.mpa_rating_id, m.mpa_rating_name, g.genre_id, g.genre_name
+            """;
+    // Строк соединения до группировки: жанры × лайки каждого фильма, хотя бы по одной
+    private static final String SQL_COUNT_JOINED_ROWS = """
+            SELECT SUM(GREATEST((SELECT COUNT(*) FROM film_genres fg WHERE fg.film_id = f.film_id), 1)
+                       * GREATEST(f.likes_count, 1))
+            FROM films f
+            """;
+    private static final int GENRES_PER_FILM = 3;
+    private static final int IN_BATCH_SIZE = 1000;
+    private static final int SEED_USERS_PER_STATEMENT = 10_000;
+
+    private final int films = Integer.getInteger("filmorate.benchmark.films", 100_000);
+    private final int likesPerUser = Integer.getInteger("filmorate.benchmark.likes-per-user", 100);
+    private final int users = films;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should load the catalog with fewer rows and faster than the joined query")
+    void testBatchedLoadAgainstJoinedQuery() {
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            // Кэш страниц вмещает всю базу, так что оба варианта меряют сам запрос, а не чтение с диска;
+            // без повторного использования результатов H2 вернул бы второй проход из кэша
+            dataSource.setJdbcUrl("jdbc:h2:file:" + directory.resolve("films")
+                    + ";CACHE_SIZE=1048576;OPTIMIZE_REUSE_RESULTS=FALSE");
+            new SchemaMigrator(dataSource, "classpath:db/migration").migrate();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            long seedStarted = System.nanoTime();
+            seed(jdbcTemplate);
+            log.info("Seeded {} films, {} genre links and {} likes in {} ms", films, films * GENRES_PER_FILM,
+                    (long) users * likesPerUser, (System.nanoTime() - seedStarted) / 1_000_000);
+
+            // Первый проход прогревает JIT и кэш страниц H2
+            long[] joined = loadJoined(jdbcTemplate);
+            long[] batched = loadBatched(jdbcTemplate);
+            joined = loadJoined(jdbcTemplate);
+            batched = loadBatched(jdbcTemplate);
+
+            long joinedRows = jdbcTemplate.queryForObject(SQL_COUNT_JOINED_ROWS, Long.class);
+            log.info("Catalog load, {} films, {} likes: joined query {} rows grouped from {} in {} ms, "
+                            + "base and genre queries {} rows in {} ms", films, (long) users * likesPerUser,
+                    joined[0], joinedRows, joined[1], batched[0], batched[1]);
+            assertThat(joined[0]).isEqualTo((long) films * GENRES_PER_FILM);
+            assertThat(joinedRows).isEqualTo((long) films * GENRES_PER_FILM * likesPerUser);
+            assertThat(batched[0]).isEqualTo((long) films * (1 + GENRES_PER_FILM));
+            assertThat(batched[1]).isLessThan(joined[1]);
+        }
+    }
+
+    /**
+     * @return the number of rows and the milliseconds spent.
+     */
+    private static long[] loadJoined(JdbcTemplate jdbcTemplate) {
+        AtomicLong rows = new AtomicLong();
+        long started = System.nanoTime();
+        jdbcTemplate.query(SQL_SELECT_ALL_FILMS_JOINED, rs -> {
+            rows.incrementAndGet();
+        });
+        return new long[]{rows.get(), (System.nanoTime() - started) / 1_000_000};
+    }
+
+    /**
+     * Reads what {@code FilmDbStorage.getAllFilms} reads: the base rows, then the genres in {@code IN} batches.
+     *
+     * @return the number of rows and the milliseconds spent.
+     */
+    private static long[] loadBatched(JdbcTemplate jdbcTemplate) {
+        AtomicLong rows = new AtomicLong();
+        List<Long> filmIds = new ArrayList<>();
+        long started = System.nanoTime();
+        jdbcTemplate.query(FilmSqlConstants.SQL_SELECT_ALL_FILMS, rs -> {
+            rows.incrementAndGet();
+            filmIds.add(rs.getLong("film_id"));
+        });
+        for (int from = 0; from < filmIds.size(); from += IN_BATCH_SIZE) {
+            List<Long> batch = filmIds.subList(from, Math.min(from + IN_BATCH_SIZE, filmIds.size()));
+            String placeholders = batch.stream().map(id -> "?").collect(Collectors.joining(","));
+            jdbcTemplate.query(String.format(FilmSqlConstants.SQL_SELECT_GENRES_FOR_FILMS, placeholders), rs -> {
+                rows.incrementAndGet();
+            }, batch.toArray());
+        }
+        return new long[]{rows.get(), (System.nanoTime() - started) / 1_000_000};
+    }
+
+    /**
+     * Seeds the catalog with set-based inserts; row-by-row batches would take most of the run.
+     */
+    private void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("""
+                INSERT INTO films (film_name, film_description, film_release_date, film_duration, film_mpa_rating_id)
+                SELECT 'Film ' || X, 'Description ' || X, DATEADD('YEAR', MOD(X, 70), DATE '1950-01-01'),
+                       90 + MOD(X, 60), 1 + MOD(X, 5)
+                FROM SYSTEM_RANGE(0, ?)
+                """, films - 1);
+        long firstFilmId = jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM films", Long.class);
+        jdbcTemplate.update("""
+                INSERT INTO film_genres (film_id, genre_id)
+                SELECT ? + f.X, 1 + MOD(f.X + g.X, 6)
+                FROM SYSTEM_RANGE(0, ?) f CROSS JOIN SYSTEM_RANGE(0, ?) g
+                """, firstFilmId, films - 1, GENRES_PER_FILM - 1);
+        jdbcTemplate.update("""
+                INSERT INTO users (user_email, user_login, user_name, user_birthday)
+                SELECT 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01'
+                FROM SYSTEM_RANGE(0, ?)
+                """, users - 1);
+        long firstUserId = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class);
+        // Шаг между фильмами одного пользователя не меньше единицы, так что лайки пользователя не повторяются,
+        // а частями вставка идёт быстрее, чем одной транзакцией на миллионы строк
+        int step = films / likesPerUser;
+        for (int from = 0; from < users; from += SEED_USERS_PER_STATEMENT) {
+            jdbcTemplate.update("""
+                    INSERT INTO user_film_likes (film_id, user_id)
+                    SELECT ? + MOD(u.X + k.X * ?, ?), ? + u.X
+                    FROM SYSTEM_RANGE(?, ?) u CROSS JOIN SYSTEM_RANGE(0, ?) k
+                    """, firstFilmId, step, films, firstUserId, from,
+                    Math.min(from + SEED_USERS_PER_STATEMENT, users) - 1, likesPerUser - 1);
+        }
+        jdbcTemplate.update(FilmSqlConstants.SQL_RECONCILE_LIKES_COUNT);
+    }
+}
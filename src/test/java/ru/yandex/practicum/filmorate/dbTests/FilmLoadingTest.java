@@ -0,0 +1,180 @@
+package ru.yandex.practicum.filmorate.dbTests;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.dal.feed.FeedEventWriter;
+import ru.yandex.practicum.filmorate.dal.film.FilmCache;
+import ru.yandex.practicum.filmorate.dal.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dal.film.FilmLikesReconciler;
+import ru.yandex.practicum.filmorate.dal.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.dal.film.FilmSqlConstants;
+import ru.yandex.practicum.filmorate.dal.mappers.DirectorRowMapper;
+import ru.yandex.practicum.filmorate.dal.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.dal.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.dal.mappers.MpaRowMapper;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+
+/**
+ * Regression tests for the film loaders: one base row per film, genres merged from batched queries.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({SchemaMigrator.class, FilmDbStorage.class, FilmRowMapper.class, MpaRowMapper.class, GenreRowMapper.class,
+        DirectorRowMapper.class, FeedDbStorage.class, FeedEventWriter.class, FilmCache.class, FilmSearchIndex.class,
+        FilmLikesReconciler.class})
+class FilmLoadingTest {
+
+    private static final int FILMS = 3000;
+    private static final int USERS = 300;
+    private static final int LIKES_PER_USER = 40;
+    private static final int GENRES_PER_FILM = 3;
+
+    private final FilmDbStorage filmDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Long, Integer> expectedLikes = new HashMap<>();
+    private long firstFilmId;
+
+    @Autowired
+    public FilmLoadingTest(FilmDbStorage filmDbStorage, JdbcTemplate jdbcTemplate) {
+        this.filmDbStorage = filmDbStorage;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            films.add(new Object[]{"Film " + i, "Description " + i, Date.valueOf(LocalDate.of(1950 + i % 70, 1, 1)),
+                    90 + i % 60, 1 + i % 5});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO films (film_name, film_description, film_release_date, film_duration, "
+                + "film_mpa_rating_id) VALUES (?, ?, ?, ?, ?)", films);
+        firstFilmId = jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM films", Long.class);
+
+        List<Object[]> genres = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            for (int g = 0; g < GENRES_PER_FILM; g++) {
+                genres.add(new Object[]{firstFilmId + i, 1 + (i + g) % 6});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", genres);
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{"user" + i + "@mail.ru", "user" + i, "User " + i, Date.valueOf("1990-01-01")});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (user_email, user_login, user_name, user_birthday) "
+                + "VALUES (?, ?, ?, ?)", users);
+        long firstUserId = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class);
+
+        // Квадраты k < 40 различны по модулю FILMS, так что пользователь не ставит лайк дважды
+        List<Object[]> likes = new ArrayList<>();
+        for (int u = 0; u < USERS; u++) {
+            for (int k = 0; k < LIKES_PER_USER; k++) {
+                long filmId = firstFilmId + (u + (long) k * k) % FILMS;
+                likes.add(new Object[]{filmId, firstUserId + u});
+                expectedLikes.merge(filmId, 1, Integer::sum);
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_film_likes (film_id, user_id) VALUES (?, ?)", likes);
+        jdbcTemplate.update(FilmSqlConstants.SQL_RECONCILE_LIKES_COUNT);
+    }
+
+    @Test
+    @DisplayName("Should return one base row per film regardless of genres and likes")
+    void testBaseQueryReturnsOneRowPerFilm() {
+        AtomicInteger rows = new AtomicInteger();
+        jdbcTemplate.query(FilmSqlConstants.SQL_SELECT_ALL_FILMS, rs -> {
+            rows.incrementAndGet();
+        });
+        Integer joinedRows = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM films f
+                LEFT JOIN film_genres fg ON f.film_id = fg.film_id
+                LEFT JOIN user_film_likes ufl ON f.film_id = ufl.film_id
+                """, Integer.class);
+
+        assertThat(rows.get()).isEqualTo(FILMS);
+        assertThat(joinedRows).isGreaterThan(GENRES_PER_FILM * FILMS);
+    }
+
+    @Test
+    @DisplayName("Should load all films with their genres and like counts")
+    void testGetAllFilms() {
+        Collection<Film> films = assertTimeout(Duration.ofSeconds(10), filmDbStorage::getAllFilms);
+
+        assertThat(films).hasSize(FILMS);
+        films.forEach(film -> {
+            assertThat(film.getGenres()).hasSize(GENRES_PER_FILM)
+                    .extracting(Genre::getName)
+                    .doesNotContainNull();
+            assertThat(film.getLikes()).isEqualTo(expectedLikes.getOrDefault(film.getId(), 0));
+            assertThat(film.getMpa().getName()).isNotBlank();
+        });
+    }
+
+    @Test
+    @DisplayName("Should load a page of films with their genres and like counts")
+    void testGetFilmsPage() {
+        Collection<Film> page = filmDbStorage.getFilms(firstFilmId + 99, 50);
+
+        assertThat(page).hasSize(50)
+                .extracting(Film::getId)
+                .isSorted()
+                .startsWith(firstFilmId + 100);
+        page.forEach(film -> {
+            assertThat(film.getGenres()).hasSize(GENRES_PER_FILM);
+            assertThat(film.getLikes()).isEqualTo(expectedLikes.getOrDefault(film.getId(), 0));
+        });
+    }
+
+    @Test
+    @DisplayName("Should load films by IDs across several genre batches")
+    void testGetFilmsByIds() {
+        List<Long> filmIds = new ArrayList<>();
+        for (long id = firstFilmId; id < firstFilmId + FILMS; id += 2) {
+            filmIds.add(id);
+        }
+
+        List<Film> films = filmDbStorage.getFilmsByIds(filmIds);
+
+        assertThat(films).extracting(Film::getId).containsExactlyElementsOf(filmIds);
+        films.forEach(film -> assertThat(film.getGenres()).hasSize(GENRES_PER_FILM));
+    }
+
+    @Test
+    @DisplayName("Should stream all films in ID order page by page")
+    void testStreamAllFilms() {
+        List<Film> films = new ArrayList<>();
+
+        filmDbStorage.streamAllFilms(films::add);
+
+        assertThat(films).hasSize(FILMS)
+                .extracting(Film::getId)
+                .isSorted()
+                .doesNotHaveDuplicates();
+        films.forEach(film -> assertThat(film.getGenres()).hasSize(GENRES_PER_FILM));
+    }
+}
@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.dbTests;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dal.film.FilmSqlConstants;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mixed like/read load against a file database, once with the default pool and URL and once with the
+ * settings of the production profile, after a warm-up run. Logs the throughput of both runs; since the
+ * numbers depend on the machine, the test only checks that both settings sustain the load without errors.
+ */
+@Slf4j
+class ProdProfileLoadTest {
+
+    private static final int FILMS = 1_000;
+    private static final int USERS = 1_000;
+    private static final int CLIENTS = 32;
+    private static final int LIKE_PERCENT = 20;
+    private static final long RUN_MILLIS = 3_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should serve mixed likes and reads with the production pool and H2 settings")
+    void testMixedLoad() throws Exception {
+        String prodUrl = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application-prod.properties"))
+                .getProperty("spring.datasource.url");
+        String prodOptions = prodUrl.substring(prodUrl.indexOf(';'));
+        int prodPoolSize = 2 * Runtime.getRuntime().availableProcessors() + 2;
+
+        // Первый прогон только прогревает JIT, иначе второй вариант всегда выигрывает
+        run("jdbc:h2:file:" + directory.resolve("warmup"), 10);
+        long defaultOps = run("jdbc:h2:file:" + directory.resolve("default"), 10);
+        long prodOps = run("jdbc:h2:file:" + directory.resolve("prod") + prodOptions, prodPoolSize);
+
+        log.info("Mixed load, {}% likes, {} clients: default {} ops/s, prod (pool {}) {} ops/s",
+                LIKE_PERCENT, CLIENTS, defaultOps * 1000 / RUN_MILLIS, prodPoolSize, prodOps * 1000 / RUN_MILLIS);
+        assertThat(defaultOps).isPositive();
+        assertThat(prodOps).isPositive();
+    }
+
+    /**
+     * Seeds a database and runs the load for {@value #RUN_MILLIS} ms.
+     *
+     * @return the number of completed operations.
+     */
+    private long run(String url, int poolSize) throws Exception {
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl(url);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMinimumIdle(poolSize);
+            new SchemaMigrator(dataSource, "classpath:db/migration").migrate();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            TransactionTemplate transactionTemplate =
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            long[] firstIds = seed(jdbcTemplate);
+
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            long deadline = System.currentTimeMillis() + RUN_MILLIS;
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < CLIENTS; i++) {
+                int client = i;
+                results.add(clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long ops = 0;
+                    while (System.currentTimeMillis() < deadline) {
+                        long filmId = firstIds[0] + random.nextInt(FILMS);
+                        if (random.nextInt(100) < LIKE_PERCENT) {
+                            // У каждого клиента свои пользователи, чтобы лайки не сталкивались по ключу
+                            long userId = firstIds[1] + client + (long) CLIENTS * random.nextInt(USERS / CLIENTS);
+                            transactionTemplate.executeWithoutResult(status -> toggleLike(jdbcTemplate, filmId, userId));
+                        } else {
+                            jdbcTemplate.queryForList(FilmSqlConstants.SQL_SELECT_FILM_BY_ID, filmId);
+                        }
+                        ops++;
+                    }
+                    return ops;
+                }));
+            }
+            long ops = 0;
+            for (Future<Long> result : results) {
+                ops += result.get();
+            }
+            clients.shutdown();
+            assertThat(clients.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+            return ops;
+        }
+    }
+
+    private static void toggleLike(JdbcTemplate jdbcTemplate, long filmId, long userId) {
+        Integer liked = jdbcTemplate.queryForObject(FilmSqlConstants.SQL_SELECT_LIKE, Integer.class, filmId, userId);
+        if (liked == null || liked == 0) {
+            jdbcTemplate.update(FilmSqlConstants.SQL_INSERT_LIKE, filmId, userId);
+            jdbcTemplate.update(FilmSqlConstants.SQL_INCREMENT_LIKES_COUNT, filmId);
+        } else {
+            jdbcTemplate.update(FilmSqlConstants.SQL_DELETE_LIKE, filmId, userId);
+            jdbcTemplate.update(FilmSqlConstants.SQL_DECREMENT_LIKES_COUNT, filmId);
+        }
+    }
+
+    /**
+     * @return the first film ID and the first user ID.
+     */
+    private static long[] seed(JdbcTemplate jdbcTemplate) {
+        List<Object[]> films = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            films.add(new Object[]{"Film " + i, "Description " + i, Date.valueOf(LocalDate.of(1950 + i % 70, 1, 1)),
+                    90 + i % 60, 1 + i % 5});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO films (film_name, film_description, film_release_date, film_duration, "
+                + "film_mpa_rating_id) VALUES (?, ?, ?, ?, ?)", films);
+
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{"user" + i + "@mail.ru", "user" + i, "User " + i, Date.valueOf("1990-01-01")});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (user_email, user_login, user_name, user_birthday) "
+                + "VALUES (?, ?, ?, ?)", users);
+
+        return new long[]{
+                jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM films", Long.class),
+                jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class)
+        };
+    }
+}
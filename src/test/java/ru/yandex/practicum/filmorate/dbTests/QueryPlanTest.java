@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.dbTests;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dal.feed.FeedSqlConstants;
+import ru.yandex.practicum.filmorate.dal.film.FilmSqlConstants;
+import ru.yandex.practicum.filmorate.dal.migration.SchemaMigrator;
+import ru.yandex.practicum.filmorate.dal.user.UserSqlConstants;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks with {@code EXPLAIN} that the friends, likes and feed lookups are served by indexes.
+ * Primary key and foreign key indexes get generated names, so they are looked up in the information schema.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(SchemaMigrator.class)
+class QueryPlanTest {
+
+    private static final String RECIPIENT_INDEX = "IDX_USER_FRIENDSHIPS_RECIPIENT";
+    private static final String EVENTS_INDEX = "IDX_USER_EVENTS_USER_EVENT";
+    private static final String EVENTS_FORWARD_INDEX = "IDX_USER_EVENTS_USER_EVENT_ASC";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public QueryPlanTest(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Test
+    @DisplayName("Should read friends by the primary key and the recipient index")
+    void testFriendsQueryUsesIndexes() {
+        String plan = explain(UserSqlConstants.SELECT_USER_FRIENDS, 1, 1);
+
+        assertThat(plan).contains(primaryKey("USER_FRIENDSHIPS") + ": REQUESTER_ID = ")
+                .contains(RECIPIENT_INDEX + ": RECIPIENT_ID = ")
+                .contains(primaryKey("USERS") + ": USER_ID = UF.RECIPIENT_ID")
+                .contains(primaryKey("USERS") + ": USER_ID = UF.REQUESTER_ID")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Should read friend IDs for common friends without touching the users table")
+    void testFriendIdsQueryUsesIndexes() {
+        // Общие друзья считаются по двум таким выборкам
+        String plan = explain(UserSqlConstants.SELECT_USER_FRIEND_IDS, 1, 1);
+
+        assertThat(plan).contains(primaryKey("USER_FRIENDSHIPS") + ": REQUESTER_ID = ")
+                .contains(RECIPIENT_INDEX + ": RECIPIENT_ID = ")
+                .doesNotContain("USERS\"")
+                .doesNotContain("tableScan");
+        assertThat(explain(UserSqlConstants.SELECT_USER_FOLLOWER_IDS, 1, 1))
+                .contains(RECIPIENT_INDEX + ": RECIPIENT_ID = ")
+                .contains(indexStartingWith("USER_FRIENDSHIPS", "REQUESTER_ID") + ": REQUESTER_ID = ")
+                .doesNotContain("tableScan");
+        assertThat(explain(UserSqlConstants.SELECT_USER_FRIENDSHIPS, 1, 2, 2, 1))
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Should page the feed both ways by the user events index")
+    void testFeedPagesUseIndex() {
+        assertThat(explain(UserSqlConstants.SELECT_USER_EVENTS_PAGE, 1, Long.MAX_VALUE, 10))
+                .contains(EVENTS_INDEX + ": USER_ID = ")
+                .contains("AND EVENT_ID < ")
+                .contains("index sorted")
+                .doesNotContain("tableScan");
+        assertThat(explain(UserSqlConstants.SELECT_USER_EVENTS_PAGE_AFTER, 1, 0, 10))
+                .contains(EVENTS_FORWARD_INDEX + ": USER_ID = ")
+                .contains("AND EVENT_ID > ")
+                .contains("index sorted")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Should find the events over the per-user limit from the user events index")
+    void testRetentionQueriesUseIndex() {
+        assertThat(explain(FeedSqlConstants.SELECT_USERS_OVER_LIMIT, 10))
+                .contains("group sorted")
+                .doesNotContain("tableScan");
+        assertThat(explain(FeedSqlConstants.SELECT_LAST_EVENT_OVER_LIMIT, 1, 10))
+                .contains(EVENTS_INDEX + ": USER_ID = ")
+                .contains("index sorted")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    @DisplayName("Should look up likes by the primary key and by the film index")
+    void testLikesQueriesUseIndexes() {
+        String likesPrimaryKey = primaryKey("USER_FILM_LIKES");
+
+        assertThat(explain(FilmSqlConstants.SQL_SELECT_LIKE, 1, 1))
+                .contains(likesPrimaryKey + ": FILM_ID = ")
+                .contains("AND USER_ID = ");
+        assertThat(explain(FilmSqlConstants.SQL_SELECT_FILM_IDS_LIKED_BY_USER, 1))
+                .contains(likesPrimaryKey + ": USER_ID = ");
+        assertThat(explain(FilmSqlConstants.SQL_DECREMENT_LIKES_COUNT_BY_USER, 1))
+                .contains(primaryKey("FILMS") + ": FILM_ID IN(")
+                .contains(likesPrimaryKey + ": USER_ID = ")
+                .doesNotContain("tableScan");
+        assertThat(explain(FilmSqlConstants.SQL_RECONCILE_LIKES_COUNT))
+                .contains(indexStartingWith("USER_FILM_LIKES", "FILM_ID") + ": FILM_ID = F.FILM_ID");
+    }
+
+    private String explain(String sql, Object... args) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+    }
+
+    private String primaryKey(String table) {
+        return "PUBLIC." + jdbcTemplate.queryForObject("""
+                SELECT index_name FROM information_schema.indexes
+                WHERE table_name = ? AND index_type_name = 'PRIMARY KEY'
+                """, String.class, table);
+    }
+
+    private String indexStartingWith(String table, String column) {
+        return "PUBLIC." + jdbcTemplate.queryForObject("""
+                SELECT i.index_name
+                FROM information_schema.indexes i
+                JOIN information_schema.index_columns c
+                  ON c.index_name = i.index_name AND c.table_name = i.table_name
+                WHERE i.table_name = ? AND i.index_type_name = 'INDEX'
+                  AND c.column_name = ? AND c.ordinal_position = 1
+                """, String.class, table, column);
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.dal.user.UserStorage;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedStreamServiceTest {
+
+    private static final int QUEUE_SIZE = 4;
+
+    private final UserStorage userStorage = mock(UserStorage.class);
+    private final FeedStreamService service = new FeedStreamService(userStorage, QUEUE_SIZE, 8, 60_000, 1);
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    @DisplayName("Should catch up page by page from the last event however many were missed")
+    void testCatchUpPagesForward() {
+        when(userStorage.getUserEventsAfter(1L, 10L, QUEUE_SIZE)).thenReturn(events(11, 14));
+        when(userStorage.getUserEventsAfter(1L, 14L, QUEUE_SIZE)).thenReturn(events(15, 18));
+        when(userStorage.getUserEventsAfter(1L, 18L, QUEUE_SIZE)).thenReturn(events(19, 20));
+
+        service.subscribe(1, 10L);
+
+        InOrder pages = inOrder(userStorage);
+        pages.verify(userStorage, timeout(5_000)).getUserEventsAfter(1L, 10L, QUEUE_SIZE);
+        pages.verify(userStorage, timeout(5_000)).getUserEventsAfter(1L, 14L, QUEUE_SIZE);
+        pages.verify(userStorage, timeout(5_000)).getUserEventsAfter(1L, 18L, QUEUE_SIZE);
+        verify(userStorage, never()).getUserEventsAfter(1L, 20L, QUEUE_SIZE);
+        verify(userStorage, never()).getUserEvents(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should not read the storage for a new stream")
+    void testNewStreamDoesNotCatchUp() throws InterruptedException {
+        service.subscribe(1, null);
+        service.onUserEvent(events(1, 1).get(0));
+        Thread.sleep(200);
+
+        verify(userStorage, never()).getUserEventsAfter(anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should send an event committed out of ID order during the catch-up")
+    void testCatchUpKeepsEventsCommittedOutOfOrder() throws InterruptedException {
+        // Событие 12 фиксируется после чтения страницы, но раньше него в очередь попадает уже прочитанное 13
+        when(userStorage.getUserEventsAfter(1L, 10L, QUEUE_SIZE)).thenAnswer(invocation -> {
+            service.onUserEvent(events(13, 13).get(0));
+            service.onUserEvent(events(12, 12).get(0));
+            return List.of(events(11, 11).get(0), events(13, 13).get(0));
+        });
+
+        SseEmitter emitter = service.subscribe(1, 10L);
+
+        List<String> sentIds = sentIds(emitter);
+        for (int attempt = 0; attempt < 50 && sentIds.size() < 3; attempt++) {
+            Thread.sleep(100);
+            sentIds = sentIds(emitter);
+        }
+        assertThat(sentIds).containsExactly("11", "13", "12");
+    }
+
+    /**
+     * Reads the IDs of the events an emitter buffered; without a response it keeps everything sent to it.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> sentIds(SseEmitter emitter) {
+        List<String> ids = new ArrayList<>();
+        synchronized (emitter) {
+            Set<DataWithMediaType> sent =
+                    (Set<DataWithMediaType>) ReflectionTestUtils.getField(emitter, "earlySendAttempts");
+            for (DataWithMediaType data : sent) {
+                if (data.getData() instanceof String text && text.startsWith("id:")) {
+                    ids.add(text.substring(3, text.indexOf('\n')));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static List<UserEvent> events(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId).mapToObj(eventId -> {
+            UserEvent event = new UserEvent();
+            event.setEventId(eventId);
+            event.setUserId(1L);
+            event.setTimestamp(eventId);
+            event.setEventType("LIKE");
+            event.setOperation("ADD");
+            event.setEntityId(1L);
+            return event;
+        }).toList();
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dal.film.FilmStorage;
+import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationServiceTest {
+
+    private final FilmStorage filmStorage = mock(FilmStorage.class);
+    private final FilmService filmService = mock(FilmService.class);
+    private RecommendationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RecommendationService(filmStorage, filmService, mock(FilmMapper.class), 60_000);
+        when(filmStorage.getRecommendedFilmIds(anyLong(), anyInt())).thenReturn(List.of(10L, 11L));
+        when(filmStorage.getFilmsByIds(anyList())).thenReturn(List.of(new Film(), new Film()));
+    }
+
+    @Test
+    @DisplayName("Should precompute recommendations only for users who asked for them")
+    void testOnlyActiveUsersAreComputed() {
+        service.getRecommendations(1, 10);
+        verify(filmService).getRecommendations(1L, 10);
+
+        service.refreshSnapshot();
+        service.getRecommendations(1, 10);
+
+        verify(filmStorage).getRecommendedFilmIds(eq(1L), anyInt());
+        verify(filmStorage, never()).getRecommendedFilmIds(eq(2L), anyInt());
+        verify(filmService, times(1)).getRecommendations(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should skip the refresh when no like changed")
+    void testRefreshWithoutLikesComputesNothing() {
+        service.getRecommendations(1, 10);
+        service.refreshSnapshot();
+        service.refreshSnapshot();
+        service.refreshSnapshot();
+
+        verify(filmStorage, times(1)).getRecommendedFilmIds(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should recompute the liking user and active users who liked the same film")
+    void testLikeRecomputesAffectedActiveUsers() {
+        service.getRecommendations(1, 10);
+        service.getRecommendations(2, 10);
+        service.getRecommendations(4, 10);
+        service.refreshSnapshot();
+        when(filmStorage.getUserIdsWhoLiked(20L)).thenReturn(List.of(1L, 2L, 3L));
+
+        service.onUserEvent(likeEvent(2, 20));
+        service.getRecommendations(2, 10);
+        service.refreshSnapshot();
+
+        verify(filmStorage, times(2)).getRecommendedFilmIds(eq(1L), anyInt());
+        verify(filmStorage, times(2)).getRecommendedFilmIds(eq(2L), anyInt());
+        verify(filmStorage, never()).getRecommendedFilmIds(eq(3L), anyInt());
+        verify(filmStorage, times(1)).getRecommendedFilmIds(eq(4L), anyInt());
+        verify(filmService, times(2)).getRecommendations(2L, 10);
+    }
+
+    @Test
+    @DisplayName("Should fall back and recompute when recommended films were deleted")
+    void testDeletedFilmsMarkUserStale() {
+        service.getRecommendations(1, 10);
+        service.refreshSnapshot();
+        when(filmStorage.getFilmsByIds(anyList())).thenReturn(List.of(new Film()));
+
+        service.getRecommendations(1, 10);
+        service.refreshSnapshot();
+
+        verify(filmService, times(2)).getRecommendations(1L, 10);
+        verify(filmStorage, times(2)).getRecommendedFilmIds(eq(1L), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should recompute users sharing films with a deleted user")
+    void testRemovedUserRecomputesNeighbours() {
+        service.getRecommendations(1, 10);
+        service.getRecommendations(5, 10);
+        service.refreshSnapshot();
+        when(filmStorage.getLikedFilmIds(5L)).thenReturn(List.of(30L));
+        when(filmStorage.getUserIdsWhoLiked(30L)).thenReturn(List.of(1L, 5L));
+
+        service.removeUser(5);
+        service.refreshSnapshot();
+
+        verify(filmStorage, times(2)).getRecommendedFilmIds(eq(1L), anyInt());
+        verify(filmStorage, times(1)).getRecommendedFilmIds(eq(5L), anyInt());
+    }
+
+    private static UserEvent likeEvent(long userId, long filmId) {
+        UserEvent event = new UserEvent();
+        event.setUserId(userId);
+        event.setEventType("LIKE");
+        event.setOperation("ADD");
+        event.setEntityId(filmId);
+        return event;
+    }
+}
@@ -0,0 +1,205 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.yandex.practicum.filmorate.dal.user.UserStorage;
+import ru.yandex.practicum.filmorate.model.UserEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Runs interleaved writes and timeline reads over friend graphs with different follower distributions,
+ * checks every page against a merge of the friends' feeds and logs how many feed reads the timelines
+ * saved compared to fan-out on read. Timings depend on the machine and are only logged.
+ */
+@Slf4j
+class TimelineServiceTest {
+
+    private static final int USERS = 2_000;
+    private static final int FRIENDS_PER_USER = 20;
+    private static final int READERS = 500;
+    private static final int EVENTS = 20_000;
+    private static final int PAGE = 20;
+    private static final int CAPACITY = 200;
+    private static final int CELEBRITY_FOLLOWERS = 100;
+
+    private final Random random = new Random(23);
+    private final Map<Long, List<Long>> friends = new HashMap<>();
+    private final Map<Long, List<Long>> followers = new HashMap<>();
+    private final Map<Long, List<UserEvent>> feeds = new HashMap<>();
+    private final AtomicLong feedReads = new AtomicLong();
+
+    /**
+     * How users choose whom to follow.
+     */
+    enum Distribution {
+        /**
+         * Every user is followed by about as many users as they follow, nobody is a celebrity.
+         */
+        UNIFORM,
+        /**
+         * Users are followed with a probability falling as 1/rank, so a few have hundreds of followers.
+         */
+        ZIPF,
+        /**
+         * Everybody follows the same five users and a few random ones.
+         */
+        CELEBRITIES
+    }
+
+    @ParameterizedTest
+    @EnumSource(Distribution.class)
+    @DisplayName("Should serve friends' events newest first whatever the distribution of followers")
+    void testTimelineMatchesFriendsFeeds(Distribution distribution) {
+        buildGraph(distribution);
+        UserStorage userStorage = storage();
+        TimelineService service = new TimelineService(userStorage, CAPACITY, CELEBRITY_FOLLOWERS, USERS);
+
+        long fanOutOnReadReads = 0;
+        long serviceNanos = 0;
+        for (long eventId = 1; eventId <= EVENTS; eventId++) {
+            UserEvent event = event(eventId, 1 + random.nextInt(USERS));
+            feeds.computeIfAbsent(event.getUserId(), id -> new ArrayList<>()).add(event);
+            long readerId = 1 + random.nextInt(READERS);
+            // Каждая десятая страница старше буфера и читается из лент друзей
+            long before = eventId % 10 == 0 ? 1 + random.nextInt((int) eventId) : Long.MAX_VALUE;
+
+            long started = System.nanoTime();
+            service.onUserEvent(event);
+            List<UserEvent> page = service.getTimeline(readerId, before, PAGE);
+            serviceNanos += System.nanoTime() - started;
+            fanOutOnReadReads += friends.get(readerId).size();
+
+            assertThat(page).extracting(UserEvent::getEventId)
+                    .as("timeline of user %d before %d", readerId, before)
+                    .containsExactlyElementsOf(expectedPage(readerId, before));
+        }
+        long elapsedMillis = Math.max(1, serviceNanos / 1_000_000);
+
+        long celebrities = followers.values().stream().filter(ids -> ids.size() > CELEBRITY_FOLLOWERS).count();
+        log.info("Timeline, {} followers ({} celebrities): {} feed reads per page, fan-out on read {}, "
+                        + "{} writes and pages/s", distribution, celebrities,
+                String.format("%.1f", (double) feedReads.get() / EVENTS),
+                String.format("%.1f", (double) fanOutOnReadReads / EVENTS), EVENTS * 1000L / elapsedMillis);
+        assertThat(feedReads.get()).isLessThan(fanOutOnReadReads);
+        if (distribution != Distribution.UNIFORM) {
+            assertThat(celebrities).isPositive();
+        }
+    }
+
+    /**
+     * Gives every user {@value #FRIENDS_PER_USER} distinct friends other than the user.
+     */
+    private void buildGraph(Distribution distribution) {
+        double[] zipf = new double[USERS];
+        double total = 0;
+        for (int rank = 0; rank < USERS; rank++) {
+            total += 1.0 / (rank + 1);
+            zipf[rank] = total;
+        }
+        for (long userId = 1; userId <= USERS; userId++) {
+            Set<Long> chosen = new LinkedHashSet<>();
+            if (distribution == Distribution.CELEBRITIES) {
+                for (long celebrityId = 1; celebrityId <= 5; celebrityId++) {
+                    if (celebrityId != userId) {
+                        chosen.add(celebrityId);
+                    }
+                }
+            }
+            while (chosen.size() < FRIENDS_PER_USER) {
+                long friendId = distribution == Distribution.ZIPF
+                        ? 1 + rankOf(zipf, random.nextDouble() * total)
+                        : 1 + random.nextInt(USERS);
+                if (friendId != userId) {
+                    chosen.add(friendId);
+                }
+            }
+            friends.put(userId, List.copyOf(chosen));
+            for (long friendId : chosen) {
+                followers.computeIfAbsent(friendId, id -> new ArrayList<>()).add(userId);
+            }
+        }
+    }
+
+    private static int rankOf(double[] cumulative, double value) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Serves the graph and the feeds from the maps and counts the feed reads.
+     * The mock records no invocations, there are hundreds of thousands of them.
+     */
+    private UserStorage storage() {
+        UserStorage userStorage = mock(UserStorage.class, withSettings().stubOnly());
+        when(userStorage.getFriendIds(anyLong()))
+                .thenAnswer(invocation -> friends.get(invocation.<Long>getArgument(0)));
+        when(userStorage.getFollowerIds(anyLong()))
+                .thenAnswer(invocation -> followers.getOrDefault(invocation.<Long>getArgument(0), List.of()));
+        when(userStorage.getUserEvents(anyLong(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            feedReads.incrementAndGet();
+            return feedPage(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+        });
+        return userStorage;
+    }
+
+    private List<UserEvent> feedPage(long userId, long before, int limit) {
+        List<UserEvent> feed = feeds.getOrDefault(userId, List.of());
+        List<UserEvent> page = new ArrayList<>();
+        for (int i = feed.size() - 1; i >= 0 && page.size() < limit; i--) {
+            if (feed.get(i).getEventId() < before) {
+                page.add(feed.get(i));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Merges the friends' feeds directly, the way a timeline read without buffers would.
+     */
+    private List<Long> expectedPage(long userId, long before) {
+        return friends.get(userId).stream()
+                .flatMap(friendId -> feedPage(friendId, before, PAGE).stream())
+                .map(UserEvent::getEventId)
+                .sorted(Comparator.reverseOrder())
+                .limit(PAGE)
+                .toList();
+    }
+
+    private static UserEvent event(long eventId, long userId) {
+        UserEvent event = new UserEvent();
+        event.setEventId(eventId);
+        event.setUserId(userId);
+        event.setTimestamp(eventId);
+        event.setEventType("LIKE");
+        event.setOperation("ADD");
+        event.setEntityId(1L);
+        return event;
+    }
+}